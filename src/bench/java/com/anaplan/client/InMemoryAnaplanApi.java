@@ -0,0 +1,116 @@
+package com.anaplan.client;
+
+import com.anaplan.client.api.AnaplanAPI;
+import com.anaplan.client.auth.Credentials;
+import com.anaplan.client.dto.ChunkData;
+import com.anaplan.client.dto.ModelData;
+import com.anaplan.client.dto.ServerFileData;
+import com.anaplan.client.dto.responses.ChunksResponse;
+import com.anaplan.client.dto.responses.ServerFileResponse;
+import com.anaplan.client.transport.ConnectionProperties;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process stand-in for the server side of {@link AnaplanAPI}, holding a single server file
+ * in memory. It implements the file and chunk calls made by {@link ServerFile}, so that the
+ * client's own overhead can be measured without any network in between; any other call fails.
+ */
+final class InMemoryAnaplanApi implements InvocationHandler {
+
+    static final String WORKSPACE_ID = "workspaceId";
+    static final String MODEL_ID = "modelId";
+    static final String FILE_ID = "113000000000";
+
+    private final Map<String, byte[]> chunks = new ConcurrentHashMap<>();
+    private volatile ServerFileData data;
+    private volatile int chunkCount;
+
+    InMemoryAnaplanApi(ServerFileData data) {
+        this.data = data;
+    }
+
+    /**
+     * Creates a {@link ServerFile} whose calls are all served by a new in-memory API.
+     *
+     * @param api holds the content of the server file
+     * @return the server file
+     */
+    static ServerFile serverFile(InMemoryAnaplanApi api) {
+        ConnectionProperties properties = new ConnectionProperties();
+        properties.setApiCredentials(new Credentials("benchmark@example.com", "benchmark"));
+        Service service = new Service(properties);
+        service.getApiProvider().setApiClient((AnaplanAPI) Proxy.newProxyInstance(
+                AnaplanAPI.class.getClassLoader(), new Class<?>[] {AnaplanAPI.class}, api));
+        Model model = new Model(service.getWorkspace(WORKSPACE_ID), new ModelData(MODEL_ID));
+        return new ServerFile(model, api.data);
+    }
+
+    /**
+     * Replaces the content of the server file, cutting it into chunks of the given size.
+     */
+    void load(byte[] content, int chunkSize) {
+        chunks.clear();
+        int count = 0;
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            chunks.put(String.valueOf(count++),
+                    Arrays.copyOfRange(content, offset, Math.min(content.length, offset + chunkSize)));
+        }
+        chunkCount = count;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "upsertFileDataSource":
+                data = (ServerFileData) args[3];
+                chunkCount = data.getChunkCount();
+                chunks.clear();
+                return response();
+            case "completeUpload":
+                chunkCount = chunks.size();
+                return response();
+            case "getChunks":
+                List<ChunkData> chunkList = new ArrayList<>(chunkCount);
+                for (int i = 0; i < chunkCount; i++) {
+                    ChunkData chunk = new ChunkData();
+                    chunk.setId(String.valueOf(i));
+                    chunkList.add(chunk);
+                }
+                ChunksResponse chunksResponse = new ChunksResponse();
+                chunksResponse.setItem(chunkList);
+                return chunksResponse;
+            case "uploadChunk":
+            case "uploadChunkCompressed":
+            case "uploadChunkPrecompressed":
+                chunks.put((String) args[3], (byte[]) args[4]);
+                return null;
+            case "getChunkContent":
+                return chunks.get((String) args[3]);
+            case "getChunkContentStream":
+                byte[] content = chunks.get((String) args[3]);
+                return content == null ? null : new ByteArrayInputStream(content);
+            case "toString":
+                return "InMemoryAnaplanApi";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private ServerFileResponse response() {
+        ServerFileResponse response = new ServerFileResponse();
+        response.setItem(data);
+        return response;
+    }
+}
@@ -0,0 +1,143 @@
+package com.anaplan.client;
+
+import com.anaplan.client.dto.ServerFileData;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the client side of file transfers against {@link InMemoryAnaplanApi}: splitting,
+ * compressing and uploading a delimited file, finding chunk boundaries, and parsing the rows of
+ * a downloaded file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerFileBenchmark {
+
+    private static final int ROW_COUNT = 250_000;
+
+    @Param({"1048576", "10485760"})
+    public int chunkSize;
+
+    private File source;
+    private ServerFile serverFile;
+    private InMemoryAnaplanApi api;
+    private byte[] content;
+    private byte[] chunk;
+    private ByteBuffer chunkBuffer;
+    private ChunkSplitter splitter;
+
+    /**
+     * Only the upload pipeline is parallel, so only its benchmark is run at each concurrency.
+     */
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+        @Param({"1", "4"})
+        public int concurrency;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        rows.write("Item\tDescription\tAmount\tDate\n".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.write(("Item " + i + "\t\"Description, of item " + i + "\"\t" + (i * 7.25) + "\t2021-01-"
+                    + (i % 28 + 1) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        content = rows.toByteArray();
+        source = File.createTempFile("anaplan-benchmark-", ".tsv");
+        Files.write(source.toPath(), content);
+
+        ServerFileData data = new ServerFileData();
+        data.setId(InMemoryAnaplanApi.FILE_ID);
+        data.setName("benchmark.tsv");
+        data.setEncoding("UTF-8");
+        data.setSeparator("\n");
+        data.setDelimiter("\"");
+        data.setHeaderRow(1);
+        data.setFirstDataRow(2);
+        api = new InMemoryAnaplanApi(data);
+        serverFile = InMemoryAnaplanApi.serverFile(api);
+
+        chunk = Arrays.copyOf(content, Math.min(chunkSize, content.length));
+        chunkBuffer = ByteBuffer.wrap(chunk);
+        splitter = new ChunkSplitter(data);
+    }
+
+    @Setup(Level.Iteration)
+    public void loadDownload() {
+        api.load(content, chunkSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source.toPath());
+    }
+
+    @Benchmark
+    public void upLoad(Pipeline pipeline) throws IOException {
+        serverFile.upLoad(source, true, chunkSize, pipeline.concurrency);
+    }
+
+    @Benchmark
+    public int chunkBoundary() {
+        return splitter.boundary(chunkBuffer);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public int lastIndexOf() {
+        return serverFile.lastIndexOf(chunk, "\n");
+    }
+
+    @Benchmark
+    public void downloadCellReader(Blackhole blackhole) throws IOException {
+        CellReader cellReader = serverFile.getDownloadCellReader();
+        try {
+            String[] row;
+            while ((row = cellReader.readDataRow()) != null) {
+                blackhole.consume(row);
+            }
+        } finally {
+            cellReader.close();
+        }
+    }
+
+    @Benchmark
+    public void downloadCellReaderReusingRow(Blackhole blackhole) throws IOException {
+        DelimitedCellReader cellReader = serverFile.getDownloadCellReader();
+        try {
+            List<String> row = new ArrayList<>();
+            while (cellReader.readDataRow(row)) {
+                blackhole.consume(row);
+            }
+        } finally {
+            cellReader.close();
+        }
+    }
+}
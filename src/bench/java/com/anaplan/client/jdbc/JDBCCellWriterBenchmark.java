@@ -0,0 +1,67 @@
+package com.anaplan.client.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing an exported chunk to a database through {@link JDBCCellWriter}, against
+ * {@link NullJdbcDriver} so that only the parsing and batching of rows is timed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JDBCCellWriterBenchmark {
+
+    private static final int ROW_COUNT = 50_000;
+    private static final int COLUMN_COUNT = 4;
+
+    private byte[] chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DriverManager.registerDriver(new NullJdbcDriver());
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        byte[] header = "Item\tDescription\tAmount\tDate\n".getBytes(StandardCharsets.UTF_8);
+        rows.write(header, 0, header.length);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            byte[] row = ("Item " + i + "\tDescription of item " + i + "\t" + (i * 7.25) + "\t2021-01-"
+                    + (i % 28 + 1) + "\n").getBytes(StandardCharsets.UTF_8);
+            rows.write(row, 0, row.length);
+        }
+        chunk = rows.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int writeDataRow() throws SQLException {
+        JDBCConfig jdbcConfig = new JDBCConfig();
+        jdbcConfig.setJdbcConnectionUrl(NullJdbcDriver.URL);
+        jdbcConfig.setJdbcQuery("INSERT INTO benchmark VALUES (?, ?, ?, ?)");
+        JDBCCellWriter cellWriter = new JDBCCellWriter(jdbcConfig);
+        try {
+            return cellWriter.writeDataRow("exportId", 1, 1, new ByteArrayInputStream(chunk), 1, "0",
+                    new int[0], COLUMN_COUNT, "\t");
+        } finally {
+            cellWriter.close();
+        }
+    }
+}
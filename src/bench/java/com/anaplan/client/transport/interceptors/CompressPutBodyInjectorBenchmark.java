@@ -0,0 +1,77 @@
+package com.anaplan.client.transport.interceptors;
+
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.google.common.net.MediaType;
+import feign.RequestTemplate;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures gzipping a file-chunk PUT body, both through the request interceptor and directly
+ * through the compressor that chunk uploads use.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressPutBodyInjectorBenchmark {
+
+    @Param({"1048576", "10485760"})
+    public int chunkSize;
+
+    @Param({"1", "6", "9"})
+    public int compressionLevel;
+
+    private byte[] chunk;
+    private CompressPutBodyInjector injector;
+    private RequestTemplate template;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ByteArrayOutputStream rows = new ByteArrayOutputStream(chunkSize + 64);
+        for (int i = 0; rows.size() < chunkSize; i++) {
+            byte[] row = ("Item " + i + ",\"Description, of item " + i + "\"," + (i * 7.25) + ",2021-01-"
+                    + (i % 28 + 1) + "\n").getBytes(StandardCharsets.UTF_8);
+            rows.write(row, 0, row.length);
+        }
+        chunk = rows.toByteArray();
+        injector = new CompressPutBodyInjector(compressionLevel);
+    }
+
+    @Setup(Level.Invocation)
+    public void newTemplate() {
+        template = new RequestTemplate()
+                .method("PUT")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.GZIP.toString())
+                .body(chunk, StandardCharsets.UTF_8)
+                .resolve(Collections.emptyMap());
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        injector.apply(template);
+        return template.body();
+    }
+
+    @Benchmark
+    public byte[] gzip() {
+        return GzipCompressor.gzip(chunk, 0, chunk.length, compressionLevel);
+    }
+}
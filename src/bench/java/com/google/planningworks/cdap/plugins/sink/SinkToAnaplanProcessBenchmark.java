@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.Schema.LogicalType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures turning sink input records into the delimited rows uploaded to Anaplan, with
+ * {@link RowEncoder} as used by {@link SinkToAnaplanProcess}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SinkToAnaplanProcessBenchmark {
+
+  private static final int RECORD_COUNT = 10_000;
+
+  private StructuredRecord[] records;
+  private RowEncoder rowEncoder;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Schema schema = Schema.recordOf("record",
+      Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("date", Schema.of(LogicalType.DATE)),
+      Schema.Field.of("decimal", Schema.decimalOf(20, 4)),
+      Schema.Field.of("nullable", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    records = new StructuredRecord[RECORD_COUNT];
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      records[i] = StructuredRecord.builder(schema)
+        .set("long", (long) i * 1_000_003)
+        .set("int", i)
+        .set("string", "Item " + i)
+        .set("price", i * 7.25)
+        .set("boolean", i % 2 == 0)
+        .setDate("date", LocalDate.of(2021, 1, i % 28 + 1))
+        .setDecimal("decimal", BigDecimal.valueOf(i, 4))
+        .set("nullable", i % 3 == 0 ? null : "Note " + i)
+        .build();
+    }
+    rowEncoder = new RowEncoder(schema);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORD_COUNT)
+  public void encode(Blackhole blackhole) {
+    for (StructuredRecord record : records) {
+      rowEncoder.encode(record);
+    }
+    blackhole.consume(rowEncoder.buffer());
+    rowEncoder.reset();
+  }
+}
@@ -15,22 +15,34 @@
  */
 package com.anaplan.client;
 
+import com.anaplan.client.auth.Credentials;
+import com.anaplan.client.dto.ChunkData;
+import com.anaplan.client.dto.ModelData;
+import com.anaplan.client.dto.ServerFileData;
 import com.anaplan.client.ex.ActionsNotFoundException;
 import com.anaplan.client.ex.ProcessesNotFoundException;
 import com.anaplan.client.ex.ServerFilesNotFoundException;
+import com.anaplan.client.transport.ConnectionProperties;
 import com.google.common.base.Strings;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Wrapper class of the Anaplan service providing the interfaces for a client to connect with
- * Anaplan server.
+ * Anaplan server. Instances share no state with each other, so several connections may be open in
+ * the same JVM at once.
  */
-public class AnaplanService {
+public class AnaplanService implements Closeable {
 
   /** Enum class of the Anaplan internal function types. */
   public enum FunctionType {
@@ -44,13 +56,28 @@ public class AnaplanService {
     private final URI authServiceLocation;
     private final String username;
     private final String password;
+    private final Integer maxConnections;
+    private final Boolean http2Enabled;
 
     public AnaplanConfig(
       String username, String password, URI serviceLocation, URI authServiceLocation) {
+      this(username, password, serviceLocation, authServiceLocation, null, null);
+    }
+
+    /**
+     * @param maxConnections the number of idle connections kept open to Anaplan server for reuse,
+     *   which also caps the asynchronous requests in flight, or null for the default
+     * @param http2Enabled whether requests may share HTTP/2 connections, or null for the default
+     */
+    public AnaplanConfig(
+      String username, String password, URI serviceLocation, URI authServiceLocation,
+      @Nullable Integer maxConnections, @Nullable Boolean http2Enabled) {
       this.username = username;
       this.password = password;
       this.serviceLocation = serviceLocation;
       this.authServiceLocation = authServiceLocation;
+      this.maxConnections = maxConnections;
+      this.http2Enabled = http2Enabled;
     }
 
     public URI getAuthServiceLocation() {
@@ -68,6 +95,16 @@ public class AnaplanService {
     public URI getServiceLocation() {
       return serviceLocation;
     }
+
+    @Nullable
+    public Integer getMaxConnections() {
+      return maxConnections;
+    }
+
+    @Nullable
+    public Boolean getHttp2Enabled() {
+      return http2Enabled;
+    }
   }
 
   public static final String NAME_SERVICE_LOCATION = "serviceLocation";
@@ -77,32 +114,55 @@ public class AnaplanService {
   public static final String NAME_WORKSPACE_ID = "workspaceId";
   public static final String NAME_MODEL_ID = "modelId";
   public static final String NAME_SERVER_FILE_NAME = "serverFileName";
+  public static final String NAME_MAX_CONNECTIONS = "maxConnections";
+  public static final String NAME_HTTP2_ENABLED = "http2Enabled";
 
   private static final Logger LOG = LoggerFactory.getLogger(AnaplanService.class);
 
+  private final Service service;
+
   /**
-   * Sets metadata details for the connection with Anaplan server
+   * Creates a connection with Anaplan server. Each instance authenticates and holds its own
+   * credentials, so that any number of them may be used at once from different threads.
    *
    * @param config the config instance carries metadata for the connection with Anaplan server
    */
-  public static void setTaskMetadata(AnaplanConfig config) throws URISyntaxException {
-    setAPIRoot(config.getServiceLocation(), config.getAuthServiceLocation());
-    setCredential(config.getUsername(), config.getPassword());
+  public AnaplanService(AnaplanConfig config) {
+    ConnectionProperties properties = new ConnectionProperties();
+    properties.setApiServicesUri(config.getServiceLocation());
+    properties.setAuthServiceUri(config.getAuthServiceLocation());
+    properties.setApiCredentials(new Credentials(config.getUsername(), config.getPassword()));
+    properties.setRetryTimeout(Constants.MIN_RETRY_TIMEOUT_SECS);
+    properties.setMaxRetryCount(Constants.MIN_RETRY_COUNT);
+    properties.setHttpTimeout(Constants.MIN_HTTP_CONNECTION_TIMEOUT_SECS);
+    if (config.getMaxConnections() != null) {
+      properties.setMaxIdleConnections(config.getMaxConnections());
+      properties.setMaxRequestsPerHost(config.getMaxConnections());
+    }
+    if (config.getHttp2Enabled() != null) {
+      properties.setHttp2Enabled(config.getHttp2Enabled());
+    }
+    this.service = new Service(properties);
   }
 
-  private static void setAPIRoot(URI serviceLocation, URI authServiceLocation) {
-    Program.setServiceLocation(serviceLocation);
-    Program.setAuthServiceLocation(authServiceLocation);
+  /**
+   * Creates a connection with Anaplan server over an already configured {@link Service}.
+   *
+   * @param service the service to be used for the connection
+   */
+  public AnaplanService(Service service) {
+    this.service = service;
   }
 
-  private static void setCredential(String username, String password) {
-    Program.setUsername(username);
-    Program.setPassphrase(password);
+  /** Gets the underlying {@link Service} of the connection */
+  public Service getService() {
+    return service;
   }
 
   /** Closes the connection with Anaplan server */
-  public static void closeDown() {
-    Program.closeDown();
+  @Override
+  public void close() {
+    service.close();
     LOG.info("Anaplan connection is closed.");
   }
 
@@ -117,20 +177,20 @@ public class AnaplanService {
    * @throws ProcessesNotFoundException when requested process is not defined in the model
    * @throws ActionsNotFoundException when requested action is not defined in the model
    */
-  public static void runAnaplanFunction(
+  public void runAnaplanFunction(
     String workspaceId, String modelId, String functionId, FunctionType type)
     throws InterruptedException {
     TaskFactory taskFactory = null;
     switch (type) {
       case PROCESS:
-        taskFactory = Program.getProcess(workspaceId, modelId, functionId);
+        taskFactory = getModel(workspaceId, modelId).getProcess(functionId);
         if (taskFactory == null) {
           throw new ProcessesNotFoundException(
             modelId, new Exception("A process must be specified in model before calling"));
         }
         break;
       case ACTION:
-        taskFactory = Program.getAction(workspaceId, modelId, functionId);
+        taskFactory = getModel(workspaceId, modelId).getAction(functionId);
         if (taskFactory == null) {
           throw new ActionsNotFoundException(
             modelId, new Exception("An action must be specified in model before calling"));
@@ -144,7 +204,8 @@ public class AnaplanService {
   }
 
   /**
-   * Gets the {@link OutputStream} for uploading a data file
+   * Gets the {@link OutputStream} for uploading a data file. The upload is completed when the
+   * stream is closed, or given up on when it is aborted.
    *
    * @param workspaceId the ID of the target workspace
    * @param modelId the ID of the target model
@@ -153,12 +214,30 @@ public class AnaplanService {
    * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
    * @return the {@link OutputStream} for uploading a data file
    */
-  public static OutputStream getUploadServerFileOutputStream(
+  public ServerFile.UploadStream getUploadServerFileOutputStream(
     String workspaceId, String modelId, String fileId, int chunkSize) {
     ServerFile serverFile = getServerFile(workspaceId, modelId, fileId, true);
     return serverFile.getUploadStream(Program.fetchChunkSize(String.valueOf(chunkSize))); // in MB
   }
 
+  /**
+   * Uploads a data file whose chunks have already been split and gzipped, in order
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param fileId the ID of the placeholder in Anaplan model for the file to be loaded
+   * @param chunks the gzipped chunks of the file, each ending on a row separator
+   * @param concurrency the maximum number of chunks uploaded in parallel
+   * @throws IOException when an I/O error occurs during uploading the file
+   * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
+   */
+  public void uploadCompressedChunks(
+    String workspaceId, String modelId, String fileId, Iterator<byte[]> chunks, int concurrency)
+    throws IOException {
+    ServerFile serverFile = getServerFile(workspaceId, modelId, fileId, true);
+    serverFile.upLoadCompressed(chunks, concurrency);
+  }
+
   /**
    * Gets the {@link InputStream} for downloading a data file
    *
@@ -168,15 +247,121 @@ public class AnaplanService {
    * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
    * @return the {@link InputStream} for downloading a data file
    */
-  public static InputStream getDownloadServerFileInputStream(
+  public InputStream getDownloadServerFileInputStream(
     String workspaceId, String modelId, String fileId) {
     ServerFile serverFile = getServerFile(workspaceId, modelId, fileId, false);
     return serverFile.getDownloadStream();
   }
 
-  private static ServerFile getServerFile(
+  /**
+   * Downloads a data file in blocks of whole rows, fetching several chunks in parallel
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param fileId the ID of the file in Anaplan model to be downloaded
+   * @param blockSize the number of bytes to read before cutting a block at a row separator
+   * @param concurrency the maximum number of chunks downloaded in parallel
+   * @param handler receives each block in order
+   * @throws IOException when an I/O error occurs during downloading the file
+   * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
+   */
+  public void downloadRows(
+    String workspaceId, String modelId, String fileId, int blockSize, int concurrency,
+    ServerFile.BlockHandler handler) throws IOException {
+    ServerFile serverFile = getServerFile(workspaceId, modelId, fileId, false);
+    serverFile.downLoadRows(blockSize, concurrency, handler);
+  }
+
+  /**
+   * Looks a data file up in the model, so that its chunks can be read without looking it up again
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param fileId the ID or name of the file in Anaplan model
+   * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
+   * @return the file, including its ID and encoding
+   */
+  public ServerFileData getServerFileData(String workspaceId, String modelId, String fileId) {
+    return getServerFile(workspaceId, modelId, fileId, false).getData();
+  }
+
+  /**
+   * Lists the IDs of the chunks of a data file, in order
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param fileId the ID of the file in Anaplan model
+   * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
+   * @return the chunk IDs, empty for an empty file
+   */
+  public List<String> getChunkIds(String workspaceId, String modelId, String fileId) {
+    return getChunkIds(getServerFile(workspaceId, modelId, fileId, false));
+  }
+
+  /**
+   * Lists the IDs of the chunks of a data file which has been looked up already, in order
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param file the file, as returned by {@link #getServerFileData}
+   * @return the chunk IDs, empty for an empty file
+   */
+  public List<String> getChunkIds(String workspaceId, String modelId, ServerFileData file) {
+    return getChunkIds(new ServerFile(getModel(workspaceId, modelId), file));
+  }
+
+  private static List<String> getChunkIds(ServerFile serverFile) {
+    List<ChunkData> chunks = serverFile.getChunks();
+    List<String> chunkIds = new ArrayList<>();
+    if (chunks != null) {
+      for (ChunkData chunk : chunks) {
+        chunkIds.add(chunk.getId());
+      }
+    }
+    return chunkIds;
+  }
+
+  /**
+   * Downloads the content of one chunk of a data file
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param fileId the ID of the file in Anaplan model
+   * @param chunkId the ID of the chunk, as listed by {@link #getChunkIds}
+   * @throws ServerFilesNotFoundException when requested serverFile is not found in the model
+   * @return the content of the chunk
+   */
+  public byte[] getChunkContent(String workspaceId, String modelId, String fileId,
+    String chunkId) {
+    ServerFile serverFile = getServerFile(workspaceId, modelId, fileId, false);
+    return serverFile.getChunkContent(chunkId);
+  }
+
+  /**
+   * Downloads the content of one chunk of a data file which has been looked up already
+   *
+   * @param workspaceId the ID of the target workspace
+   * @param modelId the ID of the target model
+   * @param file the file, as returned by {@link #getServerFileData}
+   * @param chunkId the ID of the chunk, as listed by {@link #getChunkIds}
+   * @return the content of the chunk
+   */
+  public byte[] getChunkContent(String workspaceId, String modelId, ServerFileData file,
+    String chunkId) {
+    return new ServerFile(getModel(workspaceId, modelId), file).getChunkContent(chunkId);
+  }
+
+  private Model getModel(String workspaceId, String modelId) {
+    return new Model(service.getWorkspace(workspaceId), new ModelData(modelId));
+  }
+
+  private ServerFile getServerFile(
     String workspaceId, String modelId, String fileId, boolean create) {
-    ServerFile serverFile = Program.getServerFile(workspaceId, modelId, fileId, create);
+    Model model = getModel(workspaceId, modelId);
+    ServerFile serverFile = model.getServerFile(fileId);
+    if (serverFile == null && create) {
+      serverFile = model.createServerFileImportDataSource(fileId, "Anaplan Local Melos Test");
+    }
     if (serverFile == null) {
       throw new ServerFilesNotFoundException(
         modelId,
@@ -185,7 +370,7 @@ public class AnaplanService {
             "Server file: %s is not found from workspace: %s and model: %s",
             fileId, workspaceId, modelId)));
     }
-    LOG.info("Server file %s is retrieved.", fileId);
+    LOG.info("Server file {} is retrieved.", fileId);
     return serverFile;
   }
 
@@ -233,6 +418,20 @@ public class AnaplanService {
     }
   }
 
+  /**
+   * Validates the number of connections, when given
+   *
+   * @throws IllegalArgumentException if the number is out of range
+   */
+  public static void validateMaxConnections(@Nullable Integer maxConnections) {
+    if (maxConnections != null
+      && (maxConnections < Constants.MIN_CONNECTIONS || maxConnections > Constants.MAX_CONNECTIONS)) {
+      throw new IllegalArgumentException(String.format(
+        "Maximum idle connections must be between %d and %d.",
+        Constants.MIN_CONNECTIONS, Constants.MAX_CONNECTIONS));
+    }
+  }
+
   /**
    * Validates the service location format
    *
@@ -0,0 +1,531 @@
+package com.anaplan.client;
+
+import com.anaplan.client.dto.ChunkData;
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.ex.NoChunkError;
+import com.anaplan.client.metrics.Metrics;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the chunks of a {@link ServerFile} in parallel, keeping at most a fixed number of
+ * chunk requests in flight at any time. Chunks are always handed back in server order, so the
+ * content can be written to a file at the right offsets or consumed as a single stream.
+ * <p>
+ * Chunk bodies are never buffered on the heap: with a concurrency of 1 the live response body of
+ * each chunk is handed straight to the consumer. Otherwise, when writing to a file, each worker
+ * streams its chunk straight into the file at the chunk's offset. When reading a stream, each body
+ * is streamed into a spool file while earlier chunks are being consumed, and the spool file is
+ * deleted once read. The worker threads are only started once more than one chunk is fetched at
+ * a time.
+ */
+class ChunkDownloader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkDownloader.class);
+    // how long close() waits for interrupted workers to delete the chunk they were spooling
+    private static final long WORKER_STOP_TIMEOUT_MS = 1000;
+    // the buffer each worker moves its chunk through into the target file
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final ServerFile serverFile;
+    private final List<ChunkData> chunkList;
+    private final int concurrency;
+    private final File spoolDirectory;
+    private final TransferTracker tracker;
+    private ExecutorService executor;
+    private final Deque<Future<SpooledChunk>> inFlight = new ArrayDeque<>();
+    private final Deque<Future<WrittenChunk>> writing = new ArrayDeque<>();
+    private final Set<File> spools = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+    // whether chunks were written past the chunk of another length, at the wrong offsets
+    private boolean misplaced = false;
+    private int nextToSubmit = 0;
+
+    /**
+     * Receives each chunk once it has been written out in full.
+     */
+    interface ChunkWrittenListener {
+        /**
+         * @param chunkId  the ID of the chunk
+         * @param offset   the position the chunk was written at
+         * @param length   the length of the chunk in bytes
+         * @param checksum the CRC32 of the chunk content
+         */
+        void chunkWritten(String chunkId, long offset, long length, long checksum) throws IOException;
+    }
+
+    /**
+     * A chunk downloaded ahead of being consumed.
+     */
+    private static final class SpooledChunk {
+        private final String chunkId;
+        private final File file;
+        private final long checksum;
+
+        private SpooledChunk(String chunkId, File file, long checksum) {
+            this.chunkId = chunkId;
+            this.file = file;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * A chunk written straight into the target file.
+     */
+    private static final class WrittenChunk {
+        private final int index;
+        private final String chunkId;
+        private final long length;
+        private final long checksum;
+
+        private WrittenChunk(int index, String chunkId, long length, long checksum) {
+            this.index = index;
+            this.chunkId = chunkId;
+            this.length = length;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * @param serverFile     the server file the chunks belong to
+     * @param chunkList      the chunks to fetch, in server order
+     * @param concurrency    the maximum number of chunk requests in flight
+     * @param spoolDirectory the directory to spool chunks into, or null for the temporary-file
+     *                       directory
+     * @param tracker        counts the chunks once downloaded, and is closed with the downloader
+     */
+    ChunkDownloader(ServerFile serverFile, List<ChunkData> chunkList, int concurrency, File spoolDirectory,
+                    TransferTracker tracker) {
+        this.serverFile = serverFile;
+        this.chunkList = chunkList == null ? Collections.emptyList() : chunkList;
+        this.concurrency = Math.max(1, concurrency);
+        this.spoolDirectory = spoolDirectory;
+        this.tracker = tracker;
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("chunk-download-" + serverFile.getId() + "-%d")
+                    .build());
+        }
+        return executor;
+    }
+
+    /**
+     * @return true if there are chunks which have not yet been returned by {@link #nextStream()}
+     */
+    boolean hasNext() {
+        return !inFlight.isEmpty() || !writing.isEmpty() || nextToSubmit < chunkList.size();
+    }
+
+    /**
+     * Opens the next chunk in server order, topping the window back up before returning.
+     *
+     * @return the content of the next chunk, which the caller must close
+     * @throws InterruptedIOException if interrupted while waiting for the chunk
+     */
+    InputStream nextStream() throws IOException {
+        if (concurrency == 1) {
+            if (!hasNext()) {
+                throw new IllegalStateException("No more chunks to download");
+            }
+            return openTracked(chunkList.get(nextToSubmit++).getId());
+        }
+        final File spool = nextSpool().file;
+        return new FileInputStream(spool) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release(spool);
+                }
+            }
+        };
+    }
+
+    private SpooledChunk nextSpool() throws InterruptedIOException {
+        fillWindow();
+        Future<SpooledChunk> head = inFlight.poll();
+        if (head == null) {
+            throw new IllegalStateException("No more chunks to download");
+        }
+        SpooledChunk spool = await(head);
+        fillWindow();
+        if (!hasNext()) {
+            executor.shutdown();
+        }
+        return spool;
+    }
+
+    private <T> T await(Future<T> future) throws InterruptedIOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading chunks of " + serverFile.getId());
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AnaplanAPIException("Failed to download chunk of " + serverFile.getId(), e.getCause());
+        }
+    }
+
+    /**
+     * Writes all chunks to the channel, each at the offset following the previous chunk. Bytes
+     * are moved channel to channel and never pass through a heap buffer of chunk size.
+     *
+     * @param channel the channel to write to, starting at position 0
+     * @return the total number of bytes written
+     */
+    long writeTo(FileChannel channel) throws IOException {
+        return writeTo(channel, 0, null);
+    }
+
+    /**
+     * Writes all chunks to the channel, each at the offset following the previous chunk, and
+     * reports every chunk once it has been written, in server order.
+     * <p>
+     * With a concurrency above 1 the first chunk is written alone, and its length places the
+     * chunks after it, as every chunk but the last is expected to be as long. Should a chunk turn
+     * out otherwise, the chunks from there on are spooled and written in order instead, and the
+     * channel is truncated after the last chunk.
+     *
+     * @param channel  the channel to write to
+     * @param position the position to write the first chunk at
+     * @param listener notified of each chunk written, or null
+     * @return the position following the last chunk
+     */
+    long writeTo(FileChannel channel, long position, ChunkWrittenListener listener) throws IOException {
+        if (concurrency > 1 && hasNext()) {
+            position = writeDirect(channel, position, listener);
+        }
+        while (hasNext()) {
+            long start = position;
+            String chunkId;
+            long checksum;
+            if (concurrency == 1) {
+                chunkId = chunkList.get(nextToSubmit++).getId();
+                try (CheckedInputStream content = new CheckedInputStream(openTracked(chunkId), new CRC32())) {
+                    position = transfer(Channels.newChannel(content), channel, position);
+                    checksum = content.getChecksum().getValue();
+                }
+            } else {
+                SpooledChunk chunk = nextSpool();
+                try (FileInputStream content = new FileInputStream(chunk.file)) {
+                    position = transfer(content.getChannel(), channel, position);
+                } finally {
+                    release(chunk.file);
+                }
+                chunkId = chunk.chunkId;
+                checksum = chunk.checksum;
+            }
+            if (listener != null) {
+                listener.chunkWritten(chunkId, start, position - start, checksum);
+            }
+        }
+        if (misplaced) {
+            // drop the chunks written past the end at the wrong offsets
+            channel.truncate(position);
+        }
+        tracker.finished();
+        return position;
+    }
+
+    /**
+     * Has the workers write the chunks straight into the channel, at offsets following from the
+     * length of the first chunk, until a chunk other than the last one is of another length.
+     *
+     * @return the position following the last chunk written at the right offset, with
+     * {@link #nextToSubmit} at the chunk after it
+     */
+    private long writeDirect(FileChannel channel, long position, ChunkWrittenListener listener)
+            throws IOException {
+        // the first chunk is fetched alone, as its length places the chunks after it
+        int firstIndex = nextToSubmit++;
+        WrittenChunk first = writeChunk(firstIndex, channel, position);
+        position = written(first, position, listener);
+        long stride = first.length;
+        if (stride == 0) {
+            return position;
+        }
+        long base = position;
+        int baseIndex = nextToSubmit;
+        while (nextToSubmit < chunkList.size() || !writing.isEmpty()) {
+            while (writing.size() < concurrency && nextToSubmit < chunkList.size()) {
+                final int index = nextToSubmit++;
+                final long offset = base + (index - baseIndex) * stride;
+                writing.add(executor().submit(() -> writeChunk(index, channel, offset)));
+            }
+            WrittenChunk chunk = await(writing.poll());
+            boolean last = chunk.index == chunkList.size() - 1;
+            if (chunk.length <= stride || last) {
+                position = written(chunk, position, listener);
+            }
+            if (chunk.length != stride && !last) {
+                // the chunks after this one were placed at the wrong offsets, so let the
+                // workers finish and write them again in order
+                for (Future<WrittenChunk> future : writing) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        LOG.debug("Discarded chunk failed to download: {}", e.getCause().getMessage());
+                    } catch (InterruptedException e) {
+                        close();
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while downloading chunks of "
+                                + serverFile.getId());
+                    }
+                }
+                writing.clear();
+                misplaced = true;
+                nextToSubmit = chunk.length < stride ? chunk.index + 1 : chunk.index;
+                LOG.debug("Chunk {} is {}B rather than {}B, writing the remaining chunks in order",
+                        chunk.chunkId, chunk.length, stride);
+                break;
+            }
+        }
+        return position;
+    }
+
+    private WrittenChunk writeChunk(int index, FileChannel target, long offset) throws IOException {
+        String chunkId = chunkList.get(index).getId();
+        long start = Metrics.start();
+        try (CheckedInputStream chunkContent = new CheckedInputStream(openChunk(chunkId), new CRC32())) {
+            long size = write(Channels.newChannel(chunkContent), target, offset) - offset;
+            LOG.debug("Downloaded chunk: {} (size={}B)", chunkId, size);
+            Metrics.stop(Metrics.CHUNK_DOWNLOAD, null, start);
+            Metrics.recordValue(Metrics.CHUNK_BYTES, "download", size);
+            return new WrittenChunk(index, chunkId, size, chunkContent.getChecksum().getValue());
+        }
+    }
+
+    private long written(WrittenChunk chunk, long position, ChunkWrittenListener listener) throws IOException {
+        tracker.chunkDone(chunk.length, chunk.length);
+        if (listener != null) {
+            listener.chunkWritten(chunk.chunkId, position, chunk.length, chunk.checksum);
+        }
+        return position + chunk.length;
+    }
+
+    private static long transfer(ReadableByteChannel source, FileChannel target, long position) throws IOException {
+        long transferred;
+        while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+            position += transferred;
+        }
+        return position;
+    }
+
+    /**
+     * Unlike {@link FileChannel#transferFrom}, which moves nothing past the end of the file, writes
+     * at any position, so that chunks can be written ahead of the ones before them. Stops once the
+     * downloader is closed.
+     */
+    private long write(ReadableByteChannel source, FileChannel target, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += target.write(buffer, position);
+            }
+            buffer.clear();
+            if (closed) {
+                throw new CancellationException();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Exposes the chunks as one ordered stream. Closing the stream cancels any chunk requests
+     * still in flight.
+     *
+     * @return an InputStream over the whole file content
+     */
+    InputStream asInputStream() {
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return nextStream();
+                } catch (Exception thrown) {
+                    throw new RuntimeException(
+                            "Failed to read chunk from server", thrown);
+                }
+            }
+        }) {
+            @Override
+            public void close() throws IOException {
+                if (!hasNext()) {
+                    tracker.finished();
+                }
+                // cancel first, so that closing the sequence does not drain the remaining chunks
+                ChunkDownloader.this.close();
+                super.close();
+            }
+        };
+    }
+
+    private InputStream openChunk(String chunkId) {
+        InputStream chunkContent = serverFile.getChunkContentStream(chunkId);
+        if (chunkContent == null) {
+            throw new NoChunkError(chunkId);
+        }
+        return chunkContent;
+    }
+
+    /**
+     * Opens a chunk read straight off the connection, counting it once closed.
+     */
+    private InputStream openTracked(String chunkId) {
+        return new FilterInputStream(openChunk(chunkId)) {
+            private long count;
+            private boolean counted;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    count += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                count += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (!counted) {
+                    counted = true;
+                    tracker.chunkDone(count, count);
+                }
+            }
+        };
+    }
+
+    private SpooledChunk spool(String chunkId) throws IOException {
+        File spool = File.createTempFile(".chunk-" + serverFile.getId() + "-", ".part", spoolDirectory);
+        spools.add(spool);
+        boolean spooled = false;
+        long checksum;
+        long start = Metrics.start();
+        try (CheckedInputStream chunkContent = new CheckedInputStream(openChunk(chunkId), new CRC32());
+             FileChannel target = new FileOutputStream(spool).getChannel()) {
+            long size = transfer(Channels.newChannel(chunkContent), target, 0);
+            checksum = chunkContent.getChecksum().getValue();
+            LOG.debug("Downloaded chunk: {} (size={}B)", chunkId, size);
+            Metrics.stop(Metrics.CHUNK_DOWNLOAD, null, start);
+            Metrics.recordValue(Metrics.CHUNK_BYTES, "download", size);
+            tracker.chunkDone(size, size);
+            spooled = true;
+        } finally {
+            // also covers a download abandoned while this chunk was being spooled
+            if (!spooled || closed) {
+                release(spool);
+            }
+        }
+        if (closed) {
+            throw new CancellationException();
+        }
+        return new SpooledChunk(chunkId, spool, checksum);
+    }
+
+    private void release(File spool) {
+        spools.remove(spool);
+        if (!spool.delete() && spool.exists()) {
+            LOG.warn("Warning: failed to delete chunk spool file {}", spool);
+        }
+    }
+
+    private void fillWindow() {
+        while (inFlight.size() < concurrency && nextToSubmit < chunkList.size()) {
+            final String chunkId = chunkList.get(nextToSubmit++).getId();
+            inFlight.add(executor().submit(() -> spool(chunkId)));
+        }
+    }
+
+    /**
+     * Cancels any outstanding chunk requests, releases the worker threads and deletes any spooled
+     * chunks which have not been consumed. Workers writing into the target file are not
+     * interrupted, as that would close the file's channel, but stop after their current buffer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<SpooledChunk> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+        for (Future<WrittenChunk> future : writing) {
+            future.cancel(false);
+        }
+        writing.clear();
+        nextToSubmit = chunkList.size();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(WORKER_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (File spool : spools) {
+            release(spool);
+        }
+        tracker.close();
+    }
+}
@@ -0,0 +1,141 @@
+package com.anaplan.client;
+
+import com.anaplan.client.dto.ServerFileData;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds where to cut an upload chunk of a delimited file: just after the last separator which does
+ * not lie inside a field quoted with the delimiter. Both are matched as bytes in the file's own
+ * encoding, and for fixed-width encodings such as UTF-16LE only at character boundaries, so a
+ * chunk is never cut in the middle of a character or of a quoted field. The chunk is scanned in
+ * place, without copying. Instances hold no state between chunks and may be shared.
+ */
+class ChunkSplitter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkSplitter.class);
+
+    private final byte[] separator;
+    private final byte[] delimiter;
+    private final int unit;
+
+    /**
+     * @param encoding  the name of the file's character encoding, UTF-8 if null
+     * @param separator the separator to cut after, or null/empty to never cut
+     * @param delimiter the quoting delimiter, or null/empty if fields are not quoted
+     */
+    ChunkSplitter(String encoding, String separator, String delimiter) {
+        Charset charset = charsetOf(encoding);
+        this.unit = codeUnitWidth(charset);
+        this.separator = encode(separator, charset, unit);
+        this.delimiter = encode(delimiter, charset, unit);
+    }
+
+    ChunkSplitter(ServerFileData data) {
+        this(data.getEncoding(), data.getSeparator(), data.getDelimiter());
+    }
+
+    /**
+     * Finds the cut for the chunk held between the buffer's position and limit, assuming the
+     * chunk starts outside of any quoted field. The buffer's position and limit are not changed.
+     *
+     * @param chunk the chunk content
+     * @return the index just past the last separator outside of quotes, or the limit if there is
+     * no such separator
+     */
+    int boundary(ByteBuffer chunk) {
+        int start = chunk.position();
+        int limit = chunk.limit();
+        if (separator.length == 0) {
+            return limit;
+        }
+        int cut = delimiter.length == 0
+                ? lastSeparatorEnd(chunk, start, limit)
+                : lastUnquotedSeparatorEnd(chunk, start, limit);
+        return cut < 0 ? limit : cut;
+    }
+
+    private int lastSeparatorEnd(ByteBuffer chunk, int start, int limit) {
+        int from = limit - separator.length;
+        for (int i = from - (from - start) % unit; i >= start; i -= unit) {
+            if (matches(chunk, i, limit, separator)) {
+                return i + separator.length;
+            }
+        }
+        return -1;
+    }
+
+    private int lastUnquotedSeparatorEnd(ByteBuffer chunk, int start, int limit) {
+        // quote state can only be known scanning forwards; an escaped ("") delimiter toggles twice
+        boolean quoted = false;
+        int cut = -1;
+        int i = start;
+        while (i < limit) {
+            if (matches(chunk, i, limit, delimiter)) {
+                quoted = !quoted;
+                i += delimiter.length;
+            } else if (!quoted && matches(chunk, i, limit, separator)) {
+                i += separator.length;
+                cut = i;
+            } else {
+                i += unit;
+            }
+        }
+        return cut;
+    }
+
+    private static boolean matches(ByteBuffer chunk, int index, int limit, byte[] pattern) {
+        if (index + pattern.length > limit) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length; j++) {
+            if (chunk.get(index + j) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset charsetOf(String encoding) {
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unsupported encoding {}, splitting upload chunks as UTF-8", encoding);
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static int codeUnitWidth(Charset charset) {
+        String name = charset.name().toUpperCase(Locale.ROOT);
+        if (name.contains("UTF-16")) {
+            return 2;
+        } else if (name.contains("UTF-32")) {
+            return 4;
+        }
+        return 1;
+    }
+
+    private static byte[] encode(String value, Charset charset, int unit) {
+        if (value == null || value.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(charset);
+        // drop any byte-order mark the encoder puts in front of the value
+        int expected = unit == 2 ? value.length() * 2
+                : unit == 4 ? value.codePointCount(0, value.length()) * 4
+                : bytes.length;
+        if (bytes.length > expected) {
+            byte[] unmarked = new byte[expected];
+            System.arraycopy(bytes, bytes.length - expected, unmarked, 0, expected);
+            return unmarked;
+        }
+        return bytes;
+    }
+}
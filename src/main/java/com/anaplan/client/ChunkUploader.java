@@ -0,0 +1,219 @@
+package com.anaplan.client;
+
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.metrics.Metrics;
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import feign.FeignException;
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads the chunks of a {@link ServerFile} through a pipeline: the caller reads and splits the
+ * content and submits each chunk, a pool of workers gzips the chunks and a bounded pool of
+ * workers PUTs them to the server. At most a fixed number of chunks are in the pipeline at any
+ * time, so {@link #submit} blocks the reader when the uploads fall behind.
+ * <p>
+ * Compression is CPU bound, so its workers are shared by all uploads in the process and each
+ * keeps its own Deflater from one chunk to the next.
+ */
+class ChunkUploader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkUploader.class);
+    private static final ExecutorService COMPRESS_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("chunk-compress-%d")
+                    .build());
+
+    private final ServerFile serverFile;
+    private final int compressionLevel;
+    private final ExecutorService uploadExecutor;
+    private final Semaphore window;
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final TransferTracker tracker;
+
+    /**
+     * @param serverFile  the server file the chunks belong to
+     * @param concurrency the maximum number of chunks being compressed or uploaded at once
+     * @param tracker     counts the chunks once uploaded, and is closed with the uploader
+     */
+    ChunkUploader(ServerFile serverFile, int concurrency, TransferTracker tracker) {
+        this.serverFile = serverFile;
+        this.tracker = tracker;
+        this.compressionLevel = serverFile.getService().getConnectionProperties().getCompressionLevel();
+        int uploadThreads = Math.max(1, concurrency);
+        this.window = new Semaphore(uploadThreads);
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadThreads, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("chunk-upload-" + serverFile.getId() + "-%d")
+                .build());
+    }
+
+    /**
+     * Queues a chunk for compression and upload, waiting for room in the pipeline first. The
+     * content array must not be modified by the caller afterwards.
+     *
+     * @param chunkId the ID of the chunk on the server
+     * @param content the raw chunk content
+     * @param length  the number of bytes of content to upload, starting at index 0
+     * @throws InterruptedIOException if interrupted while waiting for room in the pipeline
+     */
+    void submit(String chunkId, byte[] content, int length) throws InterruptedIOException {
+        submit(chunkId, content, length, null);
+    }
+
+    /**
+     * Queues a chunk for compression and upload, waiting for room in the pipeline first. The
+     * content array may be reused by the caller once <code>onCompressed</code> has run.
+     *
+     * @param chunkId      the ID of the chunk on the server
+     * @param content      the raw chunk content
+     * @param length       the number of bytes of content to upload, starting at index 0
+     * @param onCompressed run once the content is no longer needed, or null
+     * @throws InterruptedIOException if interrupted while waiting for room in the pipeline
+     */
+    void submit(String chunkId, byte[] content, int length, Runnable onCompressed) throws InterruptedIOException {
+        submit(chunkId, content, length, onCompressed, null);
+    }
+
+    /**
+     * Queues a chunk for compression and upload, waiting for room in the pipeline first. The
+     * content array may be reused by the caller once <code>onCompressed</code> has run.
+     *
+     * @param chunkId      the ID of the chunk on the server
+     * @param content      the raw chunk content
+     * @param length       the number of bytes of content to upload, starting at index 0
+     * @param onCompressed run once the content is no longer needed, or null
+     * @param onUploaded   run on the upload thread once the server has acknowledged the chunk, or null
+     * @throws InterruptedIOException if interrupted while waiting for room in the pipeline
+     */
+    void submit(final String chunkId, final byte[] content, final int length, final Runnable onCompressed,
+                final Runnable onUploaded) throws InterruptedIOException {
+        acquire();
+        upload(chunkId, CompletableFuture
+                .supplyAsync(() -> {
+                    long start = Metrics.start();
+                    try {
+                        return GzipCompressor.gzip(content, 0, length, compressionLevel);
+                    } finally {
+                        Metrics.stop(Metrics.CHUNK_COMPRESS, null, start);
+                        Metrics.recordValue(Metrics.CHUNK_RAW_BYTES, null, length);
+                        if (onCompressed != null) {
+                            onCompressed.run();
+                        }
+                    }
+                }, COMPRESS_EXECUTOR), length, onUploaded);
+    }
+
+    /**
+     * Queues a chunk which has already been gzipped for upload, waiting for room in the pipeline
+     * first.
+     *
+     * @param chunkId    the ID of the chunk on the server
+     * @param compressed the gzipped chunk content
+     * @throws InterruptedIOException if interrupted while waiting for room in the pipeline
+     */
+    void submitCompressed(String chunkId, byte[] compressed) throws InterruptedIOException {
+        acquire();
+        upload(chunkId, CompletableFuture.completedFuture(compressed), compressed.length, null);
+    }
+
+    private void acquire() throws InterruptedIOException {
+        throwIfFailed();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while uploading chunks of " + serverFile.getId());
+        }
+    }
+
+    private void upload(final String chunkId, CompletableFuture<byte[]> compression, final int length,
+                        final Runnable onUploaded) {
+        CompletableFuture<Void> future = compression
+                .thenAcceptAsync(compressed -> {
+                    try {
+                        serverFile.uploadChunkCompressed(chunkId, compressed);
+                    } catch (FeignException e) {
+                        throw new AnaplanAPIException("Failed to upload chunk(" + chunkId + "): " + serverFile.getId(), e);
+                    }
+                    LOG.debug("Uploaded chunk: {} (size={}B, compressed={}B)", chunkId, length, compressed.length);
+                    tracker.chunkDone(length, compressed.length);
+                    if (onUploaded != null) {
+                        onUploaded.run();
+                    }
+                }, uploadExecutor)
+                .whenComplete((result, thrown) -> {
+                    window.release();
+                    if (thrown != null) {
+                        failure.compareAndSet(null, unwrap(thrown));
+                    }
+                });
+        pending.add(future);
+    }
+
+    /**
+     * Waits until every submitted chunk has been uploaded.
+     *
+     * @throws RuntimeException the first failure of any chunk upload
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    void await() throws InterruptedIOException {
+        for (CompletableFuture<Void> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while uploading chunks of " + serverFile.getId());
+            } catch (ExecutionException | CancellationException e) {
+                break;
+            }
+        }
+        throwIfFailed();
+        pending.clear();
+    }
+
+    private void throwIfFailed() {
+        RuntimeException thrown = failure.get();
+        if (thrown != null) {
+            close();
+            throw thrown;
+        }
+    }
+
+    private RuntimeException unwrap(Throwable thrown) {
+        Throwable cause = thrown instanceof CompletionException && thrown.getCause() != null
+                ? thrown.getCause() : thrown;
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new AnaplanAPIException("Failed to upload chunk of " + serverFile.getId(), cause);
+    }
+
+    /**
+     * Cancels any chunks still in the pipeline and releases the upload threads.
+     */
+    @Override
+    public void close() {
+        for (CompletableFuture<Void> future : pending) {
+            future.cancel(true);
+        }
+        uploadExecutor.shutdownNow();
+        tracker.close();
+    }
+}
@@ -7,6 +7,11 @@ public class Constants {
      */
     public static final String PW_FILE_PATH_SEGMENT = ".anaplan/api-client/keystore-access.txt";
 
+    /**
+     * Part of the path for the directory of cached auth tokens
+     */
+    public static final String TOKEN_CACHE_PATH_SEGMENT = ".anaplan/api-client/tokens";
+
     public static final int AC_MAJOR = 1;
     public static final int AC_MINOR = 4;
     public static final int AC_REVISION = 4 ;
@@ -33,4 +38,19 @@ public class Constants {
     public static final int MAX_HTTP_CONNECTION_TIMEOUT_SECS = 60;
 
     public static final double DEFAULT_BACKOFF_MULTIPLIER = 1.5;
+
+    public static final int MIN_CHUNK_CONCURRENCY = 1;
+    public static final int MAX_CHUNK_CONCURRENCY = 16;
+    public static final int DEFAULT_CHUNK_CONCURRENCY = 4;
+
+    public static final int MIN_COMPRESSION_LEVEL = 1;
+    public static final int MAX_COMPRESSION_LEVEL = 9;
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    public static final int MIN_CONNECTIONS = 1;
+    public static final int MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 16;
+    public static final int DEFAULT_KEEP_ALIVE_SECS = 300;
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 16;
 }
@@ -0,0 +1,271 @@
+package com.anaplan.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the rows of a delimited file, such as a downloaded server file, as it
+ * streams in. The first row is the header row.
+ * <p>
+ * Cells are separated by the file's separator and rows end with a line feed,
+ * a carriage return and line feed, or a carriage return. A cell starting with
+ * the first character of the delimiter is quoted: it runs to the matching
+ * delimiter, may hold separators and line ends, and a doubled delimiter in it
+ * stands for one. Anything between the closing delimiter and the next
+ * separator is kept as part of the cell. A byte order mark at the start of the
+ * file is skipped.
+ * <p>
+ * The content is decoded into a single buffer, which only grows to hold the
+ * longest cell, and each cell is scanned and unquoted in place, so no string
+ * is made per cell other than its value and no regular expression is
+ * compiled. {@link #readDataRow(List)} fills a list the caller keeps, rather
+ * than making an array per row. A reader is not thread safe.
+ */
+public class DelimitedCellReader implements CellReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DelimitedCellReader.class);
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] separator;
+    private final char separatorStart;
+    private final char quote;
+    private final boolean quoted;
+    private final List<String> scratch = new ArrayList<>();
+    private char[] buf;
+    // the unread content is buf[pos, limit); buf[mark, limit) is kept when refilling
+    private int pos;
+    private int limit;
+    private int mark;
+    private int write;
+    private boolean eof;
+    private String[] headerRow;
+    private boolean headerRowRead;
+
+    /**
+     * @param in        the content of the file
+     * @param encoding  the name of the file's character encoding, UTF-8 if null
+     * @param separator the separator between cells
+     * @param delimiter the quoting delimiter, or null/empty if cells are not
+     *                  quoted
+     */
+    public DelimitedCellReader(InputStream in, String encoding, String separator, String delimiter) {
+        this(new InputStreamReader(in, charsetOf(encoding)), separator, delimiter);
+    }
+
+    /**
+     * @param reader    the content of the file
+     * @param separator the separator between cells
+     * @param delimiter the quoting delimiter, or null/empty if cells are not
+     *                  quoted
+     */
+    public DelimitedCellReader(Reader reader, String separator, String delimiter) {
+        this(reader, separator, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    DelimitedCellReader(Reader reader, String separator, String delimiter, int bufferSize) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException("Cell separator must not be empty");
+        }
+        this.reader = reader;
+        this.separator = separator.toCharArray();
+        this.separatorStart = this.separator[0];
+        this.quoted = delimiter != null && !delimiter.isEmpty();
+        this.quote = quoted ? delimiter.charAt(0) : 0;
+        this.buf = new char[Math.max(bufferSize, this.separator.length + 1)];
+    }
+
+    /**
+     * Reads the header row, unless it has been read already.
+     *
+     * @return the cells of the first row, or null if the file is empty
+     */
+    @Override
+    public String[] getHeaderRow() throws IOException {
+        if (!headerRowRead) {
+            if (ensure(1) && buf[pos] == BYTE_ORDER_MARK) {
+                pos++;
+            }
+            headerRow = readRow(scratch) ? scratch.toArray(new String[0]) : null;
+            headerRowRead = true;
+        }
+        return headerRow;
+    }
+
+    /**
+     * @return the cells of the next row after the header row, or null if there
+     * are no more rows
+     */
+    @Override
+    public String[] readDataRow() throws IOException {
+        return readDataRow(scratch) ? scratch.toArray(new String[0]) : null;
+    }
+
+    /**
+     * Reads the next row after the header row into a list, which may be
+     * reused for every row.
+     *
+     * @param row the list to replace the content of with the cells of the row
+     * @return false, leaving the list empty, if there are no more rows
+     */
+    public boolean readDataRow(List<String> row) throws IOException {
+        getHeaderRow();
+        return readRow(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean readRow(List<String> row) throws IOException {
+        row.clear();
+        if (!ensure(1)) {
+            return false;
+        }
+        while (true) {
+            mark = pos;
+            row.add(quoted && buf[pos] == quote ? quotedCell() : cell());
+            mark = pos;
+            if (!ensure(1)) {
+                return true;
+            }
+            char c = buf[pos];
+            if (c == '\n') {
+                pos++;
+                return true;
+            }
+            if (c == '\r') {
+                pos++;
+                if (ensure(1) && buf[pos] == '\n') {
+                    pos++;
+                }
+                return true;
+            }
+            // cells only end at a line end, the end of the file or a separator
+            pos += separator.length;
+            if (!ensure(1)) {
+                row.add("");
+                return true;
+            }
+        }
+    }
+
+    private String cell() throws IOException {
+        do {
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '\n' || c == '\r' || c == separatorStart && atSeparator()) {
+                    return new String(buf, mark, pos - mark);
+                }
+                pos++;
+            }
+        } while (fill());
+        return new String(buf, mark, pos - mark);
+    }
+
+    private String quotedCell() throws IOException {
+        pos++;
+        mark = pos;
+        write = pos;
+        boolean inQuotes = true;
+        while (pos < limit || fill()) {
+            char c = buf[pos];
+            if (inQuotes) {
+                if (c != quote) {
+                    buf[write++] = c;
+                    pos++;
+                } else if (ensure(2) && buf[pos + 1] == quote) {
+                    buf[write++] = quote;
+                    pos += 2;
+                } else {
+                    inQuotes = false;
+                    pos++;
+                }
+            } else if (c == '\n' || c == '\r' || c == separatorStart && atSeparator()) {
+                break;
+            } else {
+                buf[write++] = c;
+                pos++;
+            }
+        }
+        return new String(buf, mark, write - mark);
+    }
+
+    private boolean atSeparator() throws IOException {
+        if (separator.length == 1) {
+            return true;
+        }
+        if (!ensure(separator.length)) {
+            return false;
+        }
+        for (int i = 1; i < separator.length; i++) {
+            if (buf[pos + i] != separator[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean ensure(int count) throws IOException {
+        while (limit - pos < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more of the file into the buffer, first moving the content from
+     * the mark to the start of the buffer, or growing the buffer if the
+     * content from the mark fills it.
+     *
+     * @return false if the file has ended
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (limit == buf.length) {
+            if (mark > 0) {
+                System.arraycopy(buf, mark, buf, 0, limit - mark);
+                pos -= mark;
+                limit -= mark;
+                write -= mark;
+                mark = 0;
+            } else {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        int read = reader.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private static Charset charsetOf(String encoding) {
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unsupported encoding {}, reading cells as UTF-8", encoding);
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.anaplan.client;
+
+import com.anaplan.client.dto.ChunkData;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoints a resumable download of a {@link ServerFile}. The manifest lives next to the
+ * partial file and records every chunk written to it, with its offset, length and CRC32; it is
+ * appended to as chunks are written, so it survives the download being killed. Since chunks are
+ * written in server order, the recorded chunks always make up a prefix of the file.
+ * <p>
+ * The format is line based: a header naming the server file and its chunk IDs, followed by one
+ * tab-separated <code>chunkId offset length crc32</code> line per chunk.
+ */
+class DownloadManifest implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownloadManifest.class);
+    private static final String HEADER_PREFIX = "anaplan-download-manifest\t1\t";
+    private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final String header;
+    private final List<Entry> entries = new ArrayList<>();
+    private Writer writer;
+
+    private static final class Entry {
+        private final String chunkId;
+        private final long offset;
+        private final long length;
+        private final long checksum;
+
+        private Entry(String chunkId, long offset, long length, long checksum) {
+            this.chunkId = chunkId;
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        private long end() {
+            return offset + length;
+        }
+
+        @Override
+        public String toString() {
+            return chunkId + "\t" + offset + "\t" + length + "\t" + Long.toHexString(checksum);
+        }
+    }
+
+    private DownloadManifest(File file, String header) {
+        this.file = file;
+        this.header = header;
+    }
+
+    /**
+     * @param partial the partial file being downloaded to
+     * @return the manifest location for the partial file
+     */
+    static File locationOf(File partial) {
+        return new File(partial.getAbsoluteFile().getParentFile(), partial.getName() + ".manifest");
+    }
+
+    /**
+     * Loads the manifest left behind by an interrupted download of the same server file, or starts
+     * an empty one if there is none or it belongs to a different file or chunk list.
+     *
+     * @param file      the manifest location
+     * @param fileId    the ID of the server file
+     * @param chunkList the chunks of the server file, in server order
+     * @return the manifest
+     */
+    static DownloadManifest open(File file, String fileId, List<ChunkData> chunkList) throws IOException {
+        StringBuilder header = new StringBuilder(HEADER_PREFIX).append(fileId).append('\t');
+        for (int i = 0; i < chunkList.size(); i++) {
+            header.append(i == 0 ? "" : ",").append(chunkList.get(i).getId());
+        }
+        DownloadManifest manifest = new DownloadManifest(file, header.toString());
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+                if (manifest.header.equals(reader.readLine())) {
+                    String line;
+                    while ((line = reader.readLine()) != null && manifest.entries.size() < chunkList.size()) {
+                        Entry entry = parse(line, chunkList.get(manifest.entries.size()).getId(), manifest.end());
+                        if (entry == null) {
+                            // the last line may have been cut short when the download was killed
+                            break;
+                        }
+                        manifest.entries.add(entry);
+                    }
+                } else {
+                    LOG.info("Ignoring download manifest {} left by a different server file", file);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private static Entry parse(String line, String expectedChunkId, long expectedOffset) {
+        String[] fields = line.split("\t");
+        if (fields.length != 4 || !fields[0].equals(expectedChunkId)) {
+            return null;
+        }
+        try {
+            Entry entry = new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3], 16));
+            return entry.offset == expectedOffset && entry.length >= 0 ? entry : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the recorded chunks against the content of the partial file, dropping the first chunk
+     * which does not match along with every chunk after it, and rewrites the manifest accordingly.
+     *
+     * @param partial the partial file
+     * @return the number of chunks which are complete and need not be downloaded again
+     */
+    int verify(FileChannel partial) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(VERIFY_BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        int verified = 0;
+        for (Entry entry : entries) {
+            if (entry.end() > partial.size()
+                    || checksum(partial, entry.offset, entry.length, buffer, crc) != entry.checksum) {
+                LOG.info("Chunk {} of the partial download is incomplete, resuming from there", verified);
+                break;
+            }
+            verified++;
+        }
+        entries.subList(verified, entries.size()).clear();
+        rewrite();
+        return verified;
+    }
+
+    private static long checksum(FileChannel channel, long offset, long length, ByteBuffer buffer, CRC32 crc)
+            throws IOException {
+        crc.reset();
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return -1;
+            }
+            crc.update(buffer.array(), 0, read);
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the offset following the last recorded chunk
+     */
+    long end() {
+        return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).end();
+    }
+
+    /**
+     * Records a chunk which has been written to the partial file.
+     */
+    void record(String chunkId, long offset, long length, long checksum) throws IOException {
+        if (writer == null) {
+            rewrite();
+        }
+        Entry entry = new Entry(chunkId, offset, length, checksum);
+        entries.add(entry);
+        writer.write(entry + "\n");
+        writer.flush();
+    }
+
+    private void rewrite() throws IOException {
+        close();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        writer.write(header + "\n");
+        for (Entry entry : entries) {
+            writer.write(entry + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Removes the manifest once the download has completed.
+     */
+    void delete() throws IOException {
+        close();
+        if (!file.delete() && file.exists()) {
+            throw new FileNotFoundException("Download manifest \"" + file + "\" cannot be deleted");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.anaplan.client;
+
+import com.anaplan.client.dto.NamedObjectData;
+import com.anaplan.client.metrics.Metrics;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches the modules, server files, imports, exports, actions and processes of
+ * the models used through a {@link Service}, so that looking one up by its id,
+ * code or name does not list them all from the server again.
+ * <p>
+ * Each list is loaded in full on the first lookup, by a single thread even
+ * when several look it up at once, and indexed by id and by lower-cased code
+ * and name. Only copies of the listed data are kept, and every lookup builds
+ * a new object from a copy of its own, since the objects and their data are
+ * changed as they are used. Lists expire after a time to live and the least recently used
+ * lists are dropped beyond a maximum number. Changes made on the server by
+ * other clients are only seen once a list expires or is invalidated.
+ */
+public class MetadataCache {
+
+    public static final long DEFAULT_TTL_SECS = 300;
+    public static final long DEFAULT_MAX_LISTS = 256;
+
+    private final Cache<String, Index> lists;
+
+    public MetadataCache() {
+        this(DEFAULT_TTL_SECS, TimeUnit.SECONDS, DEFAULT_MAX_LISTS);
+    }
+
+    /**
+     * @param ttl      how long a list is kept after it was loaded; zero
+     *                 disables caching
+     * @param unit     the unit of the time to live
+     * @param maxLists the maximum number of lists kept, one per kind of object
+     *                 of each model
+     */
+    public MetadataCache(long ttl, TimeUnit unit, long maxLists) {
+        this.lists = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maxLists)
+                .build();
+    }
+
+    /**
+     * Finds an object of a model by its id, or else by its code or name,
+     * ignoring case.
+     *
+     * @param model      the model holding the object
+     * @param type       the kind of object
+     * @param list       lists all objects of the kind from the server
+     * @param create     builds an object of the kind from its data
+     * @param identifier the id, code or name of the object
+     * @return a new object for the first listed object matching the
+     * identifier, or null
+     */
+    <T extends NamedObject, D extends NamedObjectData> T find(Model model, Class<T> type,
+            Supplier<Iterable<T>> list, Function<D, T> create, String identifier) {
+        D data = load(model, type, list).find(identifier);
+        return data == null ? null : create.apply(data);
+    }
+
+    /**
+     * Drops one kind of object of a model, to be listed again on the next
+     * lookup.
+     */
+    public void invalidate(String workspaceId, String modelId, Class<? extends NamedObject> type) {
+        lists.invalidate(key(workspaceId, modelId, type));
+    }
+
+    /**
+     * Drops every kind of object of a model.
+     */
+    public void invalidate(String workspaceId, String modelId) {
+        String prefix = workspaceId + '/' + modelId + '/';
+        lists.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Drops everything.
+     */
+    public void invalidateAll() {
+        lists.invalidateAll();
+    }
+
+    private <T extends NamedObject> Index load(Model model, Class<T> type, Supplier<Iterable<T>> list) {
+        try {
+            return lists.get(key(model.getWorkspace().getId(), model.getId(), type),
+                    () -> {
+                        long start = Metrics.start();
+                        try {
+                            return new Index(list.get());
+                        } finally {
+                            Metrics.stop(Metrics.METADATA_LOAD, type.getSimpleName(), start);
+                        }
+                    });
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String key(String workspaceId, String modelId, Class<?> type) {
+        return workspaceId + '/' + modelId + '/' + type.getSimpleName();
+    }
+
+    /**
+     * The data of the objects of one kind of a model, with their positions by
+     * id, code and name.
+     */
+    private static final class Index {
+
+        private final List<NamedObjectData> objects = new ArrayList<>();
+        private final Map<String, Integer> byId = new HashMap<>();
+        private final Map<String, Integer> byCode = new HashMap<>();
+        private final Map<String, Integer> byName = new HashMap<>();
+
+        Index(Iterable<? extends NamedObject> list) {
+            for (NamedObject object : list) {
+                Integer position = objects.size();
+                objects.add(object.getData().copy());
+                if (object.getId() != null) {
+                    byId.putIfAbsent(object.getId(), position);
+                }
+                if (object.getCode() != null) {
+                    byCode.putIfAbsent(object.getCode().toLowerCase(Locale.ROOT), position);
+                }
+                if (object.getName() != null) {
+                    byName.putIfAbsent(object.getName().toLowerCase(Locale.ROOT), position);
+                }
+            }
+        }
+
+        <D extends NamedObjectData> D find(String identifier) {
+            String lowerCase = identifier.toLowerCase(Locale.ROOT);
+            int first = Math.min(position(byId, identifier),
+                    Math.min(position(byCode, lowerCase), position(byName, lowerCase)));
+            return first == Integer.MAX_VALUE ? null : objects.get(first).copy();
+        }
+
+        private static int position(Map<String, Integer> index, String key) {
+            Integer position = index.get(key);
+            return position == null ? Integer.MAX_VALUE : position;
+        }
+    }
+}
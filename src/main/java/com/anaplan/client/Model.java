@@ -14,7 +14,12 @@
 
 package com.anaplan.client;
 
+import com.anaplan.client.dto.ExportData;
+import com.anaplan.client.dto.ImportData;
 import com.anaplan.client.dto.ModelData;
+import com.anaplan.client.dto.ModuleData;
+import com.anaplan.client.dto.NamedObjectData;
+import com.anaplan.client.dto.ProcessData;
 import com.anaplan.client.dto.ServerFileData;
 import com.anaplan.client.dto.responses.ActionsResponse;
 import com.anaplan.client.dto.responses.ExportsResponse;
@@ -68,27 +73,28 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.1
      */
     public Iterable<Module> getModules() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<Module>() {
+        Model self = this;
+        return new Paginator<Module>() {
 
-                @Override
-                public Module[] getPage(int offset) {
-                    ModulesResponse response = getApi().getModules(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(moduleData -> new Module(self, moduleData))
-                                .toArray(Module[]::new);
-                    } else {
-                        return new Module[]{};
-                    }
+            @Override
+            public Module[] getPage(int offset) {
+                ModulesResponse response = getApi().getModules(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(moduleData -> new Module(self, moduleData))
+                            .toArray(Module[]::new);
+                } else {
+                    return new Module[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ModulesNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ModulesNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -99,14 +105,8 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.1
      */
     public Module getModule(String identifier) throws AnaplanAPIException {
-        for (Module module : getModules()) {
-            if (identifier.equals(module.getId())
-                    || identifier.equalsIgnoreCase(module.getCode())
-                    || identifier.equalsIgnoreCase(module.getName())) {
-                return module;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, Module.class, this::getModules,
+                (ModuleData data) -> new Module(this, data), identifier);
     }
 
     /**
@@ -115,27 +115,28 @@ public class Model extends AnaplanApiClientObject {
      * @return A list of the available server files within this model
      */
     public Iterable<ServerFile> getServerFiles() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<ServerFile>() {
+        Model self = this;
+        return new Paginator<ServerFile>() {
 
-                @Override
-                public ServerFile[] getPage(int offset) {
-                    ServerFilesResponse response = getApi().getServerFiles(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(serverFileData -> new ServerFile(self, serverFileData))
-                                .toArray(ServerFile[]::new);
-                    } else {
-                        return new ServerFile[]{};
-                    }
+            @Override
+            public ServerFile[] getPage(int offset) {
+                ServerFilesResponse response = getApi().getServerFiles(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(serverFileData -> new ServerFile(self, serverFileData))
+                            .toArray(ServerFile[]::new);
+                } else {
+                    return new ServerFile[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ServerFilesNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ServerFilesNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -146,14 +147,8 @@ public class Model extends AnaplanApiClientObject {
      */
     public ServerFile getServerFile(String identifier)
             throws AnaplanAPIException {
-        for (ServerFile serverFile : getServerFiles()) {
-            if (identifier.equals(serverFile.getId())
-                    || identifier.equalsIgnoreCase(serverFile.getCode())
-                    || identifier.equalsIgnoreCase(serverFile.getName())) {
-                return serverFile;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, ServerFile.class, this::getServerFiles,
+                (ServerFileData data) -> new ServerFile(this, data), identifier);
     }
 
     /**
@@ -179,6 +174,7 @@ public class Model extends AnaplanApiClientObject {
         if (response == null || response.getItem() == null) {
             throw new CreateImportDatasourceError(name);
         }
+        getService().getMetadataCache().invalidate(workspace.getId(), getId(), ServerFile.class);
         return new ServerFile(this, response.getItem());
     }
 
@@ -188,26 +184,27 @@ public class Model extends AnaplanApiClientObject {
      * @return A list of the available imports within this model
      */
     public Iterable<Import> getImports() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<Import>() {
-                @Override
-                public Import[] getPage(int offset) {
-                    ImportsResponse response = getApi().getImports(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(importData -> new Import(self, importData))
-                                .toArray(Import[]::new);
-                    } else {
-                        return new Import[]{};
-                    }
+        Model self = this;
+        return new Paginator<Import>() {
+            @Override
+            public Import[] getPage(int offset) {
+                ImportsResponse response = getApi().getImports(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(importData -> new Import(self, importData))
+                            .toArray(Import[]::new);
+                } else {
+                    return new Import[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ImportsNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ImportsNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -217,14 +214,8 @@ public class Model extends AnaplanApiClientObject {
      * @return The Import object
      */
     public Import getImport(String identifier) throws AnaplanAPIException {
-        for (Import serverImport : getImports()) {
-            if (identifier.equals(serverImport.getId())
-                    || identifier.equalsIgnoreCase(serverImport.getCode())
-                    || identifier.equalsIgnoreCase(serverImport.getName())) {
-                return serverImport;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, Import.class, this::getImports,
+                (ImportData data) -> new Import(this, data), identifier);
     }
 
     /**
@@ -233,26 +224,27 @@ public class Model extends AnaplanApiClientObject {
      * @return A list of the available exports within this model
      */
     public Iterable<Export> getExports() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<Export>() {
-                @Override
-                public Export[] getPage(int offset) {
-                    ExportsResponse response = getApi().getExports(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(exportData -> new Export(self, exportData))
-                                .toArray(Export[]::new);
-                    } else {
-                        return new Export[]{};
-                    }
+        Model self = this;
+        return new Paginator<Export>() {
+            @Override
+            public Export[] getPage(int offset) {
+                ExportsResponse response = getApi().getExports(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(exportData -> new Export(self, exportData))
+                            .toArray(Export[]::new);
+                } else {
+                    return new Export[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ExportsNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ExportsNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -262,14 +254,8 @@ public class Model extends AnaplanApiClientObject {
      * @return The Export object
      */
     public Export getExport(String identifier) throws AnaplanAPIException {
-        for (Export serverExport : getExports()) {
-            if (identifier.equals(serverExport.getId())
-                    || identifier.equalsIgnoreCase(serverExport.getCode())
-                    || identifier.equalsIgnoreCase(serverExport.getName())) {
-                return serverExport;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, Export.class, this::getExports,
+                (ExportData data) -> new Export(this, data), identifier);
     }
 
     /**
@@ -279,26 +265,27 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.1
      */
     public Iterable<Action> getActions() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<Action>() {
-                @Override
-                public Action[] getPage(int offset) {
-                    ActionsResponse response = getApi().getActions(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(actionData -> new Action(self, actionData))
-                                .toArray(Action[]::new);
-                    } else {
-                        return new Action[]{};
-                    }
+        Model self = this;
+        return new Paginator<Action>() {
+            @Override
+            public Action[] getPage(int offset) {
+                ActionsResponse response = getApi().getActions(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(actionData -> new Action(self, actionData))
+                            .toArray(Action[]::new);
+                } else {
+                    return new Action[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ActionsNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ActionsNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -309,14 +296,8 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.1
      */
     public Action getAction(String identifier) throws AnaplanAPIException {
-        for (Action serverAction : getActions()) {
-            if (identifier.equals(serverAction.getId())
-                    || identifier.equalsIgnoreCase(serverAction.getCode())
-                    || identifier.equalsIgnoreCase(serverAction.getName())) {
-                return serverAction;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, Action.class, this::getActions,
+                (NamedObjectData data) -> new Action(this, data), identifier);
     }
 
     /**
@@ -326,26 +307,27 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.3
      */
     public Iterable<Process> getProcesses() throws AnaplanAPIException {
-        try {
-            Model self = this;
-            return new Paginator<Process>() {
-                @Override
-                public Process[] getPage(int offset) {
-                    ProcessesResponse response = getApi().getProcesses(workspace.getId(), getId(), offset);
-                    setPageInfo(response.getMeta().getPaging());
-                    if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
-                        return response.getItem()
-                                .stream()
-                                .map(processData -> new Process(self, processData))
-                                .toArray(Process[]::new);
-                    } else {
-                        return new Process[]{};
-                    }
+        Model self = this;
+        return new Paginator<Process>() {
+            @Override
+            public Process[] getPage(int offset) {
+                ProcessesResponse response = getApi().getProcesses(workspace.getId(), getId(), offset);
+                setPageInfo(response.getMeta().getPaging());
+                if (getPageInfo().getCurrentPageSize() > 0 && response.getItem() != null) {
+                    return response.getItem()
+                            .stream()
+                            .map(processData -> new Process(self, processData))
+                            .toArray(Process[]::new);
+                } else {
+                    return new Process[]{};
                 }
-            };
-        } catch (FeignException e) {
-            throw new ProcessesNotFoundException(getId(), e);
-        }
+            }
+
+            @Override
+            protected RuntimeException translate(FeignException e) {
+                return new ProcessesNotFoundException(getId(), e);
+            }
+        };
     }
 
     /**
@@ -356,13 +338,7 @@ public class Model extends AnaplanApiClientObject {
      * @since 1.3
      */
     public Process getProcess(String identifier) throws AnaplanAPIException {
-        for (Process serverProcess : getProcesses()) {
-            if (identifier.equals(serverProcess.getId())
-                    || identifier.equalsIgnoreCase(serverProcess.getCode())
-                    || identifier.equalsIgnoreCase(serverProcess.getName())) {
-                return serverProcess;
-            }
-        }
-        return null;
+        return getService().getMetadataCache().find(this, Process.class, this::getProcesses,
+                (ProcessData data) -> new Process(this, data), identifier);
     }
 }
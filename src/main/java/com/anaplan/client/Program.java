@@ -16,12 +16,10 @@ package com.anaplan.client;
 
 import com.anaplan.client.auth.Credentials;
 import com.anaplan.client.auth.KeyStoreManager;
-import com.anaplan.client.dto.ChunkData;
 import com.anaplan.client.dto.ExportMetadata;
 import com.anaplan.client.dto.ModelData;
 import com.anaplan.client.ex.AnaplanAPIException;
 import com.anaplan.client.ex.BadSystemPropertyError;
-import com.anaplan.client.ex.NoChunkError;
 import com.anaplan.client.ex.PrivateKeyException;
 import com.anaplan.client.jdbc.JDBCCellReader;
 import com.anaplan.client.jdbc.JDBCCellWriter;
@@ -32,7 +30,6 @@ import com.anaplan.client.transport.retryer.AnaplanJdbcRetryer;
 import com.anaplan.client.transport.retryer.FeignApiRetryer;
 import com.google.common.base.Strings;
 import com.opencsv.CSVParser;
-import java.io.ByteArrayInputStream;
 import java.io.Console;
 import java.io.File;
 import java.io.FileInputStream;
@@ -62,6 +59,7 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -127,6 +125,10 @@ public class Program implements Serializable {
     private static int maxRetryCount = Constants.MIN_RETRY_COUNT;
     private static int retryTimeout = Constants.MIN_RETRY_TIMEOUT_SECS;
     private static int httpConnectionTimeout = Constants.MIN_HTTP_CONNECTION_TIMEOUT_SECS;
+    private static int chunkConcurrency = Constants.DEFAULT_CHUNK_CONCURRENCY;
+    private static int compressionLevel = Constants.DEFAULT_COMPRESSION_LEVEL;
+    private static boolean resumeTransfers = false;
+    private static boolean tokenCacheEnabled = Constants.AUTH_CLIENT_CACHE_ENABLED;
     private ConnectionProperties properties;
 
     private static final Logger LOG = LoggerFactory.getLogger(Program.class);
@@ -296,7 +298,7 @@ public class Program implements Serializable {
                         if (serverFile != null) {
                             if (arg == "-gets") {
                                 InputStream inputStream = serverFile
-                                        .getDownloadStream();
+                                        .getDownloadStream(chunkConcurrency);
                                 byte[] buffer = new byte[4096];
                                 int read;
                                 do {
@@ -307,25 +309,34 @@ public class Program implements Serializable {
                                 System.out.flush();
                                 inputStream.close();
                             } else {
-                                CellReader cellReader = serverFile
-                                        .getDownloadCellReader();
-                                String[] row = cellReader.getHeaderRow();
-                                do {
-                                    StringBuilder line = new StringBuilder();
-                                    for (int i = 0; i < row.length; ++i) {
-                                        if (line.length() > 0)
-                                            line.append('\t');
-                                        line.append(row[i]);
+                                DelimitedCellReader cellReader = serverFile
+                                        .getDownloadCellReader(chunkConcurrency);
+                                try {
+                                    String[] headerRow = cellReader.getHeaderRow();
+                                    if (headerRow != null) {
+                                        LOG.info(String.join("\t", headerRow));
+                                    }
+                                    List<String> row = new ArrayList<>();
+                                    while (cellReader.readDataRow(row)) {
+                                        LOG.info(String.join("\t", row));
                                     }
-                                    LOG.info(line.toString());
-                                    row = cellReader.readDataRow();
-                                } while (null != row);
+                                } finally {
+                                    cellReader.close();
+                                }
                             }
                         }
                     }
 
                 } else if (arg == "-ch" || arg == "-chunksize") {
                     fetchChunkSize(args[argi++]);
+                } else if (arg == "-cc" || arg == "-chunkconcurrency") {
+                    chunkConcurrency = fetchChunkConcurrency(args[argi++]);
+                } else if (arg == "-cl" || arg == "-compressionlevel") {
+                    compressionLevel = fetchCompressionLevel(args[argi++]);
+                } else if (arg == "-rs" || arg == "-resume") {
+                    resumeTransfers = true;
+                } else if (arg == "-tc" || arg == "-tokencache") {
+                    tokenCacheEnabled = true;
                 } else if (arg == "-auth" || arg == "-authserviceurl") {
                     authServiceUrl = new URI(args[argi++]);
                 } else if (arg == "-puts" || arg == "-putc") {
@@ -335,7 +346,7 @@ public class Program implements Serializable {
                     if (serverFile != null) {
                         if (arg == "-puts") {
                             OutputStream uploadStream = serverFile
-                                    .getUploadStream(chunkSize);
+                                    .getUploadStream(chunkSize, chunkConcurrency);
                             byte[] buf = new byte[4096];
                             int read;
                             do {
@@ -457,7 +468,7 @@ public class Program implements Serializable {
                         ServerFile serverFile = getServerFile(workspaceId, modelId,
                                 sourceId, false);
                         if (serverFile != null) {
-                            serverFile.downLoad(targetFile, true);
+                            serverFile.downLoad(targetFile, true, chunkConcurrency, resumeTransfers);
                             LOG.info("The server file {} has been downloaded to {}", sourceId, targetFile.getAbsolutePath());
                         }
                     }
@@ -469,7 +480,7 @@ public class Program implements Serializable {
                     ServerFile serverFile = getServerFile(workspaceId, modelId,
                             destId, true);
                     if (serverFile != null) {
-                        serverFile.upLoad(sourceFile, true, chunkSize);
+                        serverFile.upLoad(sourceFile, true, chunkSize, chunkConcurrency, resumeTransfers);
                         LOG.info("The file \"" + sourceFile
                                 + "\" has been uploaded as " + destId + ".");
                     }
@@ -578,15 +589,15 @@ public class Program implements Serializable {
                         ServerFile serverFile = getServerFile(workspaceId, modelId,
                                 exportId, true);
                         if (serverFile != null) {
-                            CellWriter cellWriter = null;
+                            JDBCCellWriter cellWriter = null;
                             somethingDone = true;
                             Export export = getExport(workspaceId, modelId, exportId);
                             ExportMetadata emd = export.getExportMetadata();
-                            InputStream inputStream = null;
+                            CellReader cellReader = null;
                             int columnCount = emd.getColumnCount();
                             int transferredrows = 0;
                             int[] mapcols = new int[columnCount];
-                            String separator = emd.getSeparator();
+                            String separator = emd.getSeparator() == null ? "\t" : emd.getSeparator();
                             //build map for metadata for exports
                             HashMap<String, Integer> headerName = new HashMap();
                             for (int i = 0; i < emd.getHeaderNames().length; i++) {
@@ -594,7 +605,6 @@ public class Program implements Serializable {
                             }
                             for (int k = 0; k < maxRetryCount; k++) {
                                 try {
-                                    List<ChunkData> chunkList = serverFile.getChunks();
                                     //jdbc params exists
                                     if (jdbcConfig.getJdbcParams() != null && jdbcConfig.getJdbcParams().length > 0
                                             && !jdbcConfig.getJdbcParams()[0].equals("")) {
@@ -612,12 +622,10 @@ public class Program implements Serializable {
                                     }
                                     //Retry Fix
                                     cellWriter = new JDBCCellWriter(jdbcConfig);
-                                    for (ChunkData chunk : chunkList) {
-                                        byte[] chunkContent = serverFile.getChunkContent(chunk.getId());
-                                        if (chunkContent == null) throw new NoChunkError(chunk.getId());
-                                        inputStream = new ByteArrayInputStream(chunkContent);
-                                        transferredrows = cellWriter.writeDataRow(exportId,maxRetryCount,retryTimeout,inputStream, chunkList.size(), chunk.getId(), mapcols, columnCount, separator);
-                                    }
+                                    cellReader = new DelimitedCellReader(serverFile.getDownloadStream(chunkConcurrency),
+                                            emd.getEncoding(), separator, emd.getDelimiter());
+                                    transferredrows = cellWriter.writeRows(exportId, cellReader, mapcols, columnCount,
+                                            maxRetryCount, retryTimeout);
                                     if (transferredrows != 0) {
                                         LOG.info("Transferred {} records to {}", transferredrows, jdbcConfig.getJdbcConnectionUrl());
                                     } else if (transferredrows == 0) {
@@ -641,8 +649,8 @@ public class Program implements Serializable {
                                         LOG.debug("Sleep was interrupted.");
                                     }
                                 } finally {
-                                    if (inputStream != null)
-                                        inputStream.close();
+                                    if (cellReader != null)
+                                        cellReader.close();
                                     if (cellWriter!=null)
                                     cellWriter.close();
                                 }
@@ -700,6 +708,34 @@ public class Program implements Serializable {
         return chunkSize;
     }
 
+    private static int fetchChunkConcurrency(String value) {
+        Integer concurrency;
+        try {
+            concurrency = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Provided Chunk-Concurrency is not a number!");
+        }
+        if (concurrency > Constants.MAX_CHUNK_CONCURRENCY || concurrency < Constants.MIN_CHUNK_CONCURRENCY) {
+            throw new IllegalArgumentException("Chunk-Concurrency can only be within the range ["
+                    + Constants.MIN_CHUNK_CONCURRENCY + ", " + Constants.MAX_CHUNK_CONCURRENCY + "]");
+        }
+        return concurrency;
+    }
+
+    private static int fetchCompressionLevel(String value) {
+        Integer level;
+        try {
+            level = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Provided Compression-Level is not a number!");
+        }
+        if (level > Constants.MAX_COMPRESSION_LEVEL || level < Constants.MIN_COMPRESSION_LEVEL) {
+            throw new IllegalArgumentException("Compression-Level can only be within the range ["
+                    + Constants.MIN_COMPRESSION_LEVEL + ", " + Constants.MAX_COMPRESSION_LEVEL + "]");
+        }
+        return level;
+    }
+
     private static int fetchMaxRetryCount(String value) {
         Integer maxRetryCount;
         try {
@@ -1080,6 +1116,8 @@ public class Program implements Serializable {
             props.setRetryTimeout(retryTimeout);
             props.setMaxRetryCount(maxRetryCount);
             props.setHttpTimeout(httpConnectionTimeout);
+            props.setCompressionLevel(compressionLevel);
+            props.setTokenCacheEnabled(tokenCacheEnabled);
             if (proxyLocationSet) {
                 props.setProxyLocation(proxyLocation);
                 props.setProxyCredentials(getProxyCredentials());
@@ -1696,6 +1734,8 @@ public class Program implements Serializable {
                 + "(-mrc|-maxretrycount): Max retry count for API calls\n"
                 + "(-rt|-retrytimeout): Retry timeout for Http client calls\n"
                 + "(-ct|-httptimeout): Http client connection timeout\n"
+                + "(-tc|-tokencache): keep the auth token encrypted under ~/" + Constants.TOKEN_CACHE_PATH_SEGMENT
+                + ", so that later runs with the same credentials reuse it instead of authenticating\n"
                 + "\n"
                 + "Workspace Contents:\n"
                 + "-------------------\n"
@@ -1704,10 +1744,16 @@ public class Program implements Serializable {
                 + "(-F|-files): list available server files in selected model\n"
                 + "(-f|-file) (<id>|<name>): select a server file by id/name\n"
                 + "(-ch|-chunksize): upload chunk-size number, defaults to 1048576.\n"
+                + "(-cc|-chunkconcurrency): number of file chunks transferred in parallel, defaults to "
+                + Constants.DEFAULT_CHUNK_CONCURRENCY + ".\n"
+                + "(-cl|-compressionlevel): gzip level (1-9) for uploaded chunks, defaults to "
+                + Constants.DEFAULT_COMPRESSION_LEVEL + ".\n"
                 + "\n"
                 + "Data Transfer:\n"
                 + "--------------\n"
                 + "(-g|-get) <local path>: Download specified server file to local file\n"
+                + "(-rs|-resume): keep track of the chunks transferred by -get or -put, so that"
+                + " running it again after a failure only transfers the rest\n"
                 + "-gets Write specified server file to standard output\n"
                 + "-getc Write tab-separated server file to standard output\n"
                 + "(-p|-put) <local path>: Upload to specified server file from local file\n"
@@ -20,27 +20,31 @@ import com.anaplan.client.dto.responses.ChunksResponse;
 import com.anaplan.client.dto.responses.ServerFileResponse;
 import com.anaplan.client.ex.AnaplanAPIException;
 import com.anaplan.client.ex.CreateImportDatasourceError;
-import com.anaplan.client.ex.NoChunkError;
 import com.anaplan.client.logging.LogUtils;
+import com.anaplan.client.metrics.Metrics;
+import com.google.common.io.ByteStreams;
 import feign.FeignException;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,11 +94,61 @@ public class ServerFile extends NamedObject implements Serializable {
      * @return
      */
     byte[] getChunkContent(String chunkId) {
-        return getApi().getChunkContent(
+        long start = Metrics.start();
+        byte[] content = getApi().getChunkContent(
                 getWorkspace().getId(),
                 getModel().getId(),
                 getId(),
                 chunkId);
+        Metrics.stop(Metrics.CHUNK_DOWNLOAD, null, start);
+        if (content != null) {
+            Metrics.recordValue(Metrics.CHUNK_BYTES, "download", content.length);
+        }
+        return content;
+    }
+
+    /**
+     * Opens the Chunk content as a stream over the live response body, which the
+     * caller must close
+     *
+     * @param chunkId
+     * @return
+     */
+    InputStream getChunkContentStream(String chunkId) {
+        return getApi().getChunkContentStream(
+                getWorkspace().getId(),
+                getModel().getId(),
+                getId(),
+                chunkId);
+    }
+
+    /**
+     * Uploads the content of a chunk which has already been gzipped
+     *
+     * @param chunkId
+     * @param compressedContent
+     */
+    void uploadChunkCompressed(String chunkId, byte[] compressedContent) {
+        long start = Metrics.start();
+        getApi().uploadChunkPrecompressed(
+                getWorkspace().getId(),
+                getModel().getId(),
+                getId(),
+                chunkId,
+                compressedContent);
+        Metrics.stop(Metrics.CHUNK_UPLOAD, null, start);
+        Metrics.recordValue(Metrics.CHUNK_BYTES, "upload", compressedContent.length);
+    }
+
+    /**
+     * Starts tracking a transfer of this file for the transfer listener of the service
+     *
+     * @param chunksTotal the number of chunks, or -1 if unknown
+     * @param totalBytes  the raw size of the content, or -1 if unknown
+     */
+    private TransferTracker track(TransferProgress.Direction direction, int chunksTotal, long totalBytes) {
+        return new TransferTracker(getService().getTransferListener(), direction, getName(), chunksTotal,
+                totalBytes).start();
     }
 
     /**
@@ -105,6 +159,40 @@ public class ServerFile extends NamedObject implements Serializable {
      *                       already exists; otherwise an Exception will be thrown
      */
     public void downLoad(File target, boolean deleteExisting) throws IOException {
+        downLoad(target, deleteExisting, Constants.DEFAULT_CHUNK_CONCURRENCY);
+    }
+
+    /**
+     * Download a file from the server, writing it to the specified target file.
+     * Up to <code>concurrency</code> chunks are fetched from the server in parallel.
+     *
+     * @param target         The target file to write to
+     * @param deleteExisting If true, the target file will automatically be deleted if it
+     *                       already exists; otherwise an Exception will be thrown
+     * @param concurrency    The maximum number of chunks downloaded in parallel
+     */
+    public void downLoad(File target, boolean deleteExisting, int concurrency) throws IOException {
+        downLoad(target, deleteExisting, concurrency, false);
+    }
+
+    /**
+     * Download a file from the server, writing it to the specified target file.
+     * Up to <code>concurrency</code> chunks are fetched from the server in parallel.
+     * <p>
+     * A resumable download keeps a manifest of the chunks written so far next to
+     * the partial file. If the download is interrupted, downloading the same server
+     * file to the same target again verifies the chunks already written against the
+     * manifest and only fetches the rest. This assumes the server file has not been
+     * regenerated in the meantime, e.g. by running its export again.
+     *
+     * @param target         The target file to write to
+     * @param deleteExisting If true, the target file will automatically be deleted if it
+     *                       already exists; otherwise an Exception will be thrown
+     * @param concurrency    The maximum number of chunks downloaded in parallel
+     * @param resumable      If true, resume an interrupted download of the same file
+     */
+    public void downLoad(File target, boolean deleteExisting, int concurrency, boolean resumable)
+            throws IOException {
         LogUtils.logSeparatorDownload();
         LOG.info("Downloading file {}", target.getAbsolutePath());
         if (target.exists()) {
@@ -127,23 +215,47 @@ public class ServerFile extends NamedObject implements Serializable {
         File partial = new File(target.getParentFile(), ".partial."
                 + target.getName());
         RandomAccessFile partialFile = new RandomAccessFile(partial, "rw");
+        DownloadManifest manifest = null;
         try {
-            partialFile.setLength(0);
-
             // Get list of chunks from server
             List<ChunkData> chunkList = getChunks();
-            //checking in case chunklist is null
-            if(chunkList!=null) {
-                for (ChunkData chunk : chunkList) {
-                    byte[] chunkContent = getChunkContent(chunk.getId());
-                    if (chunkContent == null) throw new NoChunkError(chunk.getId());
-                    partialFile.write(chunkContent);
+            if (chunkList == null) {
+                chunkList = Collections.emptyList();
+            }
+            int chunksDone = 0;
+            if (resumable) {
+                manifest = DownloadManifest.open(DownloadManifest.locationOf(partial), getId(), chunkList);
+                chunksDone = manifest.verify(partialFile.getChannel());
+                if (chunksDone > 0) {
+                    LOG.info("Resuming download of {} after {} of {} chunks", getId(), chunksDone, chunkList.size());
                 }
             }
+            partialFile.setLength(manifest == null ? 0 : manifest.end());
+            TransferTracker tracker = track(TransferProgress.Direction.DOWNLOAD, chunkList.size(), -1);
+            tracker.skipped(chunksDone, partialFile.length());
+
+            // chunks downloaded ahead are written straight into the partial file, or spooled next
+            // to it if their offsets cannot be told in advance, rather than held in memory
+            try (ChunkDownloader downloader = new ChunkDownloader(this,
+                    chunkList.subList(chunksDone, chunkList.size()), concurrency,
+                    partial.getAbsoluteFile().getParentFile(), tracker)) {
+                downloader.writeTo(partialFile.getChannel(), partialFile.length(),
+                        manifest == null ? null : manifest::record);
+            }
             partialFile.close();
             partialFile = null;
             partial.renameTo(target);
+            if (manifest != null) {
+                manifest.delete();
+            }
         } finally {
+            if (manifest != null) {
+                try {
+                    manifest.close();
+                } catch (IOException ioException) {
+                    LOG.warn("Warning: failed to close download manifest for {}: {}", partial, ioException.getMessage());
+                }
+            }
             if (partialFile != null) {
                 try {
                     partialFile.close();
@@ -162,75 +274,147 @@ public class ServerFile extends NamedObject implements Serializable {
      * @since 1.2
      */
     public InputStream getDownloadStream() {
-        // Get list of chunks from server
-        final List<ChunkData> chunkList = getApi().getChunks(getModel().getWorkspace().getId(),
-                getModel().getId(), getId()).getItem();
-        return new SequenceInputStream(new Enumeration<InputStream>() {
-            int index = 0;
+        return getDownloadStream(Constants.DEFAULT_CHUNK_CONCURRENCY);
+    }
 
-            @Override
-            public boolean hasMoreElements() {
-                int chunkListSize = chunkList == null ? 0 : chunkList.size();
-                return index < chunkListSize;
-            }
+    /**
+     * Create an InputStream implementation which will download the content from
+     * the server, prefetching up to <code>concurrency</code> chunks in parallel
+     * while the stream is being read. Prefetched chunks are spooled to temporary
+     * files; with a concurrency of 1 each chunk is read straight off the
+     * connection instead.
+     *
+     * @param concurrency The maximum number of chunks downloaded in parallel
+     * @return an InputStream which will read the content stored on the server
+     */
+    public InputStream getDownloadStream(int concurrency) {
+        // Get list of chunks from server
+        final List<ChunkData> chunkList = getChunks();
+        TransferTracker tracker = track(TransferProgress.Direction.DOWNLOAD, chunkList == null ? 0 : chunkList.size(), -1);
+        return new ChunkDownloader(this, chunkList, concurrency, null, tracker).asInputStream();
+    }
 
-            @Override
-            public InputStream nextElement() {
-                try {
-                    byte[] chunkContent = getChunkContent(chunkList.get(index++).getId());
-                    return new ByteArrayInputStream(chunkContent);
-                } catch (Exception thrown) {
-                    throw new RuntimeException(
-                            "Failed to read chunk from server", thrown);
+    /**
+     * Download the content from the server, prefetching up to
+     * <code>concurrency</code> chunks in parallel, and hand it on in blocks of
+     * about <code>blockSize</code> bytes. Each block ends just after a line
+     * separator which is not inside a field quoted with the file's delimiter,
+     * so blocks hold whole rows and can be processed independently; only the
+     * first block starts with the header row. A row longer than a block is
+     * split.
+     *
+     * @param blockSize   The number of bytes to read before cutting a block
+     * @param concurrency The maximum number of chunks downloaded in parallel
+     * @param handler     Receives each block in order
+     */
+    public void downLoadRows(int blockSize, int concurrency, BlockHandler handler) throws IOException {
+        ChunkSplitter splitter = new ChunkSplitter(data.getEncoding(), "\n", data.getDelimiter());
+        byte[] block = new byte[blockSize];
+        int filled = 0;
+        try (InputStream in = getDownloadStream(concurrency)) {
+            while (true) {
+                filled += ByteStreams.read(in, block, filled, block.length - filled);
+                if (filled < block.length) {
+                    if (filled > 0) {
+                        handler.handle(Arrays.copyOf(block, filled));
+                    }
+                    return;
                 }
+                int cut = splitter.boundary(ByteBuffer.wrap(block, 0, filled));
+                handler.handle(Arrays.copyOf(block, cut));
+                System.arraycopy(block, cut, block, 0, filled - cut);
+                filled -= cut;
             }
-        });
+        }
+    }
+
+    /**
+     * Receives the blocks of rows of a download.
+     */
+    public interface BlockHandler {
+
+        /**
+         * @param block the content of the block, which the handler may keep
+         */
+        void handle(byte[] block) throws IOException;
     }
 
     /**
      * Create a {@link com.anaplan.client.CellReader} implementation which will
-     * download the content from the server. The content is assumed to be in the
-     * same format as written to by getUploadCellWriter.
+     * download the content from the server. Cells are split with the file's
+     * separator, tab if it has none, unquoted with its delimiter and decoded
+     * with its encoding; see {@link DelimitedCellReader}.
      *
      * @return a {@link com.anaplan.client.CellReader} which will read the
      * content stored on the server
      * @since 1.2
      */
-    public CellReader getDownloadCellReader() throws IOException {
-        LogUtils.logSeparatorDownload();
-        final LineNumberReader lnr = new LineNumberReader(
-                new InputStreamReader(getDownloadStream(), "UTF-8"));
-        String headerLine = lnr.readLine();
-        final String[] headerRow = headerLine == null ? new String[0]
-                : headerLine.split("\\t");
+    public DelimitedCellReader getDownloadCellReader() throws IOException {
+        return getDownloadCellReader(Constants.DEFAULT_CHUNK_CONCURRENCY);
+    }
 
-        return new CellReader() {
-            @Override
-            public String[] getHeaderRow() throws AnaplanAPIException {
-                return headerRow;
-            }
+    /**
+     * Create a {@link com.anaplan.client.CellReader} implementation which will
+     * download the content from the server, prefetching up to
+     * <code>concurrency</code> chunks in parallel while the rows are read.
+     *
+     * @param concurrency The maximum number of chunks downloaded in parallel
+     * @return a {@link com.anaplan.client.CellReader} which will read the
+     * content stored on the server
+     */
+    public DelimitedCellReader getDownloadCellReader(int concurrency) throws IOException {
+        LogUtils.logSeparatorDownload();
+        String separator = data.getSeparator();
+        // a line separator, as used to cut upload chunks, cannot also separate cells
+        if (separator == null || separator.isEmpty() || separator.equals("\n") || separator.equals("\r\n")) {
+            separator = "\t";
+        }
+        return new DelimitedCellReader(getDownloadStream(concurrency), data.getEncoding(), separator,
+                data.getDelimiter());
+    }
 
-            @Override
-            public String[] readDataRow() throws AnaplanAPIException,
-                IOException {
-                String dataLine = lnr.readLine();
-                return dataLine == null ? null : dataLine.split("\\t");
-            }
+    /**
+     * Upload a file to the server, writing it to the specified target file.
+     *
+     * @param source         The source file to upload
+     * @param deleteExisting If true, the target server file will automatically be deleted
+     *                       if it already exists; otherwise a FileException will be thrown
+     */
+    public void upLoad(File source, boolean deleteExisting, int chunkSize) throws IOException {
+        upLoad(source, deleteExisting, chunkSize, Constants.DEFAULT_CHUNK_CONCURRENCY);
+    }
 
-            @Override
-            public void close() {
-            }
-        };
+    /**
+     * Upload a file to the server, writing it to the specified target file.
+     * The file is read and split into chunks on the calling thread, while up to
+     * <code>concurrency</code> chunks are compressed and uploaded in parallel.
+     *
+     * @param source         The source file to upload
+     * @param deleteExisting If true, the target server file will automatically be deleted
+     *                       if it already exists; otherwise a FileException will be thrown
+     * @param chunkSize      The size of each chunk in bytes
+     * @param concurrency    The maximum number of chunks compressed and uploaded in parallel
+     */
+    public void upLoad(File source, boolean deleteExisting, int chunkSize, int concurrency) throws IOException {
+        upLoad(source, deleteExisting, chunkSize, concurrency, false);
     }
 
     /**
      * Upload a file to the server, writing it to the specified target file.
+     * When resumable, every chunk the server acknowledges is recorded in a manifest next to the
+     * source file, and an upload of the same unchanged file which was interrupted is resumed:
+     * the server file is not reset and only the chunks which were not acknowledged are sent.
+     * The manifest is removed once every chunk has been uploaded.
      *
      * @param source         The source file to upload
      * @param deleteExisting If true, the target server file will automatically be deleted
      *                       if it already exists; otherwise a FileException will be thrown
+     * @param chunkSize      The size of each chunk in bytes
+     * @param concurrency    The maximum number of chunks compressed and uploaded in parallel
+     * @param resumable      If true, resume an interrupted upload of the same file
      */
-    public void upLoad(File source, boolean deleteExisting, int chunkSize) throws IOException {
+    public void upLoad(File source, boolean deleteExisting, int chunkSize, int concurrency, boolean resumable)
+            throws IOException {
         LogUtils.logSeparatorUpload();
         LOG.info("Uploading file: {}", source.getAbsolutePath());
         if (!source.exists()) {
@@ -246,59 +430,80 @@ public class ServerFile extends NamedObject implements Serializable {
                     + "\" cannot be read - check ownership and/or permissions");
         }
         RandomAccessFile sourceFile = null;
+        UploadManifest manifest = null;
         try {
             long length = source.length();
-            data.setChunkCount((int) ((length - 1) / chunkSize) + 1);
-            ServerFileResponse response = getApi().upsertFileDataSource(getWorkspace().getId(), getModel().getId(), getId(), data);
-            if (response == null || response.getItem() == null) {
-                throw new CreateImportDatasourceError(getName());
+            int chunkCount = (int) ((length - 1) / chunkSize) + 1;
+            List<ChunkData> chunkList = null;
+            if (resumable) {
+                manifest = UploadManifest.open(UploadManifest.locationOf(source), source, chunkSize, this);
+                if (manifest.size() > 0) {
+                    chunkList = resumeUpload(chunkCount);
+                }
             }
-            data = response.getItem();
-            data.setHeaderRow(data.getHeaderRow() == -1 ? 1 : data.getHeaderRow());
-            data.setFirstDataRow(data.getFirstDataRow() == -1 ? 2 : data.getFirstDataRow());
-            // Get list of chunks from server
-            ChunksResponse chunks = getApi().getChunks(getWorkspace().getId(), getModel().getId(), getId());
-            if (chunks == null || chunks.getItem() == null) {
-                throw new CreateImportDatasourceError(getName());
+            if (chunkList == null) {
+                chunkList = startUpload(chunkCount);
+                if (manifest != null) {
+                    manifest.clear();
+                }
+            } else {
+                LOG.info("Resuming upload, {} of {} chunks already acknowledged", manifest.size(), chunkCount);
             }
-            List<ChunkData> chunkList = chunks.getItem();
             Iterator<ChunkData> chunkIterator = chunkList.iterator();
-            byte[] buffer = new byte[chunkSize];
             sourceFile = new RandomAccessFile(source, "r");
+            FileChannel sourceChannel = sourceFile.getChannel();
+            ChunkSplitter splitter = new ChunkSplitter(data);
+            // chunk buffers go back to the pool once compressed, so the pipeline window bounds how many exist
+            Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
             long totalReadSoFar = 0;
-            while (chunkIterator.hasNext()) {
-                ChunkData chunk = chunkIterator.next();
-                int size = chunkSize;
-                if (!chunkIterator.hasNext()) {
-                    size = (int) (length - totalReadSoFar);
-                }
-                if (size != buffer.length) {
-                    buffer = new byte[size];
-                }
-                sourceFile.readFully(buffer, 0, size);
-                //reading the last index of the separator
-                int separatorLastIndex = lastIndexOf(buffer,data.getSeparator());
-                //determining the byte offset based on UTF-16LE encoding
-                int offset=data.getEncoding().equalsIgnoreCase("UTF-16LE")?2:1;
-                //calculating the size of byte array to load the bytes until the last index of separator
-                int finalSize = separatorLastIndex+offset;
-                //creating the buffer to load the byte array until last separator
-                byte[] finalBuffer = new byte[finalSize];
-                //copying the data from existing byte array to new byte array until last separator
-                System.arraycopy(buffer,0,finalBuffer,0,finalSize);
-                //calculating the total read size from the file
-                totalReadSoFar += finalSize;
-                //checking if there is another chunk to decide if to upload the newly created buffer or existing buffer.
-                //existing buffer will be uploaded in case of last chunk
-                if(chunkIterator.hasNext()) {
-                    getApi().uploadChunkCompressed(getWorkspace().getId(), getModel().getId(), getId(), chunk.getId(), finalBuffer);
-                }else{
-                    getApi().uploadChunkCompressed(getWorkspace().getId(), getModel().getId(), getId(), chunk.getId(), buffer);
+            TransferTracker tracker = track(TransferProgress.Direction.UPLOAD, chunkCount, length);
+            try (ChunkUploader uploader = new ChunkUploader(this, concurrency, tracker)) {
+                while (chunkIterator.hasNext()) {
+                    ChunkData chunk = chunkIterator.next();
+                    long acknowledged = manifest == null ? -1 : manifest.acknowledgedLength(chunk.getId(), totalReadSoFar);
+                    if (acknowledged >= 0) {
+                        totalReadSoFar += acknowledged;
+                        tracker.skipped(1, acknowledged);
+                        continue;
+                    }
+                    int size = chunkSize;
+                    if (!chunkIterator.hasNext()) {
+                        size = (int) (length - totalReadSoFar);
+                    }
+                    ByteBuffer buffer = freeBuffers.poll();
+                    if (buffer == null || buffer.capacity() < size) {
+                        buffer = ByteBuffer.allocate(Math.max(size, chunkSize));
+                    }
+                    buffer.clear();
+                    buffer.limit(size);
+                    readFully(sourceChannel, buffer, totalReadSoFar);
+                    buffer.flip();
+                    //the last chunk is uploaded whole, the others up to and including their last separator outside of quotes
+                    if (chunkIterator.hasNext()) {
+                        buffer.limit(splitter.boundary(buffer));
+                    }
+                    final String chunkId = chunk.getId();
+                    final long offset = totalReadSoFar;
+                    final int chunkLength = buffer.remaining();
+                    //calculating the total read size from the file
+                    totalReadSoFar += chunkLength;
+                    final ByteBuffer chunkBuffer = buffer;
+                    final UploadManifest uploadManifest = manifest;
+                    final long checksum = manifest == null ? 0 : checksum(buffer.array(), chunkLength);
+                    uploader.submit(chunkId, buffer.array(), chunkLength, () -> freeBuffers.add(chunkBuffer),
+                            uploadManifest == null ? null
+                                    : () -> acknowledge(uploadManifest, chunkId, offset, chunkLength, checksum));
                 }
-                sourceFile.seek(totalReadSoFar);
-                LOG.debug("Uploaded chunk: {} (size={}MB)", chunk.getId(), chunkSize / 1000000);
+                uploader.await();
+                tracker.finished();
+            }
+            if (manifest != null) {
+                manifest.delete();
             }
         } finally {
+            if (manifest != null) {
+                manifest.close();
+            }
             if (sourceFile != null) {
                 try {
                     sourceFile.close();
@@ -309,12 +514,79 @@ public class ServerFile extends NamedObject implements Serializable {
         }
     }
 
+    /**
+     * Creates or resets the server file to receive the given number of chunks
+     *
+     * @return the chunks of the server file, in server order
+     */
+    private List<ChunkData> startUpload(int chunkCount) {
+        data.setChunkCount(chunkCount);
+        ServerFileResponse response = getApi().upsertFileDataSource(getWorkspace().getId(), getModel().getId(), getId(), data);
+        if (response == null || response.getItem() == null) {
+            throw new CreateImportDatasourceError(getName());
+        }
+        data = response.getItem();
+        data.setHeaderRow(data.getHeaderRow() == -1 ? 1 : data.getHeaderRow());
+        data.setFirstDataRow(data.getFirstDataRow() == -1 ? 2 : data.getFirstDataRow());
+        // Get list of chunks from server
+        ChunksResponse chunks = getApi().getChunks(getWorkspace().getId(), getModel().getId(), getId());
+        if (chunks == null || chunks.getItem() == null) {
+            throw new CreateImportDatasourceError(getName());
+        }
+        return chunks.getItem();
+    }
+
+    /**
+     * Picks up the chunks of an interrupted upload without resetting the server file
+     *
+     * @return the chunks of the server file, in server order, or null if the server file no
+     * longer matches the interrupted upload
+     */
+    private List<ChunkData> resumeUpload(int chunkCount) {
+        ChunksResponse chunks = getApi().getChunks(getWorkspace().getId(), getModel().getId(), getId());
+        if (chunks == null || chunks.getItem() == null || chunks.getItem().size() != chunkCount) {
+            LOG.info("Server file {} no longer matches the interrupted upload, starting over", getName());
+            return null;
+        }
+        return chunks.getItem();
+    }
+
+    private static void acknowledge(UploadManifest manifest, String chunkId, long offset, long length,
+                                    long checksum) {
+        try {
+            manifest.record(chunkId, offset, length, checksum);
+        } catch (IOException ioException) {
+            // the chunk is uploaded regardless, it will just be sent again if the upload is resumed
+            LOG.warn("Warning: failed to record chunk {} in upload manifest: {}", chunkId, ioException.getMessage());
+        }
+    }
+
+    private static long checksum(byte[] content, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Fills the remainder of the buffer from the channel, reading from the given file position
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (offset + buffer.position()));
+            }
+        }
+    }
+
     /**
      * returns the last index of single byte separator from a byte array
      * @param outerArray
      * @param separator
      * @return last index of a single byte separator
+     * @deprecated upload chunks are now split with the file's encoding and delimiter taken into account
      */
+    @Deprecated
     public int lastIndexOf(byte[] outerArray, String separator) {
         byte[] smallerArray = separator.getBytes();
         for(int i = outerArray.length - smallerArray.length; i > 0; --i) {
@@ -358,59 +630,157 @@ public class ServerFile extends NamedObject implements Serializable {
      * @return The OutputStream to write to
      * @since 1.2
      */
-    public OutputStream getUploadStream(final int chunkSize) {
+    public UploadStream getUploadStream(final int chunkSize) {
+        return getUploadStream(chunkSize, Constants.DEFAULT_CHUNK_CONCURRENCY);
+    }
+
+    /**
+     * Return a new OutputStream implementation which will upload written
+     * content to the server, writing it to the specified target file. Any
+     * existing data will be replaced. Each full chunk is handed off to be
+     * compressed and uploaded in the background, with up to
+     * <code>concurrency</code> chunks in flight; writes block while that many
+     * chunks are pending. The server file will be considered incomplete until
+     * the close() method is invoked on the OutputStream, which waits for every
+     * chunk to be uploaded before completing the upload; abort() gives up on
+     * the upload instead.
+     *
+     * @param chunkSize   The size of each chunk in bytes
+     * @param concurrency The maximum number of chunks compressed and uploaded in parallel
+     * @return The OutputStream to write to
+     */
+    public UploadStream getUploadStream(final int chunkSize, final int concurrency) {
         data.setChunkCount(-1);
         ServerFileResponse response = getApi().upsertFileDataSource(getWorkspace().getId(), getModel().getId(), getId(), data);
         if (response == null || response.getItem() == null) {
             throw new CreateImportDatasourceError(data.getName());
         }
         data = response.getItem();
-        return new FilterOutputStream(new ByteArrayOutputStream(chunkSize * 2)) {
-            int chunkIndex = 0;
+        TransferTracker tracker = track(TransferProgress.Direction.UPLOAD, -1, -1);
+        return new UploadStream(chunkSize, new ChunkUploader(this, concurrency, tracker), tracker);
+    }
 
-            private ByteArrayOutputStream getBuffer() {
-                return (ByteArrayOutputStream) out;
-            }
+    /**
+     * An OutputStream which uploads its content to the server file in chunks.
+     * Closing it completes the upload; aborting it leaves the server file
+     * incomplete.
+     */
+    public final class UploadStream extends FilterOutputStream {
+
+        private final int chunkSize;
+        private final ChunkUploader uploader;
+        private final TransferTracker tracker;
+        private int chunkIndex = 0;
+        private boolean closed;
+
+        UploadStream(int chunkSize, ChunkUploader uploader, TransferTracker tracker) {
+            super(new ByteArrayOutputStream(chunkSize * 2));
+            this.chunkSize = chunkSize;
+            this.uploader = uploader;
+            this.tracker = tracker;
+        }
 
-            @Override
-            public void write(int b) throws IOException {
-                super.write(b);
-                if (getBuffer().size() >= chunkSize) {
-                    flush();
-                }
+        private ByteArrayOutputStream getBuffer() {
+            return (ByteArrayOutputStream) out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (getBuffer().size() >= chunkSize) {
+                flush();
             }
+        }
 
-            @Override
-            public void write(byte[] b, int off, int len) throws IOException {
-                super.write(b, off, len);
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // copy in bulk rather than byte by byte, still cutting chunks at exactly chunkSize
+            while (len > 0) {
+                int count = Math.min(len, chunkSize - getBuffer().size());
+                out.write(b, off, count);
+                off += count;
+                len -= count;
                 if (getBuffer().size() >= chunkSize) {
                     flush();
                 }
             }
+        }
 
-            @Override
-            public void flush() throws IOException {
-                super.flush();
-                try {
-                    getApi().uploadChunkCompressed(
-                            getWorkspace().getId(),
-                            getModel().getId(),
-                            getId(),
-                            String.valueOf(chunkIndex++),
-                            getBuffer().toByteArray());
-                    LOG.debug("Uploaded chunk: {} (size={}MB)", chunkIndex, chunkSize / 1000000);
-                } catch (FeignException e) {
-                    throw new AnaplanAPIException("Failed to upload chunk(" + chunkIndex +  "): " + getId(), e);
-                }
-                getBuffer().reset();
+        @Override
+        public void flush() throws IOException {
+            // an empty chunk is only worth sending for an empty file
+            if (getBuffer().size() == 0 && chunkIndex > 0) {
+                return;
             }
+            byte[] chunkContent = getBuffer().toByteArray();
+            getBuffer().reset();
+            uploader.submit(String.valueOf(chunkIndex++), chunkContent, chunkContent.length);
+        }
 
-            @Override
-            public void close() throws IOException {
+        /**
+         * Uploads what is left of the content, waits for every chunk to be
+         * uploaded and completes the upload. Later calls do nothing.
+         */
+        @Override
+        public void close() throws IOException {
+            // completing the upload a second time would publish the file again
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
                 flush();
-                finalizeUploadStream();
+                uploader.await();
+            } finally {
+                uploader.close();
             }
-        };
+            finalizeUploadStream();
+            tracker.finished();
+        }
+
+        /**
+         * Drops the buffered content and cancels the chunks still being
+         * uploaded, without completing the upload, so that content which was
+         * only partly written is never published. Later calls, and a later
+         * close, do nothing.
+         */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            getBuffer().reset();
+            uploader.close();
+        }
+    }
+
+    /**
+     * Upload chunks which have already been split and gzipped elsewhere, for
+     * instance in parallel by the workers of a distributed job, as the content
+     * of this file. Any existing data will be replaced. The chunks are taken
+     * from the iterator in order and up to <code>concurrency</code> of them are
+     * uploaded in parallel; each must end on a row separator.
+     *
+     * @param chunks      The gzipped content of each chunk, in order
+     * @param concurrency The maximum number of chunks uploaded in parallel
+     */
+    public void upLoadCompressed(Iterator<byte[]> chunks, int concurrency) throws IOException {
+        data.setChunkCount(-1);
+        ServerFileResponse response = getApi().upsertFileDataSource(getWorkspace().getId(), getModel().getId(), getId(), data);
+        if (response == null || response.getItem() == null) {
+            throw new CreateImportDatasourceError(data.getName());
+        }
+        data = response.getItem();
+        TransferTracker tracker = track(TransferProgress.Direction.UPLOAD, -1, -1);
+        try (ChunkUploader uploader = new ChunkUploader(this, concurrency, tracker)) {
+            int chunkIndex = 0;
+            while (chunks.hasNext()) {
+                uploader.submitCompressed(String.valueOf(chunkIndex++), chunks.next());
+            }
+            uploader.await();
+        }
+        finalizeUploadStream();
+        tracker.finished();
     }
 
     /**
@@ -52,6 +52,31 @@ public class Service implements Closeable {
     private ConnectionProperties props;
     private AnaplanApiProvider apiProvider;
     private Authenticator authProvider;
+    private final MetadataCache metadataCache = new MetadataCache();
+    private volatile TransferListener transferListener;
+
+    public ConnectionProperties getConnectionProperties() {
+        return props;
+    }
+
+    /**
+     * @return the cache of the objects of the models used through this service
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public TransferListener getTransferListener() {
+        return transferListener;
+    }
+
+    /**
+     * @param transferListener receives the progress of every upload and
+     *                         download of a server file, or null for none
+     */
+    public void setTransferListener(TransferListener transferListener) {
+        this.transferListener = transferListener;
+    }
 
     public AnaplanApiProvider getApiProvider() {
         return apiProvider;
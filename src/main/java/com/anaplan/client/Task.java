@@ -19,8 +19,17 @@ import com.anaplan.client.dto.responses.TaskStatusResponse;
 import com.anaplan.client.ex.AnaplanAPIException;
 import com.anaplan.client.ex.InvalidTaskStatusError;
 import com.anaplan.client.logging.LogUtils;
+import com.anaplan.client.metrics.Metrics;
 import com.google.common.base.Throwables;
+import feign.RetryableException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,9 +39,10 @@ import org.slf4j.LoggerFactory;
 public class Task extends AnaplanApiClientObject {
 
     private static final Logger LOG = LoggerFactory.getLogger(Task.class);
-    private static Thread runningThread;
-    private static boolean closingDown = false;
-    private static Task runningTask;
+    // Tasks being tracked, with how to stop tracking each, so that all of them can be cancelled on shutdown
+    private static final Map<Task, Runnable> RUNNING_TASKS = new ConcurrentHashMap<>();
+    private static volatile boolean closingDown = false;
+    private static final long CLOSING_DOWN_INTERVAL = 500;
     private TaskFactory subject;
     private TaskData data;
 
@@ -40,15 +50,16 @@ public class Task extends AnaplanApiClientObject {
         try {
             Thread cancelThread = new Thread(() -> {
                 closingDown = true;
-                Thread runner = runningThread;
-                if (runner != null) {
+                // stopping the tracking untracks a task, so the tasks to cancel are taken first
+                Map<Task, Runnable> runningTasks = new HashMap<>(RUNNING_TASKS);
+                for (Runnable stopTracking : runningTasks.values()) {
                     try {
-                        runner.interrupt();
+                        stopTracking.run();
                     } catch (Throwable thrown) {
                         LOG.debug("{}", thrown);
                     }
                 }
-                cancelRunningTask(runningTask);
+                cancelRunningTasks(new ArrayList<>(runningTasks.keySet()));
             });
             cancelThread.setDaemon(true);
             Runtime.getRuntime().addShutdownHook(cancelThread);
@@ -64,11 +75,31 @@ public class Task extends AnaplanApiClientObject {
     }
 
     /**
-     * Fetches the running task if any
+     * Fetches a running task if any
      * @return
      */
     public static Task getRunningTask() {
-        return runningTask;
+        Iterator<Task> running = RUNNING_TASKS.keySet().iterator();
+        return running.hasNext() ? running.next() : null;
+    }
+
+    /**
+     * Registers a task being tracked until {@link #untrack}, so that it is
+     * cancelled on shutdown.
+     *
+     * @param stopTracking stops the tracking on shutdown, before the task is
+     *                     cancelled on the server
+     */
+    static void track(Task task, Runnable stopTracking) {
+        RUNNING_TASKS.put(task, stopTracking);
+    }
+
+    static void untrack(Task task) {
+        RUNNING_TASKS.remove(task);
+    }
+
+    static boolean isClosingDown() {
+        return closingDown;
     }
 
     TaskFactory getSubject() {
@@ -100,7 +131,13 @@ public class Task extends AnaplanApiClientObject {
      * @return The current status of the task
      */
     public TaskStatus getStatus() throws AnaplanAPIException {
-        TaskStatusResponse response = subject.getTaskStatus(data.getTaskId());
+        long start = Metrics.start();
+        TaskStatusResponse response;
+        try {
+            response = subject.getTaskStatus(data.getTaskId());
+        } finally {
+            Metrics.stop(Metrics.TASK_POLL, subject.getClass().getSimpleName(), start);
+        }
         if (response != null && response.getItem() != null) {
             return new TaskStatus(this, response.getItem());
         }
@@ -114,28 +151,53 @@ public class Task extends AnaplanApiClientObject {
      *
      * @return the result following completion of the task; null otherwise
      */
-    public synchronized TaskResult runTask() throws AnaplanAPIException, InterruptedException {
-        runningThread = Thread.currentThread();
-        runningTask = this;
-        TaskResult result = trackRunningTask(runningTask, false);
-        runningTask = null;
-        runningThread = null;
-        return result;
+    public TaskResult runTask() throws AnaplanAPIException, InterruptedException {
+        return runTask(null);
     }
 
     /**
-     * Cancels the running task, called only when the client is terminated.
+     * Track the progress of a task on the server until completion, then pass
+     * its final status to the given callback.
+     *
+     * @param onCompletion called with the status of the task once it has
+     *                     completed or been cancelled; may be null
+     * @return the result following completion of the task; null otherwise
+     */
+    public synchronized TaskResult runTask(Consumer<TaskStatus> onCompletion)
+            throws AnaplanAPIException, InterruptedException {
+        track(this, Thread.currentThread()::interrupt);
+        TaskStatus status;
+        try {
+            status = trackRunningTask(this, false);
+        } finally {
+            untrack(this);
+        }
+        if (status == null) {
+            return null;
+        }
+        if (onCompletion != null) {
+            onCompletion.accept(status);
+        }
+        return status.getResult();
+    }
+
+    /**
+     * Cancels the running tasks, called only when the client is terminated.
      */
-    private static synchronized void cancelRunningTask(Task runningTask) {
-        if (runningTask != null) {
+    private static synchronized void cancelRunningTasks(List<Task> runningTasks) {
+        if (!runningTasks.isEmpty()) {
             try {
                 if (System.console() != null)
                     System.console().printf("\rClient terminated, cancelling...");
-                runningTask.cancel();
-                trackRunningTask(runningTask, true);
-            } catch (Throwable thrown) {
-                LOG.debug("{}", Throwables.getStackTraceAsString(thrown));
-                LOG.error(Utils.formatThrowable(thrown));
+                for (Task runningTask : runningTasks) {
+                    try {
+                        runningTask.cancel();
+                        trackRunningTask(runningTask, true);
+                    } catch (Throwable thrown) {
+                        LOG.debug("{}", Throwables.getStackTraceAsString(thrown));
+                        LOG.error(Utils.formatThrowable(thrown));
+                    }
+                }
             } finally {
                 System.exit(1);
                 try {
@@ -148,18 +210,20 @@ public class Task extends AnaplanApiClientObject {
     }
 
     /**
-     * Thread safe method to run the task and keep checking the run-status intermittently.
+     * Runs the task and keeps checking the run-status intermittently. Only the task itself is
+     * touched, so tasks on other threads are tracked at the same time. The polls are spaced by a
+     * {@link TaskPoller}, except while closing down.
      *
      * @param wasClosingDown
-     * @return
+     * @return the final status of the task, or null if it could not be read
      * @throws AnaplanAPIException
      * @throws InterruptedException
      */
-    private static synchronized TaskResult trackRunningTask(Task runningTask, boolean wasClosingDown) throws AnaplanAPIException, InterruptedException {
+    private static TaskStatus trackRunningTask(Task runningTask, boolean wasClosingDown) throws AnaplanAPIException, InterruptedException {
         TaskStatus status = null;
-        int interval = 1000;
-        int totalTime = 0;
-        int failCount = 0;
+        TaskPoller poller = new TaskPoller(runningTask.getSubject().getId());
+        long interval = wasClosingDown ? CLOSING_DOWN_INTERVAL : poller.firstInterval();
+        long totalTime = 0;
         try {
             do {
                 if (!wasClosingDown && closingDown) {
@@ -168,72 +232,79 @@ public class Task extends AnaplanApiClientObject {
                 Thread.sleep(interval);
                 totalTime += interval;
 
-                if (wasClosingDown) {
-                    interval = 500;
-                } else if (totalTime > 60000) {
-                    interval = 60000;
-                } else if (totalTime > 10000) {
-                    interval = 10000;
-                } else {
-                    interval = 1000;
-                }
+                Exception failure = null;
                 try {
                     status = runningTask.getStatus();
-                    failCount = 0;
-                } catch (AnaplanAPIException thrown) {
+                    poller.pollSucceeded();
+                } catch (AnaplanAPIException | RetryableException thrown) {
                     status = null;
-                    // Allow up to 30 attempts before giving up.
-                    if (++failCount > 30) {
-                        throw new AnaplanAPIException(
-                                "Task was started, but server cannot be reached"
-                                        + " - giving up after 30 attempts", thrown);
-                    }
-                    LOG.debug("Failed to get status ({}); retrying in {}s\n", Utils.formatThrowable(thrown), interval / 1000);
-                    LOG.info("Checking in {}s", interval / 1000);
+                    failure = thrown;
+                    poller.pollFailed(thrown);
+                }
+                interval = wasClosingDown ? CLOSING_DOWN_INTERVAL
+                        : poller.nextInterval(status == null ? -1 : status.getProgress());
+                if (failure != null) {
+                    LOG.debug("Failed to get status ({}); retrying in {}ms\n", Utils.formatThrowable(failure), interval);
+                    LOG.info("Checking in {}ms", interval);
                 }
                 if (status != null) {
-                    StringBuilder message = new StringBuilder();
-                    if (status.getCurrentStep() != null) {
-                        message.append(status.getCurrentStep());
-                    } else if (status.getTaskState() == null) {
-                        message.append(status.getTaskState().toString());
-                    } else {
-                        message.append(status.getTaskState().getValue());
-                    }
-                    if (status.getProgress() > 0) {
-                        message.append(" (").append(Math.floor(status.getProgress() * 1000) / 10).append("%)");
-                    }
-                    LOG.info("Run status: {}", message.toString());
+                    logProgress(status);
                 }
             } while (!(wasClosingDown && totalTime > 1000) && (status == null || !(
                     status.getTaskState() == TaskStatus.State.COMPLETE ||
                     status.getTaskState() == TaskStatus.State.CANCELLED)));
+            if (!wasClosingDown && status != null && status.getTaskState() == TaskStatus.State.COMPLETE) {
+                poller.completed();
+            }
         } finally {
-            if (status == null || status.getResult() == null) {
-                LOG.info("No result was provided.");
-            } else if (status.getTaskState() == TaskStatus.State.CANCELLED) {
-                StringBuilder message = new StringBuilder();
-                message.append("The operation was cancelled");
-                if (status.getCancelledBy() != null) {
-                    message.append(" by ").append(status.getCancelledBy());
-                }
-                if (status.getResult() != null) {
-                    message.append("; some actions may have completed.");
-                } else {
-                    message.append(".");
-                }
-                LOG.info(message.toString());
+            logOutcome(status);
+        }
+        return status;
+    }
+
+    /**
+     * Logs the current step and progress of a task.
+     */
+    static void logProgress(TaskStatus status) {
+        StringBuilder message = new StringBuilder();
+        if (status.getCurrentStep() != null) {
+            message.append(status.getCurrentStep());
+        } else if (status.getTaskState() != null) {
+            message.append(status.getTaskState().getValue());
+        }
+        if (status.getProgress() > 0) {
+            message.append(" (").append(Math.floor(status.getProgress() * 1000) / 10).append("%)");
+        }
+        LOG.info("Run status: {}", message.toString());
+    }
+
+    /**
+     * Logs how a task ended, with its result if any.
+     */
+    static void logOutcome(TaskStatus status) {
+        if (status == null || status.getResult() == null) {
+            LOG.info("No result was provided.");
+        } else if (status.getTaskState() == TaskStatus.State.CANCELLED) {
+            StringBuilder message = new StringBuilder();
+            message.append("The operation was cancelled");
+            if (status.getCancelledBy() != null) {
+                message.append(" by ").append(status.getCancelledBy());
+            }
+            if (status.getResult() != null) {
+                message.append("; some actions may have completed.");
             } else {
-                LogUtils.logSeparatorOperationResponses();
-                if (status.getResult() != null) {
-                    LOG.info(status.getResult().isSuccessful() ?
-                            "<<< The operation was successful >>>  =)" :
-                            "!!! The operation failed !!!  =(");
-                }
-                LogUtils.logSeparatorOperationStatus();
-                Arrays.asList(status.getResult().toString().split("\n")).forEach(LOG::info);
+                message.append(".");
+            }
+            LOG.info(message.toString());
+        } else {
+            LogUtils.logSeparatorOperationResponses();
+            if (status.getResult() != null) {
+                LOG.info(status.getResult().isSuccessful() ?
+                        "<<< The operation was successful >>>  =)" :
+                        "!!! The operation failed !!!  =(");
             }
+            LogUtils.logSeparatorOperationStatus();
+            Arrays.asList(status.getResult().toString().split("\n")).forEach(LOG::info);
         }
-        return (status != null) ? status.getResult() : null;
     }
 }
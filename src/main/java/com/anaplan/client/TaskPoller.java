@@ -0,0 +1,146 @@
+package com.anaplan.client;
+
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.metrics.Metrics;
+import feign.RetryableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how long to wait before each poll of the status of a running task.
+ * <p>
+ * The remaining time of the task is estimated from the rate at which its
+ * progress advances or, until the progress moves, from the smoothed duration
+ * of earlier runs of the same action, import, export or process. The poller
+ * then waits for half of the remaining time, so polls come closer together as
+ * the task nears completion. With no estimate, or once a task runs past its
+ * expected duration, the interval grows geometrically. A Retry-After given by
+ * the server is always waited out.
+ * <p>
+ * A poller tracks a single task and is not thread safe; the history is shared.
+ */
+class TaskPoller {
+
+    static final long MIN_INTERVAL_MS = 250;
+    static final long MAX_INTERVAL_MS = 30000;
+    static final long FIRST_INTERVAL_MS = 500;
+    static final int MAX_FAILED_POLLS = 30;
+
+    // weight of the latest run in the smoothed duration
+    private static final double HISTORY_WEIGHT = 0.3;
+    // smoothed durations of completed tasks, by the ID of the object which ran them
+    private static final Map<String, Long> DURATIONS = new ConcurrentHashMap<>();
+
+    private final String subjectId;
+    private final LongSupplier clock;
+    private final long startedAt;
+    private long interval;
+    private long retryAfter;
+    private int failCount;
+    private double firstProgress = -1;
+    private long firstProgressAt;
+
+    TaskPoller(String subjectId) {
+        this(subjectId, System::currentTimeMillis);
+    }
+
+    TaskPoller(String subjectId, LongSupplier clock) {
+        this.subjectId = subjectId;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+    }
+
+    /**
+     * @return the time to wait before the first poll
+     */
+    long firstInterval() {
+        interval = next(estimateRemaining(-1), FIRST_INTERVAL_MS);
+        return interval;
+    }
+
+    /**
+     * @param progress the progress of the task reported by the last poll, from
+     *                 0 to 1, or a negative value when the poll failed
+     * @return the time to wait before the next poll
+     */
+    long nextInterval(double progress) {
+        interval = next(estimateRemaining(progress), interval * 3 / 2);
+        if (retryAfter > interval) {
+            interval = retryAfter;
+        }
+        retryAfter = 0;
+        return interval;
+    }
+
+    void pollSucceeded() {
+        failCount = 0;
+    }
+
+    /**
+     * Counts a failed poll, and makes the next poll wait at least as long as
+     * the server asked, if it did.
+     *
+     * @throws AnaplanAPIException once too many polls in a row have failed
+     */
+    void pollFailed(Exception thrown) throws AnaplanAPIException {
+        if (++failCount > MAX_FAILED_POLLS) {
+            throw new AnaplanAPIException(
+                    "Task was started, but server cannot be reached"
+                            + " - giving up after " + MAX_FAILED_POLLS + " attempts", thrown);
+        }
+        if (thrown instanceof RetryableException && ((RetryableException) thrown).retryAfter() != null) {
+            retryAfter(((RetryableException) thrown).retryAfter().getTime() - clock.getAsLong());
+        }
+    }
+
+    /**
+     * Makes the next poll wait at least as long as the server asked.
+     */
+    void retryAfter(long millis) {
+        retryAfter = Math.max(retryAfter, millis);
+    }
+
+    /**
+     * Records the duration of the task, which has completed, for later runs of
+     * the same object.
+     */
+    void completed() {
+        long duration = clock.getAsLong() - startedAt;
+        Metrics.getRecorder().recordTime(Metrics.TASK_DURATION, subjectId, TimeUnit.MILLISECONDS.toNanos(duration));
+        DURATIONS.merge(subjectId, duration,
+                (smoothed, latest) -> Math.round(smoothed * (1 - HISTORY_WEIGHT) + latest * HISTORY_WEIGHT));
+    }
+
+    /**
+     * @return the estimated time until the task completes, or -1 when unknown
+     */
+    private long estimateRemaining(double progress) {
+        long now = clock.getAsLong();
+        if (progress > 0 && progress < 1) {
+            if (firstProgress < 0) {
+                firstProgress = progress;
+                firstProgressAt = now;
+            } else if (progress > firstProgress && now > firstProgressAt) {
+                double rate = (progress - firstProgress) / (now - firstProgressAt);
+                return (long) ((1 - progress) / rate);
+            }
+        }
+        Long expected = subjectId == null ? null : DURATIONS.get(subjectId);
+        long elapsed = now - startedAt;
+        return expected != null && expected > elapsed ? expected - elapsed : -1;
+    }
+
+    private static long next(long remaining, long fallback) {
+        long next = remaining >= 0 ? remaining / 2 : fallback;
+        return Math.max(MIN_INTERVAL_MS, Math.min(MAX_INTERVAL_MS, next));
+    }
+
+    /**
+     * Forgets the recorded durations.
+     */
+    static void clearHistory() {
+        DURATIONS.clear();
+    }
+}
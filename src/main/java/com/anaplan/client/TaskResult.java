@@ -19,8 +19,10 @@ import com.anaplan.client.dto.ServerFileData;
 import com.anaplan.client.dto.TaskResultData;
 import com.anaplan.client.dto.TaskResultDetailData;
 import com.anaplan.client.ex.AnaplanAPIException;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -139,11 +141,23 @@ public class TaskResult {
                 }
             }
 
+            @Override
+            InputStream getChunkContentStream(String chunkId) {
+                byte[] chunkContent = getChunkContent(chunkId);
+                return chunkContent == null ? null : new ByteArrayInputStream(chunkContent);
+            }
+
             @Override
             public void upLoad(File source, boolean deleteExisting, int chunkSize)
                     throws AnaplanAPIException {
                 throw new AnaplanAPIException("Cannot upload to failure dump");
             }
+
+            @Override
+            public void upLoad(File source, boolean deleteExisting, int chunkSize, int concurrency,
+                               boolean resumable) throws AnaplanAPIException {
+                throw new AnaplanAPIException("Cannot upload to failure dump");
+            }
         };
     }
 
@@ -0,0 +1,195 @@
+package com.anaplan.client;
+
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import feign.RetryableException;
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs and tracks many tasks on the server at once.
+ * <p>
+ * Unlike {@link Task#runTask()}, which holds its thread until the task ends,
+ * the runner polls the status of every task from a small shared pool of
+ * threads, each task on its own {@link TaskPoller} schedule, so tasks in
+ * different models or workspaces overlap freely. Each task is handed back as a
+ * future of its result; cancelling the future cancels the task on the server.
+ * Like tasks run directly, every task still in flight is cancelled when the
+ * client shuts down.
+ */
+public class TaskRunner implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskRunner.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final Set<CompletableFuture<TaskResult>> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param threads the number of threads creating tasks and polling their
+     *                status, which bounds the requests made at once
+     */
+    public TaskRunner(int threads) {
+        this.scheduler = Executors.newScheduledThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("anaplan-task-runner-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Creates a task on the server and tracks it until it ends.
+     *
+     * @param subject        the import, export, action or process to run
+     * @param taskParameters the run-time parameters to pass to the task
+     * @return the result of the task, which completes once the task has
+     * completed or been cancelled on the server; null when no result was given
+     */
+    public CompletableFuture<TaskResult> submit(TaskFactory subject, TaskParameters taskParameters) {
+        CompletableFuture<TaskResult> result = pending();
+        try {
+            scheduler.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    track(subject.createTask(taskParameters), result);
+                } catch (Throwable thrown) {
+                    result.completeExceptionally(thrown);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(closed());
+        }
+        return result;
+    }
+
+    /**
+     * Tracks a task which has already been created until it ends.
+     *
+     * @return the result of the task, as for {@link #submit}
+     */
+    public CompletableFuture<TaskResult> track(Task task) {
+        CompletableFuture<TaskResult> result = pending();
+        track(task, result);
+        return result;
+    }
+
+    private CompletableFuture<TaskResult> pending() {
+        CompletableFuture<TaskResult> result = new CompletableFuture<>();
+        pending.add(result);
+        result.whenComplete((taskResult, thrown) -> pending.remove(result));
+        if (scheduler.isShutdown()) {
+            result.completeExceptionally(closed());
+        }
+        return result;
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("Task runner is closed");
+    }
+
+    private void track(Task task, CompletableFuture<TaskResult> result) {
+        if (result.isDone()) {
+            return;
+        }
+        Task.track(task, () -> result.cancel(false));
+        result.whenComplete((taskResult, thrown) -> {
+            Task.untrack(task);
+            if (thrown instanceof CancellationException && !Task.isClosingDown()) {
+                // tasks still running on shutdown are cancelled by Task itself
+                try {
+                    task.cancel();
+                } catch (Throwable cancelFailure) {
+                    LOG.warn("Failed to cancel task {}: {}", task.getId(), Utils.formatThrowable(cancelFailure));
+                }
+            }
+        });
+        new Poll(task, result).schedule(-1);
+    }
+
+    /**
+     * Stops polling. Tasks which have not ended are left running on the
+     * server and are no longer cancelled on shutdown; their results complete
+     * exceptionally with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (CompletableFuture<TaskResult> result : pending) {
+            result.completeExceptionally(closed());
+        }
+    }
+
+    /**
+     * The polls of one task, each scheduling the next until the task ends.
+     */
+    private final class Poll implements Runnable {
+
+        private final Task task;
+        private final CompletableFuture<TaskResult> result;
+        private final TaskPoller poller;
+        private boolean started;
+
+        Poll(Task task, CompletableFuture<TaskResult> result) {
+            this.task = task;
+            this.result = result;
+            this.poller = new TaskPoller(task.getSubject().getId());
+        }
+
+        void schedule(double progress) {
+            long interval = started ? poller.nextInterval(progress) : poller.firstInterval();
+            started = true;
+            if (!result.isDone()) {
+                try {
+                    scheduler.schedule(this, interval, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(closed());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            TaskStatus status;
+            try {
+                status = task.getStatus();
+                poller.pollSucceeded();
+            } catch (AnaplanAPIException | RetryableException thrown) {
+                try {
+                    poller.pollFailed(thrown);
+                } catch (AnaplanAPIException givenUp) {
+                    result.completeExceptionally(givenUp);
+                    return;
+                }
+                LOG.debug("Failed to get status of task {} ({})", task.getId(), Utils.formatThrowable(thrown));
+                schedule(-1);
+                return;
+            } catch (Throwable thrown) {
+                result.completeExceptionally(thrown);
+                return;
+            }
+            Task.logProgress(status);
+            if (status.getTaskState() == TaskStatus.State.COMPLETE
+                    || status.getTaskState() == TaskStatus.State.CANCELLED) {
+                if (status.getTaskState() == TaskStatus.State.COMPLETE) {
+                    poller.completed();
+                }
+                Task.logOutcome(status);
+                result.complete(status.getResult());
+                return;
+            }
+            schedule(status.getProgress());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.anaplan.client;
+
+/**
+ * Receives the progress of the uploads and downloads of server files made
+ * through a {@link Service}, see {@link Service#setTransferListener}.
+ * <p>
+ * The listener is called once for every chunk transferred, periodically while
+ * a transfer is under way even if no chunk completes, and once more when the
+ * transfer is done. It is called from the threads doing the transfer, so it
+ * should return quickly and be thread safe.
+ */
+public interface TransferListener {
+
+    /**
+     * @param progress a snapshot of the transfer
+     */
+    void progress(TransferProgress progress);
+}
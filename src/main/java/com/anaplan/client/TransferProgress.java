@@ -0,0 +1,150 @@
+package com.anaplan.client;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of an upload or download of a server file.
+ * <p>
+ * Raw bytes count the content of the file, compressed bytes what was sent
+ * over the wire. Downloads are decompressed by the HTTP client, and chunks
+ * which were gzipped before being handed to the client have no known raw
+ * size, so in both cases the two counts are the same. Chunks which a resumed
+ * transfer skips count as done but not towards the throughput.
+ */
+public final class TransferProgress {
+
+    /**
+     * Which way the content flows.
+     */
+    public enum Direction {
+        UPLOAD,
+        DOWNLOAD
+    }
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private final Direction direction;
+    private final String fileName;
+    private final int chunksDone;
+    private final int chunksTotal;
+    private final long rawBytes;
+    private final long compressedBytes;
+    private final long totalBytes;
+    private final long elapsedMillis;
+    private final double bytesPerSecond;
+    private final double averageBytesPerSecond;
+    private final long etaMillis;
+    private final boolean done;
+
+    TransferProgress(Direction direction, String fileName, int chunksDone, int chunksTotal, long rawBytes,
+                     long compressedBytes, long totalBytes, long elapsedMillis, double bytesPerSecond,
+                     double averageBytesPerSecond, long etaMillis, boolean done) {
+        this.direction = direction;
+        this.fileName = fileName;
+        this.chunksDone = chunksDone;
+        this.chunksTotal = chunksTotal;
+        this.rawBytes = rawBytes;
+        this.compressedBytes = compressedBytes;
+        this.totalBytes = totalBytes;
+        this.elapsedMillis = elapsedMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.averageBytesPerSecond = averageBytesPerSecond;
+        this.etaMillis = etaMillis;
+        this.done = done;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the name of the server file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getChunksDone() {
+        return chunksDone;
+    }
+
+    /**
+     * @return the number of chunks of the file, or -1 while unknown, as for
+     * uploads of streamed content
+     */
+    public int getChunksTotal() {
+        return chunksTotal;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return the raw size of the file, or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the recent throughput in raw bytes per second, which drops
+     * towards zero while the transfer is stalled
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return the throughput in raw bytes per second since the transfer started
+     */
+    public double getAverageBytesPerSecond() {
+        return averageBytesPerSecond;
+    }
+
+    /**
+     * @return the estimated time until the transfer is done, or -1 if unknown
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(direction == Direction.UPLOAD ? "Upload of " : "Download of ").append(fileName)
+                .append(done ? " done: " : ": ")
+                .append(chunksDone);
+        if (chunksTotal >= 0) {
+            text.append('/').append(chunksTotal);
+        }
+        text.append(String.format(Locale.ROOT, " chunks, %.1f MB", rawBytes / BYTES_PER_MB));
+        if (compressedBytes != rawBytes) {
+            text.append(String.format(Locale.ROOT, " (%.1f MB compressed)", compressedBytes / BYTES_PER_MB));
+        }
+        text.append(String.format(Locale.ROOT, " in %s, %.2f MB/s (average %.2f MB/s)",
+                formatDuration(elapsedMillis), bytesPerSecond / BYTES_PER_MB, averageBytesPerSecond / BYTES_PER_MB));
+        if (!done && etaMillis >= 0) {
+            text.append(", ETA ").append(formatDuration(etaMillis));
+        }
+        return text.toString();
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
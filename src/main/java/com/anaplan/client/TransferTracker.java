@@ -0,0 +1,179 @@
+package com.anaplan.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the chunks of one upload or download as they complete and reports
+ * the progress to the {@link TransferListener} of the service, if any.
+ * <p>
+ * Besides every chunk, the progress is reported and logged every
+ * {@link #REPORT_INTERVAL_MS} from a shared timer, so a stalled transfer
+ * shows up as a recent throughput falling to zero rather than as silence.
+ * The recent throughput is smoothed over the reports, the ETA is taken from
+ * the average throughput when the size of the file is known and from the
+ * average time per chunk otherwise.
+ */
+class TransferTracker implements Closeable {
+
+    static final long REPORT_INTERVAL_MS = 30000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransferTracker.class);
+    // weight of the latest sample in the recent throughput
+    private static final double RATE_WEIGHT = 0.3;
+    private static final ScheduledExecutorService REPORT_TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("anaplan-transfer-progress").setDaemon(true).build());
+
+    private final TransferListener listener;
+    private final TransferProgress.Direction direction;
+    private final String fileName;
+    private final int chunksTotal;
+    private final long totalBytes;
+    private final LongSupplier clock;
+    private final long startedAt;
+    private ScheduledFuture<?> reports;
+    private int chunksDone;
+    private int chunksSkipped;
+    private long rawBytes;
+    private long compressedBytes;
+    private long skippedBytes;
+    private long lastReportedAt;
+    private long lastReportedBytes;
+    private double rate;
+    private boolean sampled;
+    private boolean done;
+
+    /**
+     * @param listener    receives the progress, or null to only log it
+     * @param direction   which way the content flows
+     * @param fileName    the name of the server file
+     * @param chunksTotal the number of chunks, or -1 if unknown
+     * @param totalBytes  the raw size of the content, or -1 if unknown
+     */
+    TransferTracker(TransferListener listener, TransferProgress.Direction direction, String fileName,
+                    int chunksTotal, long totalBytes) {
+        this(listener, direction, fileName, chunksTotal, totalBytes, System::currentTimeMillis);
+    }
+
+    TransferTracker(TransferListener listener, TransferProgress.Direction direction, String fileName,
+                    int chunksTotal, long totalBytes, LongSupplier clock) {
+        this.listener = listener;
+        this.direction = direction;
+        this.fileName = fileName;
+        this.chunksTotal = chunksTotal;
+        this.totalBytes = totalBytes;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+        this.lastReportedAt = startedAt;
+    }
+
+    /**
+     * Starts reporting the progress periodically, until closed.
+     *
+     * @return this tracker
+     */
+    TransferTracker start() {
+        reports = REPORT_TIMER.scheduleAtFixedRate(() -> report(true),
+                REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Counts chunks which a resumed transfer does not need to send again.
+     *
+     * @param chunks the number of chunks
+     * @param length their total size
+     */
+    synchronized void skipped(int chunks, long length) {
+        chunksDone += chunks;
+        chunksSkipped += chunks;
+        rawBytes += length;
+        compressedBytes += length;
+        skippedBytes += length;
+    }
+
+    /**
+     * Counts a chunk which has been transferred.
+     *
+     * @param rawLength        the size of the content of the chunk
+     * @param compressedLength the size of the chunk as sent
+     */
+    void chunkDone(long rawLength, long compressedLength) {
+        synchronized (this) {
+            chunksDone++;
+            rawBytes += rawLength;
+            compressedBytes += compressedLength;
+        }
+        report(false);
+    }
+
+    /**
+     * Reports the transfer as done.
+     */
+    void finished() {
+        synchronized (this) {
+            done = true;
+        }
+        report(true);
+    }
+
+    /**
+     * Stops the periodic reports.
+     */
+    @Override
+    public void close() {
+        if (reports != null) {
+            reports.cancel(false);
+        }
+    }
+
+    void report(boolean log) {
+        TransferProgress progress = snapshot();
+        if (log) {
+            LOG.info("{}", progress);
+        } else {
+            LOG.debug("{}", progress);
+        }
+        if (listener != null) {
+            try {
+                listener.progress(progress);
+            } catch (RuntimeException e) {
+                LOG.warn("Transfer listener failed: {}", Utils.formatThrowable(e));
+            }
+        }
+    }
+
+    synchronized TransferProgress snapshot() {
+        long now = clock.getAsLong();
+        long elapsed = now - startedAt;
+        long transferred = rawBytes - skippedBytes;
+        if (now > lastReportedAt) {
+            double sample = (transferred - lastReportedBytes) * 1000.0 / (now - lastReportedAt);
+            rate = sampled ? rate * (1 - RATE_WEIGHT) + sample * RATE_WEIGHT : sample;
+            sampled = true;
+            lastReportedAt = now;
+            lastReportedBytes = transferred;
+        }
+        double average = elapsed > 0 ? transferred * 1000.0 / elapsed : 0;
+        return new TransferProgress(direction, fileName, chunksDone, chunksTotal, rawBytes, compressedBytes,
+                totalBytes, elapsed, rate, average, done ? 0 : estimateRemaining(elapsed, average), done);
+    }
+
+    private long estimateRemaining(long elapsed, double average) {
+        if (totalBytes >= 0 && average > 0) {
+            return Math.round(Math.max(0, totalBytes - rawBytes) * 1000 / average);
+        }
+        int chunksTransferred = chunksDone - chunksSkipped;
+        if (chunksTotal >= 0 && chunksTransferred > 0) {
+            return Math.max(0, chunksTotal - chunksDone) * elapsed / chunksTransferred;
+        }
+        return -1;
+    }
+}
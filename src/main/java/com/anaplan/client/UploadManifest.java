@@ -0,0 +1,203 @@
+package com.anaplan.client;
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoints a resumable upload of a local file to a {@link ServerFile}. The manifest lives next
+ * to the source file and records every chunk the server has acknowledged, with the offset and
+ * length it was cut at and the CRC32 of its content; it is appended to as acknowledgements arrive,
+ * so it survives the upload being killed. Chunks are acknowledged out of order, so the recorded
+ * chunks need not form a prefix of the file.
+ * <p>
+ * Every recorded chunk is checked against the source when the manifest is loaded, so a line cut
+ * short when the upload was killed is not taken for a chunk of another length. Loading stops at
+ * the first chunk which does not match.
+ * <p>
+ * The header holds a hash of everything which determines how the file is cut into chunks: the
+ * source path, size and modification time, the chunk size, and the server file with its
+ * encoding, separator and delimiter. A manifest whose header does not match is discarded.
+ */
+class UploadManifest implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadManifest.class);
+    private static final String HEADER_PREFIX = "anaplan-upload-manifest\t2\t";
+    private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final String header;
+    private final Map<String, long[]> acknowledged = new HashMap<>();
+    private Writer writer;
+
+    private UploadManifest(File file, String header) {
+        this.file = file;
+        this.header = header;
+    }
+
+    /**
+     * @param source the local file being uploaded
+     * @return the manifest location for the source file
+     */
+    static File locationOf(File source) {
+        return new File(source.getAbsoluteFile().getParentFile(), ".upload." + source.getName() + ".manifest");
+    }
+
+    /**
+     * Loads the manifest left behind by an interrupted upload of the same source to the same server
+     * file, or starts an empty one.
+     *
+     * @param file      the manifest location
+     * @param source    the local file being uploaded
+     * @param chunkSize the chunk size of the upload
+     * @param target    the server file being uploaded to
+     * @return the manifest
+     */
+    static UploadManifest open(File file, File source, int chunkSize, ServerFile target) throws IOException {
+        String key = source.getCanonicalPath() + "\n" + source.length() + "\n" + source.lastModified() + "\n"
+                + chunkSize + "\n" + target.getId() + "\n" + target.getData().getEncoding() + "\n"
+                + target.getData().getSeparator() + "\n" + target.getData().getDelimiter();
+        UploadManifest manifest = new UploadManifest(file,
+                HEADER_PREFIX + Hashing.sha256().hashString(key, StandardCharsets.UTF_8));
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Files.newInputStream(file.toPath()), StandardCharsets.UTF_8));
+                 RandomAccessFile sourceFile = new RandomAccessFile(source, "r")) {
+                if (manifest.header.equals(reader.readLine())) {
+                    ByteBuffer buffer = ByteBuffer.allocate(VERIFY_BUFFER_SIZE);
+                    CRC32 crc = new CRC32();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        long[] entry = parse(line);
+                        // the last line may have been cut short when the upload was killed
+                        if (entry == null || entry[0] + entry[1] > source.length()
+                                || checksum(sourceFile.getChannel(), entry[0], entry[1], buffer, crc) != entry[2]) {
+                            LOG.info("Upload manifest {} does not match the source at chunk {}, resuming from there", file,
+                                    line.split("\t")[0]);
+                            break;
+                        }
+                        manifest.acknowledged.put(line.substring(0, line.indexOf('\t')), entry);
+                    }
+                } else {
+                    LOG.info("Ignoring upload manifest {} left by a different upload", file);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the offset, length and CRC32 of a <code>chunkId offset length crc32</code> line, or
+     * null if it is not one
+     */
+    private static long[] parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            long[] entry = {Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3], 16)};
+            return entry[0] >= 0 && entry[1] >= 0 ? entry : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(FileChannel channel, long offset, long length, ByteBuffer buffer, CRC32 crc)
+            throws IOException {
+        crc.reset();
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return -1;
+            }
+            crc.update(buffer.array(), 0, read);
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the number of chunks the server has acknowledged
+     */
+    synchronized int size() {
+        return acknowledged.size();
+    }
+
+    /**
+     * Gives the length of a chunk the server has acknowledged, so it can be skipped.
+     *
+     * @param chunkId the ID of the chunk
+     * @param offset  the offset the chunk starts at in this run
+     * @return the length of the chunk, or -1 if it needs to be uploaded
+     */
+    synchronized long acknowledgedLength(String chunkId, long offset) {
+        long[] entry = acknowledged.get(chunkId);
+        return entry != null && entry[0] == offset ? entry[1] : -1;
+    }
+
+    /**
+     * Forgets every chunk, when the upload has to start from scratch.
+     */
+    synchronized void clear() throws IOException {
+        acknowledged.clear();
+        close();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        writer.write(header + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Records a chunk the server has acknowledged.
+     *
+     * @param checksum the CRC32 of the content of the chunk
+     */
+    synchronized void record(String chunkId, long offset, long length, long checksum) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+        acknowledged.put(chunkId, new long[] {offset, length, checksum});
+        writer.write(chunkId + "\t" + offset + "\t" + length + "\t" + Long.toHexString(checksum) + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Removes the manifest once the upload has completed.
+     */
+    synchronized void delete() throws IOException {
+        close();
+        if (!file.delete() && file.exists()) {
+            throw new FileNotFoundException("Upload manifest \"" + file + "\" cannot be deleted");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
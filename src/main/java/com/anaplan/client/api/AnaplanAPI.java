@@ -6,9 +6,11 @@ import com.anaplan.client.dto.ImportData;
 import com.anaplan.client.dto.ProcessData;
 import com.anaplan.client.dto.ServerFileData;
 import com.anaplan.client.dto.responses.*;
+import com.anaplan.client.transport.interceptors.CompressPutBodyInjector;
 import feign.Headers;
 import feign.Param;
 import feign.RequestLine;
+import java.io.InputStream;
 
 /**
  * Created by Spondon Saha
@@ -59,6 +61,13 @@ public interface AnaplanAPI {
             @Param("fileId") String fileId,
             @Param("chunkId") String chunkId);
 
+    @RequestLine("GET /workspaces/{workspaceId}/models/{modelId}/files/{fileId}/chunks/{chunkId}")
+    InputStream getChunkContentStream(
+            @Param("workspaceId") String workspaceId,
+            @Param("modelId") String modelId,
+            @Param("fileId") String fileId,
+            @Param("chunkId") String chunkId);
+
     @RequestLine("POST /workspaces/{workspaceId}/models/{modelId}/files/{fileId}")
     ServerFileResponse upsertFileDataSource(
             @Param("workspaceId") String workspaceId,
@@ -84,6 +93,19 @@ public interface AnaplanAPI {
             @Param("chunkId") String chunkId,
             byte[] fileData);
 
+    /**
+     * Uploads a chunk which has already been gzipped, so that it is not
+     * compressed again.
+     */
+    @RequestLine("PUT /workspaces/{workspaceId}/models/{modelId}/files/{fileId}/chunks/{chunkId}")
+    @Headers({"Content-Type: application/x-gzip", CompressPutBodyInjector.PRECOMPRESSED + ": true"})
+    void uploadChunkPrecompressed(
+            @Param("workspaceId") String workspaceId,
+            @Param("modelId") String modelId,
+            @Param("fileId") String fileId,
+            @Param("chunkId") String chunkId,
+            byte[] compressedData);
+
     @RequestLine("POST /workspaces/{workspaceId}/models/{modelId}/files/{fileId}/complete")
     ServerFileResponse completeUpload(
             @Param("workspaceId") String workspaceId,
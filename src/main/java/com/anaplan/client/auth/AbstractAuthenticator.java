@@ -4,14 +4,20 @@ import com.anaplan.client.Constants;
 import com.anaplan.client.api.AnaplanAuthenticationAPI;
 import com.anaplan.client.dto.responses.RefreshTokenResp;
 import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.metrics.Metrics;
 import com.anaplan.client.transport.AnaplanApiProvider;
 import com.anaplan.client.transport.ConnectionProperties;
 import com.anaplan.client.transport.interceptors.AConnectHeaderInjector;
 import com.anaplan.client.transport.retryer.FeignApiRetryer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import feign.Feign;
 import feign.FeignException;
 import feign.jackson.JacksonDecoder;
 import feign.jackson.JacksonEncoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,10 +32,22 @@ public abstract class AbstractAuthenticator extends AnaplanApiProvider implement
     private static final Logger LOG = LoggerFactory.getLogger(AbstractAuthenticator.class.getName());
     private static final int TOKEN_EXPIRATION_REFRESH_WINDOW = 5 * 60 * 1000;
     private static final int TOKEN_EXPIRED_WINDOW =  60 * 1000;
+    private static final int TOKEN_REFRESH_RETRY_INTERVAL = 30 * 1000;
+    private static final int DEFAULT_TOKEN_LIFETIME = 35 * 60 * 1000;
+    private static final String AUTH_HEADER_PREFIX = "AnaplanAuthToken ";
+    private static final ExecutorService TOKEN_REFRESHER = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("anaplan-token-refresh-%d").setDaemon(true).build());
+
+    private final Object lock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long nextRefreshAt;
     private AnaplanAuthenticationAPI authClient;
     private byte[] authToken;
     private Long authTokenExpiresAt;
+    private volatile Token current;
     private ConnectionProperties properties;
+    private TokenCache tokenCache;
+    private boolean tokenCacheChecked;
 
     AbstractAuthenticator(ConnectionProperties connectionProperties) {
         super(connectionProperties, null);
@@ -38,23 +56,169 @@ public abstract class AbstractAuthenticator extends AnaplanApiProvider implement
 
     /**
      * Fetches auth token from Anaplan Auth Service, checks to see if its expired
-     * and accordingly fetches a fresh new token or refreshes the existing token, exactly
-     * 1 minute before it expires, as defined by TOKEN_EXPIRED_WINDOW.
+     * and accordingly fetches a fresh new token or refreshes the existing token.
+     * <p>
+     * A token is used until 1 minute before it expires, as defined by
+     * TOKEN_EXPIRED_WINDOW; only then do callers wait while a new one is
+     * fetched, one thread authenticating for all. Within the last 5 minutes,
+     * as defined by TOKEN_EXPIRATION_REFRESH_WINDOW, the token is refreshed in
+     * the background while callers carry on with the current one, with at most
+     * one refresh in flight. A failed refresh is not tried again for 30
+     * seconds, as defined by TOKEN_REFRESH_RETRY_INTERVAL.
      *
      * @return AuthenticationResp
      */
     @Override
     public String getAuthToken() {
-        if (authToken == null || authTokenExpiresAt == null || System.currentTimeMillis() - authTokenExpiresAt > TOKEN_EXPIRED_WINDOW) {
-            authToken = authenticate();
-        } else if (authTokenExpiresAt - System.currentTimeMillis() < TOKEN_EXPIRATION_REFRESH_WINDOW) {
-            authToken = refreshToken();
+        return validToken().value;
+    }
+
+    /**
+     * @return the value of the Authorization header carrying the auth token,
+     * kept with the token so that requests do not build it each time
+     */
+    @Override
+    public String getAuthHeader() {
+        return validToken().header;
+    }
+
+    private Token validToken() {
+        Token token = current;
+        long now = System.currentTimeMillis();
+        if (token == null || now > token.expiresAt - TOKEN_EXPIRED_WINDOW) {
+            synchronized (lock) {
+                token = current;
+                if (token == null || System.currentTimeMillis() > token.expiresAt - TOKEN_EXPIRED_WINDOW) {
+                    token = loadCachedToken();
+                }
+                if (token == null) {
+                    long start = Metrics.start();
+                    try {
+                        authToken = authenticate();
+                    } finally {
+                        Metrics.stop(Metrics.AUTH, "authenticate", start);
+                    }
+                    token = publish();
+                    storeCachedToken(token, System.currentTimeMillis());
+                }
+            }
+        } else if (now > token.expiresAt - TOKEN_EXPIRATION_REFRESH_WINDOW && now >= nextRefreshAt) {
+            refreshInBackground(token);
+        }
+        return token;
+    }
+
+    private void refreshInBackground(Token token) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            TOKEN_REFRESHER.execute(() -> {
+                try {
+                    synchronized (lock) {
+                        // skip if the token was replaced while this was queued
+                        if (current == token) {
+                            authToken = refreshToken();
+                            storeCachedToken(publish(), System.currentTimeMillis());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // the current token is still used, and replaced once it expires
+                    nextRefreshAt = System.currentTimeMillis() + TOKEN_REFRESH_RETRY_INTERVAL;
+                    LOG.warn("Token refresh failed, will retry in {} seconds: {}",
+                            TOKEN_REFRESH_RETRY_INTERVAL / 1000, e.getMessage());
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
         }
-        return new String(authToken);
+    }
+
+    /**
+     * Takes up the token cached by an earlier process, the first time a token
+     * is needed. The token is validated with the auth service unless that was
+     * done less than AUTH_TTL_SECONDS ago.
+     *
+     * @return the cached token, or null to authenticate
+     */
+    private Token loadCachedToken() {
+        if (tokenCacheChecked || getTokenCache() == null) {
+            return null;
+        }
+        tokenCacheChecked = true;
+        TokenCache.CachedToken cached = tokenCache.load();
+        long now = System.currentTimeMillis();
+        if (cached == null || now > cached.getExpiresAt() - TOKEN_EXPIRED_WINDOW) {
+            return null;
+        }
+        if (now - cached.getValidatedAt() > Constants.AUTH_TTL_SECONDS * 1000L) {
+            try {
+                getAuthClient().validateToken(cached.getValue());
+            } catch (FeignException e) {
+                LOG.debug("Cached auth token is no longer valid: {}", e.getMessage());
+                tokenCache.remove();
+                return null;
+            }
+            cached = new TokenCache.CachedToken(cached.getValue(), cached.getExpiresAt(), now);
+            tokenCache.store(cached);
+        }
+        LOG.info("Reusing cached auth token...");
+        authToken = cached.getValue().getBytes();
+        authTokenExpiresAt = cached.getExpiresAt();
+        return publish();
+    }
+
+    private void storeCachedToken(Token token, long validatedAt) {
+        if (getTokenCache() != null) {
+            tokenCache.store(new TokenCache.CachedToken(token.value, token.expiresAt, validatedAt));
+        }
+    }
+
+    private TokenCache getTokenCache() {
+        if (tokenCache == null && properties.isTokenCacheEnabled()) {
+            String principal = getPrincipal();
+            byte[] secret = getTokenCacheSecret();
+            if (principal != null && secret != null) {
+                tokenCache = new TokenCache(properties.getTokenCacheDirectory(), properties.getAuthServiceUri(),
+                        principal, secret);
+            }
+        }
+        return tokenCache;
+    }
+
+    /**
+     * @return the name of whoever the token is issued to, which together with
+     * the auth service picks the cached token; null if tokens are not cached
+     */
+    protected String getPrincipal() {
+        return null;
+    }
+
+    /**
+     * @return a secret of the credentials which the key encrypting the cached
+     * token is derived from; null if tokens are not cached
+     */
+    protected byte[] getTokenCacheSecret() {
+        return null;
+    }
+
+    /**
+     * Makes the token last fetched the one handed out to callers. A token
+     * whose expiry is not known is taken to last DEFAULT_TOKEN_LIFETIME from
+     * now.
+     */
+    private Token publish() {
+        Token token = new Token(new String(authToken), authTokenExpiresAt == null
+                ? System.currentTimeMillis() + DEFAULT_TOKEN_LIFETIME
+                : authTokenExpiresAt);
+        current = token;
+        return token;
     }
 
     @Override
-    public AnaplanAuthenticationAPI getAuthClient() {
+    public synchronized AnaplanAuthenticationAPI getAuthClient() {
         if (authClient == null) {
             authClient = Feign.builder()
                     .client(createFeignClient())
@@ -72,30 +236,59 @@ public abstract class AbstractAuthenticator extends AnaplanApiProvider implement
     }
 
     @Override
-    public void setAuthClient(AnaplanAuthenticationAPI authClient) {
+    public synchronized void setAuthClient(AnaplanAuthenticationAPI authClient) {
         this.authClient = authClient;
     }
 
     public void setAuthTokenExpiresAt(Long authTokenExpiresAt) {
-        this.authTokenExpiresAt = authTokenExpiresAt;
+        synchronized (lock) {
+            this.authTokenExpiresAt = authTokenExpiresAt;
+            if (authToken != null) {
+                publish();
+            }
+        }
     }
 
     public Long getAuthTokenExpiresAt() {
-        return authTokenExpiresAt;
+        synchronized (lock) {
+            return authTokenExpiresAt;
+        }
     }
 
     public void setAuthToken(String authToken) {
-        this.authToken = authToken.getBytes();
+        synchronized (lock) {
+            this.authToken = authToken.getBytes();
+            publish();
+        }
     }
 
     private byte[] refreshToken() {
         LOG.info("Refreshing auth token...");
+        long start = Metrics.start();
         try {
             RefreshTokenResp refreshTokenResp = getAuthClient().refreshToken(new String(authToken));
             authTokenExpiresAt = refreshTokenResp.getItem().getExpiresAt();
             return refreshTokenResp.getItem().getTokenValue().getBytes();
         } catch (FeignException e) {
             throw new AnaplanAPIException("Token Refresh failed!", e);
+        } finally {
+            Metrics.stop(Metrics.AUTH, "refresh", start);
+        }
+    }
+
+    /**
+     * A token with the header carrying it and when it expires.
+     */
+    private static final class Token {
+
+        private final String value;
+        private final String header;
+        private final long expiresAt;
+
+        Token(String value, long expiresAt) {
+            this.value = value;
+            this.header = AUTH_HEADER_PREFIX + value;
+            this.expiresAt = expiresAt;
         }
     }
 }
@@ -18,6 +18,15 @@ public interface Authenticator extends TransportApi {
      */
     String getAuthToken();
 
+    /**
+     * Fetches the value of the Authorization header carrying the auth-token
+     *
+     * @return Authorization header for the user-session
+     */
+    default String getAuthHeader() {
+        return "AnaplanAuthToken " + getAuthToken();
+    }
+
     /**
      * Fetches the authentication client
      *
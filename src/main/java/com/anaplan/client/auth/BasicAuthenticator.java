@@ -4,6 +4,7 @@ import com.anaplan.client.dto.responses.AuthenticationResp;
 import com.anaplan.client.ex.AnaplanAPIException;
 import com.anaplan.client.transport.ConnectionProperties;
 import feign.FeignException;
+import java.nio.charset.StandardCharsets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,4 +34,15 @@ public class BasicAuthenticator extends AbstractAuthenticator {
             throw new AnaplanAPIException("Basic Authentication failed!", e);
         }
     }
+
+    @Override
+    protected String getPrincipal() {
+        return getCredentials().getUserName();
+    }
+
+    @Override
+    protected byte[] getTokenCacheSecret() {
+        return (getCredentials().getUserName() + ':' + getCredentials().getPassPhrase())
+                .getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -59,6 +59,17 @@ public class CertificateAuthenticator extends AbstractAuthenticator {
         }
     }
 
+    @Override
+    protected String getPrincipal() {
+        X509Certificate certificate = getCredentials().getCertificate();
+        return certificate.getSubjectX500Principal().getName() + '#' + certificate.getSerialNumber();
+    }
+
+    @Override
+    protected byte[] getTokenCacheSecret() {
+        return getCredentials().getPrivateKey().getEncoded();
+    }
+
     /**
      * Generate a random byte-array to help with the private-key challenge
      *
@@ -0,0 +1,245 @@
+package com.anaplan.client.auth;
+
+import com.google.common.io.BaseEncoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the auth token of one principal of one auth service in a file, so that
+ * short-lived processes can reuse a token issued to an earlier one rather than
+ * authenticating again.
+ * <p>
+ * The file is named after a hash of the auth service URL and the principal,
+ * and is readable by its owner only where the file system allows. Its content
+ * is encrypted with AES-GCM under a key derived from a secret of the
+ * credentials, such as the password or the private key, so the token is of no
+ * use to anyone without them, and a file written for other credentials simply
+ * fails to decrypt. Every failure to read or write the cache is logged and
+ * otherwise ignored, falling back to authenticating as usual.
+ * <p>
+ * A copy of the file is enough to test guesses of the password offline, so
+ * the key is derived with PBKDF2 at {@value #KEY_ITERATIONS} iterations,
+ * which makes every guess cost a fraction of a second. The key is only
+ * derived again when the salt changes: a token stored after one was loaded
+ * keeps the salt of the file, under a new IV.
+ */
+class TokenCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenCache.class);
+    private static final int VERSION = 2;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BITS = 128;
+    private static final int KEY_ITERATIONS = 600000;
+
+    private final Path file;
+    private final char[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private byte[] salt;
+    private byte[] key;
+
+    /**
+     * @param directory      the directory holding the cache files
+     * @param authServiceUri the auth service the token is issued by
+     * @param principal      the user name or certificate the token is issued to
+     * @param secret         the secret the encryption key is derived from
+     */
+    TokenCache(Path directory, URI authServiceUri, String principal, byte[] secret) {
+        this.file = directory.resolve(hash(authServiceUri + "\n" + principal) + ".token");
+        this.secret = BaseEncoding.base64().encode(secret).toCharArray();
+    }
+
+    /**
+     * @return the cached token, or null if there is none that can be read
+     */
+    CachedToken load() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Could not read token cache {}: {}", file, e.getMessage());
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            byte[] iv = new byte[IV_LENGTH];
+            in.readFully(salt);
+            in.readFully(iv);
+            byte[] encrypted = new byte[in.available()];
+            in.readFully(encrypted);
+            byte[] plain = cipher(Cipher.DECRYPT_MODE, salt, iv).doFinal(encrypted);
+            try (DataInputStream token = new DataInputStream(new ByteArrayInputStream(plain))) {
+                return new CachedToken(token.readUTF(), token.readLong(), token.readLong());
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            LOG.debug("Ignoring unreadable token cache {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the cached token.
+     */
+    void store(CachedToken token) {
+        try {
+            byte[] salt = lastSalt();
+            byte[] iv = randomBytes(IV_LENGTH);
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(plain)) {
+                out.writeUTF(token.getValue());
+                out.writeLong(token.getExpiresAt());
+                out.writeLong(token.getValidatedAt());
+            }
+            byte[] encrypted = cipher(Cipher.ENCRYPT_MODE, salt, iv).doFinal(plain.toByteArray());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(content)) {
+                out.writeInt(VERSION);
+                out.write(salt);
+                out.write(iv);
+                out.write(encrypted);
+            }
+            write(content.toByteArray());
+        } catch (IOException | GeneralSecurityException e) {
+            LOG.warn("Could not write token cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the cached token.
+     */
+    void remove() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete token cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the file through a temporary file, so that concurrent readers
+     * never see it half written.
+     */
+    private void write(byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Cipher cipher(int mode, byte[] salt, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key(salt), "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        // binds the content to this file, so it cannot be swapped for another principal's
+        cipher.updateAAD(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+
+    /**
+     * @return the salt the key was last derived with, or a new one
+     */
+    private synchronized byte[] lastSalt() {
+        return salt != null ? salt : randomBytes(SALT_LENGTH);
+    }
+
+    private synchronized byte[] key(byte[] salt) throws GeneralSecurityException {
+        if (!Arrays.equals(salt, this.salt)) {
+            PBEKeySpec keySpec = new PBEKeySpec(secret, salt, KEY_ITERATIONS, KEY_BITS);
+            try {
+                key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(keySpec).getEncoded();
+            } finally {
+                keySpec.clearPassword();
+            }
+            this.salt = salt;
+        }
+        return key;
+    }
+
+    private byte[] randomBytes(int count) {
+        byte[] bytes = new byte[count];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String hash(String value) {
+        try {
+            return BaseEncoding.base16().lowerCase().encode(
+                    MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A token with when it expires and when the auth service last confirmed
+     * it was valid.
+     */
+    static final class CachedToken {
+
+        private final String value;
+        private final long expiresAt;
+        private final long validatedAt;
+
+        CachedToken(String value, long expiresAt, long validatedAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.validatedAt = validatedAt;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        long getExpiresAt() {
+            return expiresAt;
+        }
+
+        long getValidatedAt() {
+            return validatedAt;
+        }
+    }
+}
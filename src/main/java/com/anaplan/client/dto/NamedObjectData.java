@@ -6,7 +6,7 @@ package com.anaplan.client.dto;
  * Date: 6/21/17
  * Time: 3:25 PM
  */
-public class NamedObjectData extends TaskParametersData {
+public class NamedObjectData extends TaskParametersData implements Cloneable {
     private String id;
     private String name;
     private String code;
@@ -35,6 +35,18 @@ public class NamedObjectData extends TaskParametersData {
         this.code = code;
     }
 
+    /**
+     * @return a shallow copy of this object, of the same class
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends NamedObjectData> T copy() {
+        try {
+            return (T) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public <T extends NamedObjectData> T merge(TaskParametersData data, Class<T> dataClass) {
         this.setLocaleName((data.getLocaleName() != null) ? data.getLocaleName() : this.getLocaleName());
         this.setConnectorParameters((data.getConnectorParameters() != null) ? data.getConnectorParameters() : this.getConnectorParameters());
@@ -5,11 +5,13 @@ package com.anaplan.client.jdbc;
  * Stored-Procedure/Function call, or a regular SELECT query.
  */
 
+import com.anaplan.client.CellReader;
 import com.anaplan.client.CellWriter;
 import com.anaplan.client.Constants;
 import com.anaplan.client.ex.AnaplanAPIException;
 import com.anaplan.client.ex.AnaplanRetryableException;
 import com.anaplan.client.ex.TooLongQueryError;
+import com.anaplan.client.metrics.Metrics;
 import com.anaplan.client.transport.ConnectionProperties;
 import com.anaplan.client.transport.retryer.AnaplanJdbcRetryer;
 import com.anaplan.client.transport.retryer.FeignApiRetryer;
@@ -154,7 +156,57 @@ public class JDBCCellWriter implements CellWriter {
             batch_records = 0;
             //batch update exceptions captured to determine the committed and failed records
         }catch (Exception e) {
-            LOG.debug("Error observed  : {}", e.getStackTrace());
+            LOG.debug("Error observed", e);
+            throw new AnaplanAPIException(e.getMessage());
+        } finally {
+            if (preparedStatement != null) {
+                if (!preparedStatement.isClosed())
+                    preparedStatement.close();
+            }
+        }
+        return datarowstransferred;
+    }
+
+    /**
+     * Write the rows of an Anaplan export to the configurable DB, in batches
+     * of up to batch_size rows. The header row of the reader is skipped.
+     *
+     * @param exportId      the export the rows come from
+     * @param cellReader    reads the rows of the exported file
+     * @param mapcols       the exported columns to write, in parameter order
+     * @param columnCount   the number of exported columns
+     * @param maxRetryCount the number of attempts to write a batch
+     * @param retryTimeout  the seconds to wait before retrying
+     * @return the number of rows written
+     * @throws AnaplanAPIException
+     * @throws SQLException
+     */
+    public int writeRows(
+        String exportId, CellReader cellReader, int[] mapcols, int columnCount, int maxRetryCount, int retryTimeout)
+            throws AnaplanAPIException, SQLException {
+        if (jdbcConfig.getJdbcConnectionUrl().length() > MAX_ALLOWED_CONNECTION_STRING_LENGTH) {
+            throw new InvalidParameterException("JDBC connection string cannot be more than " + MAX_ALLOWED_CONNECTION_STRING_LENGTH + " characters in length!");
+        }
+        try {
+            cellReader.getHeaderRow();
+            LOG.info("Export {} to database started successfully", exportId);
+            // rows are kept until their batch is committed, so that a failed batch can be retried
+            List<String[]> rowBatch = new ArrayList<>(batch_size);
+            String[] row;
+            while (null != (row = cellReader.readDataRow())) {
+                rowBatch.add(row);
+                if (rowBatch.size() == batch_size) {
+                    ++batch_no;
+                    batchExecution(rowBatch, columnCount, mapcols, null, 0, maxRetryCount, retryTimeout);
+                    rowBatch.clear();
+                }
+            }
+            if (!rowBatch.isEmpty()) {
+                ++batch_no;
+                batchExecution(rowBatch, columnCount, mapcols, null, 0, maxRetryCount, retryTimeout);
+            }
+        } catch (Exception e) {
+            LOG.debug("Error observed", e);
             throw new AnaplanAPIException(e.getMessage());
         } finally {
             if (preparedStatement != null) {
@@ -277,8 +329,11 @@ public class JDBCCellWriter implements CellWriter {
             try {
                 if (k == 1)
                     LOG.info("Writing batch {} ({} records)", batch_no, batch_records);
+                long start = Metrics.start();
                 count = preparedStatement.executeBatch();
                 connection.commit();
+                Metrics.stop(Metrics.JDBC_BATCH, null, start);
+                Metrics.recordValue(Metrics.JDBC_BATCH_ROWS, null, batch_records);
                 for (int x = 0; x < count.length; ++x) {
                     if (count[x] == 1) {
                         ++update;
@@ -0,0 +1,168 @@
+package com.anaplan.client.metrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes every metric as an MXBean of the platform MBean server, named
+ * {@code com.anaplan.client:type=Metrics,name=<name>,tag=<tag>}, with the
+ * count, total, minimum, maximum and mean of the values recorded. It keeps no
+ * history, so it suits watching a running process with JConsole or a JMX
+ * exporter rather than computing percentiles.
+ */
+public class JmxMetricsRecorder implements MetricsRecorder, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmxMetricsRecorder.class);
+    private static final String DOMAIN = "com.anaplan.client";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MBeanServer server;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public JmxMetricsRecorder() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsRecorder(MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void recordTime(String name, String tag, long nanos) {
+        stats(name, tag, "ms").record(nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void recordValue(String name, String tag, long value) {
+        stats(name, tag, "").record(value);
+    }
+
+    @Override
+    public void increment(String name, String tag, long amount) {
+        stats(name, tag, "").add(amount);
+    }
+
+    /**
+     * @return the summary of a metric, or null if nothing was recorded to it
+     */
+    public StatsMXBean getStats(String name, String tag) {
+        return stats.get(key(name, tag));
+    }
+
+    /**
+     * Unregisters the MXBeans.
+     */
+    @Override
+    public void close() {
+        for (Stats registered : stats.values()) {
+            try {
+                if (server.isRegistered(registered.objectName)) {
+                    server.unregisterMBean(registered.objectName);
+                }
+            } catch (JMException e) {
+                LOG.debug("Could not unregister {}: {}", registered.objectName, e.getMessage());
+            }
+        }
+        stats.clear();
+    }
+
+    private Stats stats(String name, String tag, String unit) {
+        Stats found = stats.get(key(name, tag));
+        return found != null ? found : stats.computeIfAbsent(key(name, tag), key -> register(name, tag, unit));
+    }
+
+    private Stats register(String name, String tag, String unit) {
+        ObjectName objectName = null;
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name)
+                    + (tag.isEmpty() ? "" : ",tag=" + ObjectName.quote(tag)));
+            Stats created = new Stats(objectName, unit);
+            server.registerMBean(created, objectName);
+            return created;
+        } catch (JMException e) {
+            // still summed up, for getStats
+            LOG.debug("Could not register metric {}: {}", objectName, e.getMessage());
+            return new Stats(objectName, unit);
+        }
+    }
+
+    private static String key(String name, String tag) {
+        return tag.isEmpty() ? name : name + '|' + tag;
+    }
+
+    /**
+     * The running summary of one metric.
+     */
+    private static final class Stats implements StatsMXBean {
+
+        private final ObjectName objectName;
+        private final String unit;
+        private long count;
+        private double total;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+
+        Stats(ObjectName objectName, String unit) {
+            this.objectName = objectName;
+            this.unit = unit;
+        }
+
+        synchronized void record(double value) {
+            count++;
+            total += value;
+            min = count == 1 ? value : Math.min(min, value);
+            max = count == 1 ? value : Math.max(max, value);
+        }
+
+        synchronized void add(long amount) {
+            count += amount;
+            total += amount;
+        }
+
+        @Override
+        public synchronized long getCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized double getTotal() {
+            return total;
+        }
+
+        @Override
+        public synchronized double getMin() {
+            return min;
+        }
+
+        @Override
+        public synchronized double getMax() {
+            return max;
+        }
+
+        @Override
+        public synchronized double getMean() {
+            return count == 0 ? Double.NaN : total / count;
+        }
+
+        @Override
+        public String getUnit() {
+            return unit;
+        }
+
+        @Override
+        public synchronized void reset() {
+            count = 0;
+            total = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+        }
+    }
+}
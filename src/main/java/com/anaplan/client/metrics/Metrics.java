@@ -0,0 +1,113 @@
+package com.anaplan.client.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link MetricsRecorder} the client records to, and the names of
+ * the metrics it records. Nothing is recorded unless a recorder is set or
+ * found through {@link ServiceLoader}.
+ */
+public final class Metrics {
+
+    /** Timer of every API and auth request, tagged by HTTP method */
+    public static final String HTTP_REQUEST = "anaplan.http.request";
+    /** Counter of API and auth responses, tagged by status code */
+    public static final String HTTP_RESPONSES = "anaplan.http.responses";
+    /** Counter of requests failed without a response, tagged by HTTP method */
+    public static final String HTTP_FAILURES = "anaplan.http.failures";
+    /** Timer of authenticating and refreshing the auth token, tagged authenticate or refresh */
+    public static final String AUTH = "anaplan.auth";
+    /** Timer of listing the objects of a model into the metadata cache, tagged by kind of object */
+    public static final String METADATA_LOAD = "anaplan.metadata.load";
+    /** Timer of downloading a chunk */
+    public static final String CHUNK_DOWNLOAD = "anaplan.chunk.download";
+    /** Timer of uploading a chunk */
+    public static final String CHUNK_UPLOAD = "anaplan.chunk.upload";
+    /** Histogram of the bytes of chunks as transferred, tagged download or upload */
+    public static final String CHUNK_BYTES = "anaplan.chunk.bytes";
+    /** Timer of gzipping a chunk */
+    public static final String CHUNK_COMPRESS = "anaplan.chunk.compress";
+    /** Histogram of the bytes of chunks before they are gzipped */
+    public static final String CHUNK_RAW_BYTES = "anaplan.chunk.raw.bytes";
+    /** Timer of polling the status of a task, tagged by kind of task */
+    public static final String TASK_POLL = "anaplan.task.poll";
+    /** Timer of tasks from their creation until they complete */
+    public static final String TASK_DURATION = "anaplan.task.duration";
+    /** Timer of executing a batch of rows with JDBC */
+    public static final String JDBC_BATCH = "anaplan.jdbc.batch";
+    /** Histogram of the rows of each JDBC batch */
+    public static final String JDBC_BATCH_ROWS = "anaplan.jdbc.batch.rows";
+
+    private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+    private static final MetricsRecorder NOOP = new MetricsRecorder() {
+        @Override
+        public void recordTime(String name, String tag, long nanos) {
+        }
+
+        @Override
+        public void recordValue(String name, String tag, long value) {
+        }
+
+        @Override
+        public void increment(String name, String tag, long amount) {
+        }
+    };
+
+    private static volatile MetricsRecorder recorder = load();
+
+    private Metrics() {
+    }
+
+    public static MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @param metricsRecorder the recorder to record to from now on, or null to
+     *                        stop recording
+     */
+    public static void setRecorder(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder == null ? NOOP : metricsRecorder;
+    }
+
+    /**
+     * @return the start of a timing, to pass to {@link #stop}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time since a timing started.
+     */
+    public static void stop(String name, String tag, long start) {
+        recorder.recordTime(name, tag == null ? "" : tag, System.nanoTime() - start);
+    }
+
+    public static void recordValue(String name, String tag, long value) {
+        recorder.recordValue(name, tag == null ? "" : tag, value);
+    }
+
+    public static void increment(String name, String tag) {
+        recorder.increment(name, tag == null ? "" : tag, 1);
+    }
+
+    private static MetricsRecorder load() {
+        try {
+            Iterator<MetricsRecorder> recorders = ServiceLoader.load(MetricsRecorder.class).iterator();
+            if (recorders.hasNext()) {
+                MetricsRecorder found = recorders.next();
+                LOG.info("Recording metrics to {}", found.getClass().getName());
+                return found;
+            }
+        } catch (ServiceConfigurationError e) {
+            LOG.warn("Could not load metrics recorder: {}", e.getMessage());
+        }
+        return NOOP;
+    }
+}
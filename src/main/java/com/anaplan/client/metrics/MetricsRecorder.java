@@ -0,0 +1,45 @@
+package com.anaplan.client.metrics;
+
+/**
+ * Receives the timings, sizes and counts recorded by the client, to pass them
+ * on to a metrics library or monitoring system.
+ * <p>
+ * Each metric is identified by one of the names in {@link Metrics} and a tag
+ * which splits it further, such as the HTTP method or the kind of object
+ * listed; the tag is empty when there is nothing to split by. Implementations
+ * are called from many threads at once, often on the path of every request, so
+ * they must be thread safe and cheap.
+ * <p>
+ * An implementation is picked up through {@link java.util.ServiceLoader} when
+ * listed in {@code META-INF/services/com.anaplan.client.metrics.MetricsRecorder},
+ * or set with {@link Metrics#setRecorder}.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Records how long something took.
+     *
+     * @param name  the name of the timer
+     * @param tag   the tag, or empty
+     * @param nanos the duration, in nanoseconds
+     */
+    void recordTime(String name, String tag, long nanos);
+
+    /**
+     * Records a value into a distribution, such as the size of a chunk.
+     *
+     * @param name  the name of the histogram
+     * @param tag   the tag, or empty
+     * @param value the value
+     */
+    void recordValue(String name, String tag, long value);
+
+    /**
+     * Adds to a count.
+     *
+     * @param name   the name of the counter
+     * @param tag    the tag, or empty
+     * @param amount the amount to add
+     */
+    void increment(String name, String tag, long amount);
+}
@@ -0,0 +1,34 @@
+package com.anaplan.client.metrics;
+
+/**
+ * The summary of one metric as published over JMX by {@link JmxMetricsRecorder}.
+ * Times are in milliseconds.
+ */
+public interface StatsMXBean {
+
+    /**
+     * @return the number of values recorded, or the count of a counter
+     */
+    long getCount();
+
+    /**
+     * @return the sum of the values recorded
+     */
+    double getTotal();
+
+    double getMin();
+
+    double getMax();
+
+    double getMean();
+
+    /**
+     * @return the unit of the values, ms for timers and empty otherwise
+     */
+    String getUnit();
+
+    /**
+     * Forgets the values recorded so far.
+     */
+    void reset();
+}
@@ -42,6 +42,7 @@ public class AnaplanApiProvider implements TransportApi {
     private final Authenticator authenticator;
     private ConnectionProperties properties;
     private AnaplanAPI apiClient;
+    private AnaplanAsyncApi asyncApiClient;
     private ObjectMapper objectMapper;
 
     public AnaplanApiProvider(ConnectionProperties connectionProperties, Authenticator authenticator) {
@@ -58,7 +59,7 @@ public class AnaplanApiProvider implements TransportApi {
      * for parsing to field-names only, so getter and setter names are ignored.
      * @return
      */
-    public ObjectMapper getObjectMapper() {
+    public synchronized ObjectMapper getObjectMapper() {
         if (objectMapper == null) {
             objectMapper = new ObjectMapper();
             SimpleModule byteSerializerMod = new SimpleModule();
@@ -79,17 +80,19 @@ public class AnaplanApiProvider implements TransportApi {
      * @return
      */
     @Override
-    public AnaplanAPI getApiClient() {
+    public synchronized AnaplanAPI getApiClient() {
         if (apiClient == null) {
             apiClient = Feign.builder()
                     .client(createFeignClient())
                     .encoder(new AnaplanApiEncoder(getObjectMapper()))
                     .decoder(new AnaplanApiDecoder(getObjectMapper()))
+                    // the decoder closes the body itself, except for streamed file-chunks
+                    .doNotCloseAfterDecode()
                     .requestInterceptors(Arrays.asList(
                             new AuthTokenInjector(authenticator),
                             new UserAgentInjector(),
                             new AConnectHeaderInjector(),
-                            new CompressPutBodyInjector()))
+                            new CompressPutBodyInjector(properties.getCompressionLevel())))
                     .retryer(new FeignApiRetryer(
                             (long) (properties.getRetryTimeout() * 1000),
                             (long) Constants.MAX_RETRY_TIMEOUT_SECS * 1000,
@@ -102,18 +105,41 @@ public class AnaplanApiProvider implements TransportApi {
     }
 
     @Override
-    public void setApiClient(AnaplanAPI anaplanAPI) {
+    public synchronized void setApiClient(AnaplanAPI anaplanAPI) {
         this.apiClient = anaplanAPI;
     }
 
+    /**
+     * Generates the non-blocking client for the chunk, task status and
+     * metadata calls of the Anaplan APIs
+     * @return
+     */
+    public synchronized AnaplanAsyncApi getAsyncApiClient() {
+        if (asyncApiClient == null) {
+            asyncApiClient = new AnaplanAsyncApi(properties, createOkHttpClient(), authenticator, getObjectMapper());
+        }
+        return asyncApiClient;
+    }
+
     /**
      * Creates a Feign/OkHttp client for speaking to Auth-Service and sets up the
-     * appropriate proxy handler.
+     * appropriate proxy handler. Requests are timed, see {@link MeteredClient}.
      *
      * @return A Feign/OkHttp client
      */
     protected Client createFeignClient() {
-        okhttp3.OkHttpClient.Builder okHttpBuilder = new okhttp3.OkHttpClient.Builder();
+        return new MeteredClient(new OkHttpClient(createOkHttpClient()));
+    }
+
+    /**
+     * Creates an OkHttp client with the timeouts and proxy of the connection. The
+     * client shares its connection pool with every other client of the same
+     * tuning, see {@link HttpClients}.
+     *
+     * @return An OkHttp client
+     */
+    protected okhttp3.OkHttpClient createOkHttpClient() {
+        okhttp3.OkHttpClient.Builder okHttpBuilder = HttpClients.newBuilder(properties);
         if (properties.getProxyLocation() != null) {
             LOG.info("Setting up proxy...");
             setupProxy(okHttpBuilder);
@@ -122,7 +148,7 @@ public class AnaplanApiProvider implements TransportApi {
         okHttpBuilder.connectTimeout(properties.getHttpTimeout(), TimeUnit.SECONDS)
         .readTimeout(properties.getHttpTimeout(), TimeUnit.SECONDS)
         .writeTimeout(properties.getHttpTimeout(), TimeUnit.SECONDS);
-        return new OkHttpClient(okHttpBuilder.build());
+        return okHttpBuilder.build();
     }
 
     /**
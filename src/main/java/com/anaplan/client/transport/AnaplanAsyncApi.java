@@ -0,0 +1,360 @@
+package com.anaplan.client.transport;
+
+import com.anaplan.client.Constants;
+import com.anaplan.client.Version;
+import com.anaplan.client.auth.Authenticator;
+import com.anaplan.client.dto.responses.ActionsResponse;
+import com.anaplan.client.dto.responses.ChunksResponse;
+import com.anaplan.client.dto.responses.ExportsResponse;
+import com.anaplan.client.dto.responses.ImportsResponse;
+import com.anaplan.client.dto.responses.ModulesResponse;
+import com.anaplan.client.dto.responses.ProcessesResponse;
+import com.anaplan.client.dto.responses.ServerFilesResponse;
+import com.anaplan.client.dto.responses.TaskStatusResponse;
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.metrics.Metrics;
+import com.anaplan.client.transport.decoders.AnaplanApiDecoder;
+import com.anaplan.client.transport.interceptors.AConnectHeaderInjector;
+import com.anaplan.client.transport.interceptors.AuthTokenInjector;
+import com.anaplan.client.transport.interceptors.UserAgentInjector;
+import com.anaplan.client.transport.retryer.AnaplanErrorDecoder;
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import feign.RetryableException;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking counterpart of {@link com.anaplan.client.api.AnaplanAPI} for
+ * the calls made in bulk: chunk transfers, task status polls and metadata
+ * listings.
+ * <p>
+ * Requests are queued on the dispatcher of the shared OkHttp client rather
+ * than holding a thread each, so many transfers and polls can be in flight
+ * with few threads; how many actually run at once is bounded by
+ * {@link ConnectionProperties#getMaxRequestsPerHost()}. Responses are decoded
+ * and errors mapped exactly as for the blocking client, and retryable errors
+ * are retried with the same back-off, waiting on a timer rather than a
+ * thread. Futures complete on the threads of the OkHttp dispatcher, so
+ * dependent stages which block should be run on an executor of their own.
+ */
+public class AnaplanAsyncApi {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnaplanAsyncApi.class);
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+    private static final MediaType GZIP = MediaType.parse("application/x-gzip");
+    private static final byte[] NO_BODY = new byte[0];
+
+    private static final ScheduledExecutorService RETRY_TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("anaplan-async-retry-%d").setDaemon(true).build());
+
+    private final OkHttpClient client;
+    private final HttpUrl root;
+    private final List<RequestInterceptor> interceptors;
+    private final AnaplanApiDecoder decoder;
+    private final AnaplanErrorDecoder errorDecoder = new AnaplanErrorDecoder();
+    private final long period;
+    private final long maxPeriod;
+    private final int maxAttempts;
+    private final int compressionLevel;
+
+    public AnaplanAsyncApi(ConnectionProperties properties, OkHttpClient client, Authenticator authenticator,
+                           ObjectMapper objectMapper) {
+        this.client = client;
+        this.root = HttpUrl.get(properties.getApiServicesUri().toString())
+                .newBuilder()
+                .addPathSegment(String.valueOf(Version.API_MAJOR))
+                .addPathSegment(String.valueOf(Version.API_MINOR))
+                .build();
+        this.interceptors = Arrays.asList(
+                new AuthTokenInjector(authenticator),
+                new UserAgentInjector(),
+                new AConnectHeaderInjector());
+        this.decoder = new AnaplanApiDecoder(objectMapper);
+        this.period = properties.getRetryTimeout() * 1000L;
+        this.maxPeriod = Constants.MAX_RETRY_TIMEOUT_SECS * 1000L;
+        this.maxAttempts = properties.getMaxRetryCount();
+        this.compressionLevel = properties.getCompressionLevel();
+    }
+
+    /* Metadata */
+
+    public CompletableFuture<ModulesResponse> getModules(String workspaceId, String modelId, int offset) {
+        return get(ModulesResponse.class, offset, "workspaces", workspaceId, "models", modelId, "modules");
+    }
+
+    public CompletableFuture<ServerFilesResponse> getServerFiles(String workspaceId, String modelId, int offset) {
+        return get(ServerFilesResponse.class, offset, "workspaces", workspaceId, "models", modelId, "files");
+    }
+
+    public CompletableFuture<ImportsResponse> getImports(String workspaceId, String modelId, int offset) {
+        return get(ImportsResponse.class, offset, "workspaces", workspaceId, "models", modelId, "imports");
+    }
+
+    public CompletableFuture<ExportsResponse> getExports(String workspaceId, String modelId, int offset) {
+        return get(ExportsResponse.class, offset, "workspaces", workspaceId, "models", modelId, "exports");
+    }
+
+    public CompletableFuture<ActionsResponse> getActions(String workspaceId, String modelId, int offset) {
+        return get(ActionsResponse.class, offset, "workspaces", workspaceId, "models", modelId, "actions");
+    }
+
+    public CompletableFuture<ProcessesResponse> getProcesses(String workspaceId, String modelId, int offset) {
+        return get(ProcessesResponse.class, offset, "workspaces", workspaceId, "models", modelId, "processes");
+    }
+
+    /* Files */
+
+    public CompletableFuture<ChunksResponse> getChunks(String workspaceId, String modelId, String fileId) {
+        return get(ChunksResponse.class, -1, "workspaces", workspaceId, "models", modelId, "files", fileId, "chunks");
+    }
+
+    public CompletableFuture<byte[]> getChunkContent(String workspaceId, String modelId, String fileId,
+                                                     String chunkId) {
+        return get(byte[].class, -1,
+                "workspaces", workspaceId, "models", modelId, "files", fileId, "chunks", chunkId);
+    }
+
+    public CompletableFuture<Void> uploadChunk(String workspaceId, String modelId, String fileId, String chunkId,
+                                               byte[] fileData) {
+        return put(OCTET_STREAM, fileData,
+                "workspaces", workspaceId, "models", modelId, "files", fileId, "chunks", chunkId);
+    }
+
+    /**
+     * Compresses a chunk and uploads it gzipped.
+     */
+    public CompletableFuture<Void> uploadChunkCompressed(String workspaceId, String modelId, String fileId,
+                                                         String chunkId, byte[] fileData) {
+        return uploadChunkPrecompressed(workspaceId, modelId, fileId, chunkId,
+                GzipCompressor.gzip(fileData, 0, fileData.length, compressionLevel));
+    }
+
+    /**
+     * Uploads a chunk which has already been gzipped, so that it is not
+     * compressed again.
+     */
+    public CompletableFuture<Void> uploadChunkPrecompressed(String workspaceId, String modelId, String fileId,
+                                                            String chunkId, byte[] compressedData) {
+        return put(GZIP, compressedData,
+                "workspaces", workspaceId, "models", modelId, "files", fileId, "chunks", chunkId);
+    }
+
+    /* Tasks */
+
+    public CompletableFuture<TaskStatusResponse> getImportTaskStatus(String workspaceId, String modelId,
+                                                                     String importId, String taskId) {
+        return getTaskStatus(workspaceId, modelId, "imports", importId, taskId);
+    }
+
+    public CompletableFuture<TaskStatusResponse> getExportTaskStatus(String workspaceId, String modelId,
+                                                                     String exportId, String taskId) {
+        return getTaskStatus(workspaceId, modelId, "exports", exportId, taskId);
+    }
+
+    public CompletableFuture<TaskStatusResponse> getActionTaskStatus(String workspaceId, String modelId,
+                                                                     String actionId, String taskId) {
+        return getTaskStatus(workspaceId, modelId, "actions", actionId, taskId);
+    }
+
+    public CompletableFuture<TaskStatusResponse> getProcessTaskStatus(String workspaceId, String modelId,
+                                                                      String processId, String taskId) {
+        return getTaskStatus(workspaceId, modelId, "processes", processId, taskId);
+    }
+
+    private CompletableFuture<TaskStatusResponse> getTaskStatus(String workspaceId, String modelId, String kind,
+                                                                String subjectId, String taskId) {
+        return get(TaskStatusResponse.class, -1,
+                "workspaces", workspaceId, "models", modelId, kind, subjectId, "tasks", taskId);
+    }
+
+    private <T> CompletableFuture<T> get(Class<T> type, int offset, String... segments) {
+        HttpUrl.Builder url = url(segments);
+        if (offset >= 0) {
+            url.addQueryParameter("offset", String.valueOf(offset));
+        }
+        return send("GET", url.build(), null, type);
+    }
+
+    private CompletableFuture<Void> put(MediaType contentType, byte[] body, String... segments) {
+        return send("PUT", url(segments).build(), RequestBody.create(contentType, body), Void.class);
+    }
+
+    private HttpUrl.Builder url(String... segments) {
+        HttpUrl.Builder url = root.newBuilder();
+        for (String segment : segments) {
+            url.addPathSegment(segment);
+        }
+        return url;
+    }
+
+    private <T> CompletableFuture<T> send(String method, HttpUrl url, RequestBody body, Type type) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        new Exchange<>(method, url, body, type, result).attempt();
+        return result;
+    }
+
+    /**
+     * One request and its retries.
+     */
+    private final class Exchange<T> implements Callback {
+
+        private final String method;
+        private final HttpUrl url;
+        private final RequestBody body;
+        private final Type type;
+        private final CompletableFuture<T> result;
+        private volatile Call call;
+        private int attempt;
+        private long start;
+
+        Exchange(String method, HttpUrl url, RequestBody body, Type type, CompletableFuture<T> result) {
+            this.method = method;
+            this.url = url;
+            this.body = body;
+            this.type = type;
+            this.result = result;
+            result.whenComplete((value, thrown) -> {
+                Call current = call;
+                if (result.isCancelled() && current != null) {
+                    current.cancel();
+                }
+            });
+        }
+
+        void attempt() {
+            if (result.isDone()) {
+                return;
+            }
+            Request request;
+            try {
+                request = buildRequest();
+            } catch (RuntimeException e) {
+                // the token could not be fetched
+                result.completeExceptionally(e);
+                return;
+            }
+            call = client.newCall(request);
+            start = Metrics.start();
+            call.enqueue(this);
+        }
+
+        private Request buildRequest() {
+            RequestTemplate template = new RequestTemplate();
+            for (RequestInterceptor interceptor : interceptors) {
+                interceptor.apply(template);
+            }
+            Request.Builder request = new Request.Builder().url(url).method(method, body);
+            for (Map.Entry<String, Collection<String>> header : template.headers().entrySet()) {
+                for (String value : header.getValue()) {
+                    request.addHeader(header.getKey(), value);
+                }
+            }
+            if (body == null || body.contentType() == null) {
+                request.header("Content-Type", JSON.toString());
+            }
+            return request.build();
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            Metrics.stop(Metrics.HTTP_REQUEST, method, start);
+            Metrics.increment(Metrics.HTTP_FAILURES, method);
+            if (!result.isDone()) {
+                retryOrFail(new RetryableException(e.getMessage(), feign.Request.HttpMethod.valueOf(method), e, null));
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onResponse(Call call, Response response) {
+            Metrics.stop(Metrics.HTTP_REQUEST, method, start);
+            Metrics.increment(Metrics.HTTP_RESPONSES, String.valueOf(response.code()));
+            try {
+                feign.Response decodable = toFeignResponse(response);
+                if (response.isSuccessful()) {
+                    result.complete(type == Void.class ? null : (T) decoder.decode(decodable, type));
+                    return;
+                }
+                Exception error = errorDecoder.decode(method + " " + url.encodedPath(), decodable);
+                if (error instanceof RetryableException) {
+                    retryOrFail((RetryableException) error);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(new AnaplanAPIException("Failed to read response of " + url, e));
+            } finally {
+                response.close();
+            }
+        }
+
+        private feign.Response toFeignResponse(Response response) throws IOException {
+            byte[] content = response.body() == null ? NO_BODY : response.body().bytes();
+            feign.Request request = feign.Request.create(feign.Request.HttpMethod.valueOf(method), url.toString(),
+                    new HashMap<>(response.request().headers().toMultimap()), null, StandardCharsets.UTF_8);
+            return feign.Response.builder()
+                    .status(response.code())
+                    .reason(response.message())
+                    .headers(new HashMap<>(response.headers().toMultimap()))
+                    .request(request)
+                    .body(content)
+                    .build();
+        }
+
+        /**
+         * Waits out the same back-off as {@link com.anaplan.client.transport.retryer.FeignApiRetryer}
+         * on a timer, then tries again. The request is rebuilt on the dispatcher's executor, as
+         * fetching a token may block and would hold up every other retry on the timer.
+         */
+        private void retryOrFail(RetryableException e) {
+            if (attempt++ >= maxAttempts) {
+                result.completeExceptionally(e);
+                return;
+            }
+            LOG.info("Retrying API request: Attempt ({})", attempt);
+            LOG.debug("Request details: {}", e.getMessage());
+            long interval;
+            if (e.retryAfter() != null) {
+                interval = Math.max(0, Math.min(maxPeriod, e.retryAfter().getTime() - System.currentTimeMillis()));
+            } else {
+                interval = Math.min(maxPeriod,
+                        (long) (period * Math.pow(Constants.DEFAULT_BACKOFF_MULTIPLIER, attempt - 1)));
+            }
+            RETRY_TIMER.schedule(this::retry, interval, TimeUnit.MILLISECONDS);
+        }
+
+        private void retry() {
+            try {
+                client.dispatcher().executorService().execute(this::attempt);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
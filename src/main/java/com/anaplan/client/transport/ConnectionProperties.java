@@ -1,7 +1,10 @@
 package com.anaplan.client.transport;
 
+import com.anaplan.client.Constants;
 import com.anaplan.client.auth.Credentials;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Created by Spondon Saha
@@ -17,6 +20,16 @@ public class ConnectionProperties {
     private int retryTimeout;
     private int maxRetryCount;
     private int httpTimeout;
+    private int compressionLevel = Constants.DEFAULT_COMPRESSION_LEVEL;
+    private int maxIdleConnections = Constants.DEFAULT_MAX_IDLE_CONNECTIONS;
+    private int keepAliveSecs = Constants.DEFAULT_KEEP_ALIVE_SECS;
+    private int maxRequests = Constants.DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = Constants.DEFAULT_MAX_REQUESTS_PER_HOST;
+    private boolean http2Enabled = true;
+    private boolean tcpKeepAlive = true;
+    private int socketBufferSize;
+    private boolean tokenCacheEnabled = Constants.AUTH_CLIENT_CACHE_ENABLED;
+    private Path tokenCacheDirectory = Paths.get(System.getProperty("user.home"), Constants.TOKEN_CACHE_PATH_SEGMENT);
 
     public URI getApiServicesUri() {
         return apiServicesUri;
@@ -81,4 +94,108 @@ public class ConnectionProperties {
     public void setHttpTimeout(int httpTimeout) {
         this.httpTimeout = httpTimeout;
     }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return the number of idle connections kept open in the shared pool
+     */
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    /**
+     * @return how long an idle connection is kept open in the shared pool
+     */
+    public int getKeepAliveSecs() {
+        return keepAliveSecs;
+    }
+
+    public void setKeepAliveSecs(int keepAliveSecs) {
+        this.keepAliveSecs = keepAliveSecs;
+    }
+
+    /**
+     * @return the number of asynchronous requests run at once
+     */
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * @return the number of asynchronous requests run at once to a single host
+     */
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * @return whether requests may be multiplexed over HTTP/2 connections,
+     * rather than each taking its own HTTP/1.1 connection
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    /**
+     * @return the size of the socket send and receive buffers, or 0 to leave
+     * the system default
+     */
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public void setSocketBufferSize(int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    /**
+     * @return whether auth tokens are kept on disk, encrypted, for later
+     * processes with the same credentials to reuse
+     */
+    public boolean isTokenCacheEnabled() {
+        return tokenCacheEnabled;
+    }
+
+    public void setTokenCacheEnabled(boolean tokenCacheEnabled) {
+        this.tokenCacheEnabled = tokenCacheEnabled;
+    }
+
+    public Path getTokenCacheDirectory() {
+        return tokenCacheDirectory;
+    }
+
+    public void setTokenCacheDirectory(Path tokenCacheDirectory) {
+        this.tokenCacheDirectory = tokenCacheDirectory;
+    }
 }
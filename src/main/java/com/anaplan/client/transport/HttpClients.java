@@ -0,0 +1,69 @@
+package com.anaplan.client.transport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Hands out OkHttp clients which share their connection pool, dispatcher and
+ * threads.
+ * <p>
+ * Every API and authentication client built with the same pool, dispatcher
+ * and socket settings derives from a single shared client, so connections
+ * warmed up by one service are reused by the others, and parallel chunk
+ * transfers do not each pay for a new TLS handshake. Timeouts and proxies are
+ * set on the derived builders only and do not affect the shared client.
+ */
+public final class HttpClients {
+
+    private static final Map<List<Object>, OkHttpClient> SHARED = new ConcurrentHashMap<>();
+
+    private HttpClients() {
+    }
+
+    /**
+     * @return a builder for a client sharing the connection pool and
+     * dispatcher of every other client with the same tuning
+     */
+    public static OkHttpClient.Builder newBuilder(ConnectionProperties properties) {
+        return shared(properties).newBuilder();
+    }
+
+    static OkHttpClient shared(ConnectionProperties properties) {
+        List<Object> tuning = Arrays.asList(
+                properties.getMaxIdleConnections(),
+                properties.getKeepAliveSecs(),
+                properties.getMaxRequests(),
+                properties.getMaxRequestsPerHost(),
+                properties.isHttp2Enabled(),
+                properties.isTcpKeepAlive(),
+                properties.getSocketBufferSize());
+        return SHARED.computeIfAbsent(tuning, key -> build(properties));
+    }
+
+    private static OkHttpClient build(ConnectionProperties properties) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(properties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(properties.getMaxRequestsPerHost());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        properties.getMaxIdleConnections(),
+                        properties.getKeepAliveSecs(),
+                        TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .socketFactory(new TunedSocketFactory(
+                        properties.isTcpKeepAlive(),
+                        properties.getSocketBufferSize()));
+        if (!properties.isHttp2Enabled()) {
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.anaplan.client.transport;
+
+import com.anaplan.client.metrics.Metrics;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * Times every request made through a Feign client and counts the responses
+ * by status, see {@link Metrics#HTTP_REQUEST}.
+ */
+public class MeteredClient implements Client {
+
+    private final Client delegate;
+
+    public MeteredClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        long start = Metrics.start();
+        try {
+            Response response = delegate.execute(request, options);
+            Metrics.increment(Metrics.HTTP_RESPONSES, String.valueOf(response.status()));
+            return response;
+        } catch (IOException e) {
+            Metrics.increment(Metrics.HTTP_FAILURES, request.httpMethod().name());
+            throw e;
+        } finally {
+            Metrics.stop(Metrics.HTTP_REQUEST, request.httpMethod().name(), start);
+        }
+    }
+}
@@ -1,58 +1,157 @@
 package com.anaplan.client.transport;
 
 import com.anaplan.client.dto.Paging;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import feign.FeignException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Spondon Saha
  * User: spondonsaha
  * Date: 6/26/17
  * Time: 11:32 AM
+ * <p>
+ * Iterates over a listing which the server returns in pages. Nothing is
+ * fetched until the listing is first iterated. Once the first page gives the
+ * page size and total size, the offsets of the remaining pages are known, so
+ * up to {@link #PREFETCH_PAGES} pages are fetched in parallel ahead of the
+ * iteration. Implementations of {@link #getPage} may be called from several
+ * threads at once; the page info each sets is only seen by its own thread.
+ * A failure to fetch a page is thrown by the iteration, translated by
+ * {@link #translate}.
  */
 public abstract class Paginator<ENTITY> implements Iterable<ENTITY> {
 
-    private Paging pageInfo;
-    private int currentIndex = 0;
-    private ENTITY[] entities;
+    public static final int PREFETCH_PAGES = 4;
 
-    public Paginator() {
-        setEntities(getPage(0));
-    }
+    private static final ExecutorService PAGE_FETCHER = Executors.newFixedThreadPool(PREFETCH_PAGES,
+            new ThreadFactoryBuilder().setNameFormat("anaplan-page-fetcher-%d").setDaemon(true).build());
+
+    private final ThreadLocal<Paging> pageInfo = new ThreadLocal<>();
+    private Paging firstPageInfo;
+    private ENTITY[] entities;
 
     public abstract ENTITY[] getPage(int offset);
 
+    /**
+     * Translates a failure of the server to return a page into the exception
+     * thrown by the iteration. By default it is thrown as it is.
+     */
+    protected RuntimeException translate(FeignException e) {
+        return e;
+    }
+
     @Override
     public Iterator<ENTITY> iterator() {
         return new Iterator<ENTITY>() {
+            private final Deque<Future<ENTITY[]>> pending = new ArrayDeque<>();
+            private ENTITY[] page;
+            private int index;
+            private int nextOffset;
+            private int pageSize;
+            private int totalSize;
+
             @Override
             public boolean hasNext() {
-                return currentIndex + pageInfo.getOffset() < pageInfo.getTotalSize();
+                if (page == null) {
+                    start();
+                }
+                while (index == page.length) {
+                    if (pending.isEmpty()) {
+                        return false;
+                    }
+                    page = await(pending.removeFirst());
+                    index = 0;
+                    prefetch();
+                }
+                return true;
             }
 
             @Override
             public ENTITY next() {
                 if (hasNext()) {
-                    if (currentIndex == entities.length) {
-                        entities = getPage(pageInfo.getOffset() + pageInfo.getCurrentPageSize());
-                        currentIndex = 0;
-                    }
-                    return entities[currentIndex++];
+                    return page[index++];
                 }
                 throw new NoSuchElementException();
             }
+
+            private void start() {
+                page = firstPage();
+                Paging paging = getFirstPageInfo();
+                if (paging == null || paging.getTotalSize() == null) {
+                    return;
+                }
+                int offset = paging.getOffset() == null ? 0 : paging.getOffset();
+                pageSize = paging.getCurrentPageSize() == null ? page.length : paging.getCurrentPageSize();
+                totalSize = paging.getTotalSize();
+                nextOffset = offset + pageSize;
+                prefetch();
+            }
+
+            private void prefetch() {
+                while (pageSize > 0 && nextOffset < totalSize && pending.size() < PREFETCH_PAGES) {
+                    int offset = nextOffset;
+                    pending.addLast(PAGE_FETCHER.submit(() -> fetch(offset)));
+                    nextOffset += pageSize;
+                }
+            }
         };
     }
 
+    private synchronized ENTITY[] firstPage() {
+        if (entities == null) {
+            entities = fetch(0);
+            firstPageInfo = pageInfo.get();
+        }
+        return entities;
+    }
+
+    private ENTITY[] fetch(int offset) {
+        try {
+            return getPage(offset);
+        } catch (FeignException e) {
+            throw translate(e);
+        }
+    }
+
+    private synchronized Paging getFirstPageInfo() {
+        return firstPageInfo;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching a page", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the page info set by the last page fetched on this thread, or
+     * else by the first page
+     */
     public Paging getPageInfo() {
-        return pageInfo;
+        Paging paging = pageInfo.get();
+        return paging != null ? paging : getFirstPageInfo();
     }
 
     public void setPageInfo(Paging pageInfo) {
-        this.pageInfo = pageInfo;
+        this.pageInfo.set(pageInfo);
     }
 
-    public void setEntities(ENTITY[] entities) {
+    public synchronized void setEntities(ENTITY[] entities) {
         this.entities = entities;
     }
 }
@@ -0,0 +1,64 @@
+package com.anaplan.client.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import javax.net.SocketFactory;
+
+/**
+ * Creates plain sockets, which TLS is then layered over, with TCP keep-alive
+ * and the buffer sizes set before they connect.
+ */
+class TunedSocketFactory extends SocketFactory {
+
+    private final SocketFactory delegate = SocketFactory.getDefault();
+    private final boolean keepAlive;
+    private final int bufferSize;
+
+    /**
+     * @param keepAlive  whether to enable TCP keep-alive
+     * @param bufferSize the size of the send and receive buffers, or 0 to
+     *                   leave the system default
+     */
+    TunedSocketFactory(boolean keepAlive, int bufferSize) {
+        this.keepAlive = keepAlive;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return tune(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return tune(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return tune(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return tune(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+            throws IOException {
+        return tune(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket tune(Socket socket) throws SocketException {
+        socket.setKeepAlive(keepAlive);
+        if (bufferSize > 0) {
+            // set before connecting so that the TCP window is scaled to fit
+            socket.setSendBufferSize(bufferSize);
+            socket.setReceiveBufferSize(bufferSize);
+        }
+        return socket;
+    }
+}
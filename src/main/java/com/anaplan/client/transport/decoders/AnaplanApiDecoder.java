@@ -9,13 +9,19 @@ import feign.Util;
 import feign.jackson.JacksonDecoder;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * A brute extension of the default JacksonDecoder, except the raw-type is checked here whether
  * its a byte array, in which case it is decoded promptly using the
- * {@link com.anaplan.client.transport.serialization.ByteArrayDeserializer}.
+ * {@link com.anaplan.client.transport.serialization.ByteArrayDeserializer}. An {@link InputStream}
+ * or {@link ReadableByteChannel} raw-type gets the live response body instead, which the caller
+ * must close. The Feign client is therefore built with doNotCloseAfterDecode, and this decoder
+ * closes the body of every other response itself.
  */
 public class AnaplanApiDecoder extends JacksonDecoder {
     private final ObjectMapper mapper;
@@ -27,6 +33,7 @@ public class AnaplanApiDecoder extends JacksonDecoder {
     @Override
     public Object decode(Response response, Type type) throws IOException {
         if (response.status() == 404) {
+            Util.ensureClosed(response.body());
             return Util.emptyValueOf(type);
         } else if (response.body() == null) {
             return null;
@@ -35,32 +42,44 @@ public class AnaplanApiDecoder extends JacksonDecoder {
 
             JavaType javaType = this.mapper.constructType(type);
 
-            if (javaType.isTypeOrSubTypeOf(byte[].class)) {
-                return new ByteArrayDeserializer().deserialize(body.asInputStream());
-            } else {
-                Reader reader = body.asReader();
+            if (javaType.hasRawClass(InputStream.class)) {
+                return body.asInputStream();
+            } else if (javaType.hasRawClass(ReadableByteChannel.class)) {
+                return Channels.newChannel(body.asInputStream());
+            }
+            try {
+                return decodeBuffered(body, javaType);
+            } finally {
+                Util.ensureClosed(body);
+            }
+        }
+    }
 
-                if (!reader.markSupported()) {
-                    reader = new BufferedReader(reader, 1);
-                }
+    private Object decodeBuffered(Response.Body body, JavaType javaType) throws IOException {
+        if (javaType.isTypeOrSubTypeOf(byte[].class)) {
+            return new ByteArrayDeserializer().deserialize(body.asInputStream());
+        } else {
+            Reader reader = body.asReader();
 
-                try {
-                    reader.mark(1);
-                    if (reader.read() == -1) {
-                        return null;
-                    } else {
-                        reader.reset();
-                        return this.mapper.readValue(reader, javaType);
-                    }
-                } catch (RuntimeJsonMappingException e) {
-                    if (e.getCause() != null && e.getCause() instanceof IOException) {
-                        throw IOException.class.cast(e.getCause());
-                    } else {
-                        throw e;
-                    }
-                }
+            if (!reader.markSupported()) {
+                reader = new BufferedReader(reader, 1);
             }
 
+            try {
+                reader.mark(1);
+                if (reader.read() == -1) {
+                    return null;
+                } else {
+                    reader.reset();
+                    return this.mapper.readValue(reader, javaType);
+                }
+            } catch (RuntimeJsonMappingException e) {
+                if (e.getCause() != null && e.getCause() instanceof IOException) {
+                    throw IOException.class.cast(e.getCause());
+                } else {
+                    throw e;
+                }
+            }
         }
     }
 }
@@ -24,6 +24,11 @@ public class AnaplanApiEncoder extends JacksonEncoder {
 
     @Override
     public void encode(Object object, Type bodyType, RequestTemplate template) {
+        if (object instanceof byte[]) {
+            // chunk bodies may already be gzipped, so must not round-trip through a String
+            template.body((byte[]) object, null);
+            return;
+        }
         try {
             JavaType javaType = mapper.getTypeFactory().constructType(bodyType);
             template.body(mapper.writerFor(javaType).writeValueAsString(object).getBytes(
@@ -22,6 +22,6 @@ public class AuthTokenInjector implements RequestInterceptor {
      */
     @Override
     public void apply(RequestTemplate template) {
-        template.header("AUTHORIZATION", "AnaplanAuthToken " + authenticator.getAuthToken());
+        template.header("AUTHORIZATION", authenticator.getAuthHeader());
     }
 }
@@ -1,22 +1,42 @@
 package com.anaplan.client.transport.interceptors;
 
-import com.anaplan.client.ex.BadFileChunkCompressionError;
+import com.anaplan.client.Constants;
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.google.common.collect.MapMaker;
 import com.google.common.net.MediaType;
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Collections;
+import java.util.Set;
 import org.apache.http.HttpHeaders;
 
 /**
  * Compresses the file-chunk PUT request if using X-Gzip compression, otherwise passes on the raw value.
+ * A body which is already compressed is marked with the {@link #PRECOMPRESSED} header and passed on
+ * as-is; the header is removed here, so it is never sent. Interceptors are applied again to the same
+ * request on every retry, so the requests whose body is compressed are remembered, by identity, for as
+ * long as they are in use.
  */
 public class CompressPutBodyInjector implements RequestInterceptor {
 
+    /**
+     * Marks an X-Gzip request whose body is already compressed.
+     */
+    public static final String PRECOMPRESSED = "X-Precompressed-Body";
+
+    private final int compressionLevel;
+    private final Set<RequestTemplate> compressed = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    public CompressPutBodyInjector() {
+        this(Constants.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    public CompressPutBodyInjector(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
     @Override
     public void apply(RequestTemplate requestTemplate) {
 
@@ -24,26 +44,15 @@ public class CompressPutBodyInjector implements RequestInterceptor {
         if (requestTemplate.request().method().equals("PUT")) {
             Collection<String> contentTypes = requestTemplate.headers().get(HttpHeaders.CONTENT_TYPE);
             if (contentTypes != null && contentTypes.toArray()[0].equals(MediaType.GZIP.toString())) {
-                requestTemplate.body(compress(requestTemplate.body()), StandardCharsets.UTF_8);
+                if (requestTemplate.headers().containsKey(PRECOMPRESSED)) {
+                    requestTemplate.header(PRECOMPRESSED);
+                    compressed.add(requestTemplate);
+                } else if (compressed.add(requestTemplate)) {
+                    byte[] body = requestTemplate.body();
+                    requestTemplate.body(GzipCompressor.gzip(body, 0, body.length, compressionLevel),
+                            StandardCharsets.UTF_8);
+                }
             }
         }
     }
-
-    private byte[] compress(byte[] source) {
-        int head = ((int) source[0] & 0xff) | ((source[1] << 8) & 0xff00);
-        ByteArrayOutputStream sink = new ByteArrayOutputStream();
-        //check if matches standard gzip magic number
-        if (GZIPInputStream.GZIP_MAGIC != head) {
-            try {
-                GZIPOutputStream gzos = new GZIPOutputStream(sink);
-                gzos.write(source, 0, source.length);
-                gzos.close();
-                return sink.toByteArray();
-            }catch (IOException e) {
-                throw new BadFileChunkCompressionError(e);
-            }
-        }else {
-                return source;
-            }
-        }
 }
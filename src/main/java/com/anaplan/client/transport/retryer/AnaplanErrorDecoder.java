@@ -4,9 +4,17 @@ import com.anaplan.client.ex.AnaplanAPIException;
 import feign.Response;
 import feign.RetryableException;
 import feign.codec.ErrorDecoder;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Date;
 
 public class AnaplanErrorDecoder implements ErrorDecoder {
 
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String RETRY_AFTER = "Retry-After";
+
     /**
      * Overwrite the Decode Method to handle custom error cases
      *
@@ -17,15 +25,43 @@ public class AnaplanErrorDecoder implements ErrorDecoder {
     @Override
     public Exception decode(String methodKey, Response response) {
         int status = response.status();
-        if (status >= 500) {
+        if (status >= 500 || status == TOO_MANY_REQUESTS) {
             String message = "HTTP "+response.status()+" "+response.reason()+": " + response.request().url();
             return new RetryableException(
                     message,
                     response.request().httpMethod(),
-                    null
+                    retryAfter(response)
             );
         }
         return new AnaplanAPIException(response.reason());
     }
 
+    /**
+     * Reads the Retry-After header, given either in seconds or as an HTTP date
+     *
+     * @return when the request may be retried, or null to back off as usual
+     */
+    private static Date retryAfter(Response response) {
+        Collection<String> values = response.headers().get(RETRY_AFTER);
+        if (values == null) {
+            for (String header : response.headers().keySet()) {
+                if (RETRY_AFTER.equalsIgnoreCase(header)) {
+                    values = response.headers().get(header);
+                }
+            }
+        }
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        String value = values.iterator().next().trim();
+        try {
+            return new Date(System.currentTimeMillis() + Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                return Date.from(ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
 }
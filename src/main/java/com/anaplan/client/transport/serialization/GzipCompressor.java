@@ -0,0 +1,70 @@
+package com.anaplan.client.transport.serialization;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzips file-chunks for upload. Each thread keeps one {@link Deflater} which is reset between
+ * chunks, instead of allocating native deflate state for every chunk as a GZIPOutputStream does.
+ * The chunk is deflated straight from the caller's array into an output array sized from the
+ * input, so the compressed copy does not grow through repeated doubling.
+ */
+public final class GzipCompressor {
+
+    /**
+     * Gzip member header: magic, deflate method, no flags, no mtime, no extra flags, unknown OS.
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private GzipCompressor() {
+    }
+
+    /**
+     * Gzips a slice of the given bytes.
+     *
+     * @param source the bytes to compress
+     * @param offset the index of the first byte to compress
+     * @param length the number of bytes to compress
+     * @param level  the deflate compression level, from 0 (none) to 9 (best)
+     * @return the gzipped bytes
+     */
+    public static byte[] gzip(byte[] source, int offset, int length, int level) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(source, offset, length);
+        deflater.finish();
+
+        // delimited text usually compresses better than 4:1; grow by half when it doesn't
+        byte[] out = new byte[HEADER.length + length / 4 + 64 + TRAILER_LENGTH];
+        System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+        int size = HEADER.length;
+        while (!deflater.finished()) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, out.length + (out.length >> 1));
+            }
+            size += deflater.deflate(out, size, out.length - size);
+        }
+        if (out.length < size + TRAILER_LENGTH) {
+            out = Arrays.copyOf(out, size + TRAILER_LENGTH);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(source, offset, length);
+        size = writeIntLE(out, size, (int) crc.getValue());
+        size = writeIntLE(out, size, length);
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    private static int writeIntLE(byte[] out, int index, int value) {
+        out[index] = (byte) value;
+        out[index + 1] = (byte) (value >> 8);
+        out[index + 2] = (byte) (value >> 16);
+        out[index + 3] = (byte) (value >> 24);
+        return index + 4;
+    }
+}
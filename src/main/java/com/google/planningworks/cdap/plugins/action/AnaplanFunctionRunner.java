@@ -88,14 +88,15 @@ public class AnaplanFunctionRunner extends Action {
       config.getUsername(),
       config.getPassword(),
       new URI(config.getServiceLocation()),
-      new URI(config.getAuthServiceLocation()));
-    AnaplanService.setTaskMetadata(anaplanConfig);
-
-    AnaplanService.runAnaplanFunction(
-      config.getWorkspaceId(),
-      config.getModelId(),
-      config.getFunctionName(),
-      FunctionType.valueOf(config.getFunctionType()));
-    AnaplanService.closeDown();
+      new URI(config.getAuthServiceLocation()),
+      config.getMaxConnections(),
+      config.getHttp2Enabled());
+    try (AnaplanService anaplanService = new AnaplanService(anaplanConfig)) {
+      anaplanService.runAnaplanFunction(
+        config.getWorkspaceId(),
+        config.getModelId(),
+        config.getFunctionName(),
+        FunctionType.valueOf(config.getFunctionType()));
+    }
   }
 }
@@ -6,6 +6,7 @@ import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.plugin.PluginConfig;
 import io.cdap.cdap.etl.api.FailureCollector;
+import javax.annotation.Nullable;
 
 /**
  * Baseline class for the AnaplanPlugin configuration.
@@ -42,6 +43,18 @@ public class AnaplanPluginConfig extends PluginConfig {
   @Description("ModelId")
   protected String modelId;
 
+  @Name(AnaplanService.NAME_MAX_CONNECTIONS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of idle connections kept open to the Anaplan API for reuse")
+  protected Integer maxConnections;
+
+  @Name(AnaplanService.NAME_HTTP2_ENABLED)
+  @Macro
+  @Nullable
+  @Description("Whether requests may be multiplexed over HTTP/2 connections")
+  protected Boolean http2Enabled;
+
   /**
    * Validates the configure options entered by the user
    *
@@ -113,6 +126,17 @@ public class AnaplanPluginConfig extends PluginConfig {
           .withStacktrace(e.getStackTrace());
       }
     }
+
+    if (!containsMacro(AnaplanService.NAME_MAX_CONNECTIONS)) {
+      try {
+        AnaplanService.validateMaxConnections(maxConnections);
+      } catch (IllegalArgumentException e) {
+        collector
+          .addFailure(e.getMessage(), null)
+          .withConfigProperty(AnaplanService.NAME_MAX_CONNECTIONS)
+          .withStacktrace(e.getStackTrace());
+      }
+    }
   }
 
   public String getServiceLocation() {
@@ -138,4 +162,14 @@ public class AnaplanPluginConfig extends PluginConfig {
   public String getModelId() {
     return modelId;
   }
+
+  @Nullable
+  public Integer getMaxConnections() {
+    return maxConnections;
+  }
+
+  @Nullable
+  public Boolean getHttp2Enabled() {
+    return http2Enabled;
+  }
 }
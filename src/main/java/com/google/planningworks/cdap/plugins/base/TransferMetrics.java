@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.base;
+
+import com.anaplan.client.TransferListener;
+import com.anaplan.client.TransferProgress;
+import io.cdap.cdap.api.metrics.Metrics;
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Publishes the progress of the transfers of server files as CDAP stage metrics, so that the
+ * throughput and remaining time of a long upload or download can be watched while the pipeline
+ * runs. Every value is a gauge named after the direction of the transfer, such as
+ * {@code anaplan.upload.bytes}; throughput is in bytes per second.
+ */
+public class TransferMetrics implements TransferListener, Serializable {
+
+  public static final String CHUNKS = "chunks";
+  public static final String CHUNKS_TOTAL = "chunks.total";
+  public static final String BYTES = "bytes";
+  public static final String BYTES_COMPRESSED = "bytes.compressed";
+  public static final String THROUGHPUT = "throughput";
+  public static final String THROUGHPUT_AVERAGE = "throughput.average";
+  public static final String ETA_SECONDS = "eta.seconds";
+
+  private static final long serialVersionUID = 1L;
+
+  private final Metrics metrics;
+
+  /**
+   * @param metrics the metrics of the stage, which must be serializable when the listener is used
+   * by Spark executors
+   */
+  public TransferMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the full name of a metric of transfers in the given direction
+   */
+  public static String name(TransferProgress.Direction direction, String metric) {
+    return "anaplan." + direction.name().toLowerCase(Locale.ROOT) + "." + metric;
+  }
+
+  @Override
+  public void progress(TransferProgress progress) {
+    TransferProgress.Direction direction = progress.getDirection();
+    metrics.gauge(name(direction, CHUNKS), progress.getChunksDone());
+    if (progress.getChunksTotal() >= 0) {
+      metrics.gauge(name(direction, CHUNKS_TOTAL), progress.getChunksTotal());
+    }
+    metrics.gauge(name(direction, BYTES), progress.getRawBytes());
+    metrics.gauge(name(direction, BYTES_COMPRESSED), progress.getCompressedBytes());
+    metrics.gauge(name(direction, THROUGHPUT), Math.round(progress.getBytesPerSecond()));
+    metrics.gauge(name(direction, THROUGHPUT_AVERAGE), Math.round(progress.getAverageBytesPerSecond()));
+    if (progress.getEtaMillis() >= 0) {
+      metrics.gauge(name(direction, ETA_SECONDS), progress.getEtaMillis() / 1000);
+    }
+  }
+}
@@ -16,7 +16,12 @@
 package com.google.planningworks.cdap.plugins.sink;
 
 import com.anaplan.client.AnaplanService;
+import com.anaplan.client.AnaplanService.AnaplanConfig;
+import com.anaplan.client.AnaplanService.FunctionType;
 import com.anaplan.client.ex.ServerFilesNotFoundException;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import com.google.planningworks.cdap.plugins.base.TransferMetrics;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
@@ -32,10 +37,13 @@ import io.cdap.cdap.etl.api.validation.ValidationException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Tuple2;
 
 /**
  * CDF Sink plugin for importing data to Anaplan server via the wrapper {@link AnaplanService} of
@@ -85,10 +93,13 @@ public class AnaplanSink extends SparkSink<StructuredRecord> {
   }
 
   /**
-   * Sinks the data into Anaplan server via {@link SinkToAnaplanProcess}.
+   * Sinks the data into Anaplan server.
    *
-   * <p>Since Anaplan REST API does not supports the paralleling data upload, the thread number &
-   * data partition of the spark program is restricted to 1.
+   * <p>By default every record is streamed through a single upload by {@link SinkToAnaplanProcess},
+   * so the data partition of the spark program is restricted to 1. With parallel upload, every
+   * partition serializes and compresses its records into chunks at once with
+   * {@link PartitionToAnaplanChunks}, and the driver then uploads the chunks in order, as one server
+   * file or spread over several server files which are loaded by a process.
    *
    * @param sparkExecutionPluginContext context of the spark plugin program in the pipeline
    * @param javaRDD Java resilient distributed datasets that contains the data to be sent
@@ -101,14 +112,18 @@ public class AnaplanSink extends SparkSink<StructuredRecord> {
   @Override
   public void run(
     SparkExecutionPluginContext sparkExecutionPluginContext, JavaRDD<StructuredRecord> javaRDD)
-    throws URISyntaxException {
+    throws URISyntaxException, IOException, InterruptedException {
     FailureCollector collector = sparkExecutionPluginContext.getFailureCollector();
     Schema schema = sparkExecutionPluginContext.getInputSchema();
     config.validate(collector, schema);
     collector.getOrThrowException();
 
-    javaRDD.coalesce(THREAD_NUM);
     String header = getSchemaHeader(sparkExecutionPluginContext);
+    TransferMetrics transferMetrics = new TransferMetrics(sparkExecutionPluginContext.getMetrics());
+    if (config.isParallelUpload()) {
+      runParallel(javaRDD, schema, header, transferMetrics);
+      return;
+    }
 
     SinkToAnaplanProcess sinkToAnaplanProcess = new SinkToAnaplanProcess(header,
       config.getWorkspaceId(),
@@ -118,10 +133,62 @@ public class AnaplanSink extends SparkSink<StructuredRecord> {
       config.getUsername(),
       config.getPassword(),
       new URI(config.getServiceLocation()),
-      new URI(config.getAuthServiceLocation()));
+      new URI(config.getAuthServiceLocation()),
+      config.getMaxConnections(),
+      config.getHttp2Enabled(),
+      transferMetrics);
 
     // There will be always only 1 partition since we coalesce the partition number to 1
-    javaRDD.foreachPartition(sinkToAnaplanProcess);
+    javaRDD.coalesce(THREAD_NUM).foreachPartition(sinkToAnaplanProcess);
+  }
+
+  private void runParallel(JavaRDD<StructuredRecord> javaRDD, Schema schema, String header,
+    TransferMetrics transferMetrics) throws URISyntaxException, IOException, InterruptedException {
+    List<String> serverFileNames = config.getServerFileNames();
+    // every file takes its header from a partition of its own, so none is left without one
+    if (javaRDD.getNumPartitions() < serverFileNames.size()) {
+      javaRDD = javaRDD.repartition(serverFileNames.size());
+    }
+    JavaRDD<Tuple2<Integer, byte[]>> chunks = javaRDD
+      .mapPartitionsWithIndex(new PartitionToAnaplanChunks(schema, header, serverFileNames.size(),
+        AnaplanSinkConfig.CHUNK_SIZE * 1000 * 1000, config.getCompressionLevel()), true)
+      .persist(StorageLevel.MEMORY_AND_DISK_SER());
+    try {
+      // compresses every partition at once, the driver then only reads the cached chunks in order
+      long chunkCount = chunks.count();
+      LOG.info("Uploading {} chunks to {} server files.", chunkCount, serverFileNames.size());
+
+      AnaplanConfig anaplanConfig = new AnaplanConfig(
+        config.getUsername(),
+        config.getPassword(),
+        new URI(config.getServiceLocation()),
+        new URI(config.getAuthServiceLocation()),
+        config.getMaxConnections(),
+        config.getHttp2Enabled());
+      try (AnaplanService anaplanService = new AnaplanService(anaplanConfig)) {
+        anaplanService.getService().setTransferListener(transferMetrics);
+        for (int i = 0; i < serverFileNames.size(); i++) {
+          final int fileIndex = i;
+          JavaRDD<Tuple2<Integer, byte[]>> fileChunks = serverFileNames.size() == 1 ? chunks
+            : chunks.filter(chunk -> chunk._1() == fileIndex);
+          anaplanService.uploadCompressedChunks(
+            config.getWorkspaceId(),
+            config.getModelId(),
+            serverFileNames.get(i),
+            Iterators.transform(fileChunks.toLocalIterator(), Tuple2::_2),
+            config.getUploadConcurrency());
+        }
+        if (!Strings.isNullOrEmpty(config.getProcessName())) {
+          anaplanService.runAnaplanFunction(
+            config.getWorkspaceId(),
+            config.getModelId(),
+            config.getProcessName(),
+            FunctionType.PROCESS);
+        }
+      }
+    } finally {
+      chunks.unpersist();
+    }
   }
 
   private static String getSchemaHeader(SparkExecutionPluginContext sparkExecutionPluginContext) {
@@ -16,6 +16,8 @@
 package com.google.planningworks.cdap.plugins.sink;
 
 import com.anaplan.client.AnaplanService;
+import com.anaplan.client.Constants;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.planningworks.cdap.plugins.base.AnaplanPluginConfig;
@@ -24,8 +26,11 @@ import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * The config class for {@link AnaplanSink} that contains all properties that need to be filled in
@@ -33,6 +38,11 @@ import java.util.stream.Collectors;
  */
 class AnaplanSinkConfig extends AnaplanPluginConfig {
 
+  public static final String NAME_PARALLEL_UPLOAD = "parallelUpload";
+  public static final String NAME_PROCESS_NAME = "processName";
+  public static final String NAME_COMPRESSION_LEVEL = "compressionLevel";
+  public static final String NAME_UPLOAD_CONCURRENCY = "uploadConcurrency";
+
   public static final int CHUNK_SIZE = 10;
   public static final Set<Schema.Type> SUPPORTED_TYPES =
     ImmutableSet.of(Schema.Type.INT, Schema.Type.LONG, Schema.Type.STRING, Schema.Type.FLOAT,
@@ -43,9 +53,36 @@ class AnaplanSinkConfig extends AnaplanPluginConfig {
 
   @Name(AnaplanService.NAME_SERVER_FILE_NAME)
   @Macro
-  @Description("Anaplan Server file name")
+  @Description("Anaplan Server file name. With parallel upload, several comma separated file names "
+    + "may be given; the partitions are then spread over the files and loaded by the process.")
   private String serverFileName;
 
+  @Name(NAME_PARALLEL_UPLOAD)
+  @Macro
+  @Nullable
+  @Description("Whether every partition serializes and compresses its rows into chunks in parallel, "
+    + "rather than streaming all rows through a single task.")
+  private Boolean parallelUpload;
+
+  @Name(NAME_PROCESS_NAME)
+  @Macro
+  @Nullable
+  @Description("Anaplan process to run once the server files are uploaded")
+  private String processName;
+
+  @Name(NAME_COMPRESSION_LEVEL)
+  @Macro
+  @Nullable
+  @Description("The gzip level chunks are compressed with in a parallel upload, from 1 (fastest) "
+    + "to 9 (smallest)")
+  private Integer compressionLevel;
+
+  @Name(NAME_UPLOAD_CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("The maximum number of chunks uploaded at once in a parallel upload")
+  private Integer uploadConcurrency;
+
   /**
    * Validates the configure options entered by the user
    *
@@ -61,6 +98,37 @@ class AnaplanSinkConfig extends AnaplanPluginConfig {
         .withConfigProperty(AnaplanService.NAME_MODEL_ID);
     }
 
+    if (!containsMacro(AnaplanService.NAME_SERVER_FILE_NAME) && getServerFileNames().size() > 1) {
+      if (!containsMacro(NAME_PARALLEL_UPLOAD) && !isParallelUpload()) {
+        collector
+          .addFailure("Several server files can only be loaded with parallel upload.", null)
+          .withConfigProperty(NAME_PARALLEL_UPLOAD);
+      }
+      if (!containsMacro(NAME_PROCESS_NAME) && Strings.isNullOrEmpty(processName)) {
+        collector
+          .addFailure("A process is required to load several server files.", null)
+          .withConfigProperty(NAME_PROCESS_NAME);
+      }
+    }
+
+    if (!containsMacro(NAME_COMPRESSION_LEVEL) && compressionLevel != null
+      && (compressionLevel < Constants.MIN_COMPRESSION_LEVEL
+      || compressionLevel > Constants.MAX_COMPRESSION_LEVEL)) {
+      collector
+        .addFailure(String.format("Compression level must be between %d and %d.",
+          Constants.MIN_COMPRESSION_LEVEL, Constants.MAX_COMPRESSION_LEVEL), null)
+        .withConfigProperty(NAME_COMPRESSION_LEVEL);
+    }
+
+    if (!containsMacro(NAME_UPLOAD_CONCURRENCY) && uploadConcurrency != null
+      && (uploadConcurrency < Constants.MIN_CHUNK_CONCURRENCY
+      || uploadConcurrency > Constants.MAX_CHUNK_CONCURRENCY)) {
+      collector
+        .addFailure(String.format("Upload concurrency must be between %d and %d.",
+          Constants.MIN_CHUNK_CONCURRENCY, Constants.MAX_CHUNK_CONCURRENCY), null)
+        .withConfigProperty(NAME_UPLOAD_CONCURRENCY);
+    }
+
     validateSchemaSupportedByAnaplan(schema, collector);
   }
 
@@ -121,4 +189,35 @@ class AnaplanSinkConfig extends AnaplanPluginConfig {
   public String getServerFileName() {
     return serverFileName;
   }
+
+  /**
+   * @return the names of the server files the data is spread over, in order
+   */
+  public List<String> getServerFileNames() {
+    return Strings.isNullOrEmpty(serverFileName) ? Collections.emptyList()
+      : Splitter.on(',').trimResults().omitEmptyStrings().splitToList(serverFileName);
+  }
+
+  public boolean isParallelUpload() {
+    return parallelUpload != null && parallelUpload;
+  }
+
+  @Nullable
+  public String getProcessName() {
+    return processName;
+  }
+
+  /**
+   * @return the gzip level of the chunks of a parallel upload
+   */
+  public int getCompressionLevel() {
+    return compressionLevel == null ? Constants.DEFAULT_COMPRESSION_LEVEL : compressionLevel;
+  }
+
+  /**
+   * @return the maximum number of chunks of a parallel upload uploaded at once
+   */
+  public int getUploadConcurrency() {
+    return uploadConcurrency == null ? Constants.DEFAULT_CHUNK_CONCURRENCY : uploadConcurrency;
+  }
 }
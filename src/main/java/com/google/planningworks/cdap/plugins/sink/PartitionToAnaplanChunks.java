@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.sink;
+
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import org.apache.spark.api.java.function.Function2;
+import scala.Tuple2;
+
+/**
+ * Spark function to be run by the JavaRDD for serializing and compressing the records of a
+ * partition into the chunks of an Anaplan server file.
+ *
+ * <p>The records are turned into gzipped blocks of about one chunk each, which always end on a row
+ * boundary, so that the driver only has to upload them in order. Partitions are spread over the
+ * server files round robin, and each block is tagged with the index of the file it belongs to. The
+ * first partition of each file starts with the header row, even when it has no records, so there
+ * must be at least as many partitions as files.
+ */
+public class PartitionToAnaplanChunks implements
+  Function2<Integer, Iterator<StructuredRecord>, Iterator<Tuple2<Integer, byte[]>>> {
+
+  private static final long serialVersionUID = 1L;
+  private static final int ROW_MARGIN = 64 * 1024;
+
+  private final Schema schema;
+  private final String header;
+  private final int fileCount;
+  private final int chunkSize;
+  private final int compressionLevel;
+
+  /**
+   * @param schema the schema of the records
+   * @param header the header row, without a separator
+   * @param fileCount the number of server files the partitions are spread over
+   * @param chunkSize the number of bytes of rows after which a block is closed
+   * @param compressionLevel the gzip level for the blocks
+   */
+  public PartitionToAnaplanChunks(Schema schema, String header, int fileCount, int chunkSize,
+    int compressionLevel) {
+    this.schema = schema;
+    this.header = header;
+    this.fileCount = fileCount;
+    this.chunkSize = chunkSize;
+    this.compressionLevel = compressionLevel;
+  }
+
+  @Override
+  public Iterator<Tuple2<Integer, byte[]>> call(Integer partition,
+    Iterator<StructuredRecord> iterator) {
+    final Integer fileIndex = partition % fileCount;
+    final boolean firstOfFile = partition < fileCount;
+    // blocks are produced lazily, so a partition never holds more than one block of rows
+    return new AbstractIterator<Tuple2<Integer, byte[]>>() {
+      // the row which fills a block usually fits in the margin, so the buffer is never regrown
+      private final RowEncoder block = new RowEncoder(schema, chunkSize + ROW_MARGIN);
+      private boolean headerPending = firstOfFile;
+
+      @Override
+      protected Tuple2<Integer, byte[]> computeNext() {
+        if (headerPending) {
+          block.append((header + "\n").getBytes(StandardCharsets.UTF_8));
+          headerPending = false;
+        }
+        while (block.size() < chunkSize && iterator.hasNext()) {
+          block.encode(iterator.next());
+        }
+        if (block.size() == 0) {
+          return endOfData();
+        }
+        byte[] compressed = GzipCompressor.gzip(block.buffer(), 0, block.size(), compressionLevel);
+        block.reset();
+        return new Tuple2<>(fileIndex, compressed);
+      }
+    };
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the records of one schema as comma separated rows into a reusable UTF-8 buffer.
+ *
+ * <p>The schema is compiled once into a writer per field, chosen by its type, which writes the
+ * value straight into the buffer: integers, booleans and dates are formatted without creating any
+ * objects, and text is UTF-8 encoded in place and quoted when it holds a comma, a quote or a line
+ * break. Null values are written as empty cells. Rows are appended until the buffer is reset, so
+ * callers can encode a whole chunk before handing the bytes on.
+ *
+ * <p>An encoder is not thread safe.
+ */
+class RowEncoder {
+
+  private static final byte SEPARATOR = ',';
+  private static final byte QUOTE = '"';
+  private static final byte NEW_LINE = '\n';
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+  private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+  private final String[] fieldNames;
+  private final FieldWriter[] fieldWriters;
+  private byte[] buffer;
+  private int size;
+
+  /**
+   * @param schema the schema of the records to encode
+   */
+  RowEncoder(Schema schema) {
+    this(schema, 8192);
+  }
+
+  /**
+   * @param schema the schema of the records to encode
+   * @param initialCapacity the initial size of the buffer, which grows as needed
+   */
+  RowEncoder(Schema schema, int initialCapacity) {
+    List<Schema.Field> fields = schema.getFields();
+    fieldNames = new String[fields.size()];
+    fieldWriters = new FieldWriter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      fieldNames[i] = fields.get(i).getName();
+      fieldWriters[i] = compile(fields.get(i).getSchema());
+    }
+    buffer = new byte[Math.max(initialCapacity, 16)];
+  }
+
+  /**
+   * Appends a record as a row, ending with a line separator.
+   */
+  void encode(StructuredRecord record) {
+    for (int i = 0; i < fieldNames.length; i++) {
+      if (i > 0) {
+        writeByte(SEPARATOR);
+      }
+      fieldWriters[i].write(this, record, fieldNames[i]);
+    }
+    writeByte(NEW_LINE);
+  }
+
+  /**
+   * Appends raw bytes, such as a header row which has already been encoded.
+   */
+  void append(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  /**
+   * @return the number of bytes encoded since the last reset
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the buffer holding the encoded rows from index 0 up to {@link #size()}, which is only
+   * valid until the next call to the encoder
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Writes the encoded rows to the given stream.
+   */
+  void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Discards the encoded rows, keeping the buffer for the next ones.
+   */
+  void reset() {
+    size = 0;
+  }
+
+  private static FieldWriter compile(Schema schema) {
+    Schema fieldSchema = schema.isNullable() ? schema.getNonNullable() : schema;
+    Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+    if (logicalType == Schema.LogicalType.DATE) {
+      return (encoder, record, name) -> {
+        Object value = record.get(name);
+        if (value != null) {
+          encoder.writeDate(((Number) value).intValue());
+        }
+      };
+    }
+    if (logicalType == Schema.LogicalType.DECIMAL) {
+      return (encoder, record, name) -> {
+        BigDecimal value = record.getDecimal(name);
+        if (value != null) {
+          encoder.writeAscii(value.toPlainString());
+        }
+      };
+    }
+    if (logicalType != null) {
+      return RowEncoder::writeGeneric;
+    }
+    switch (fieldSchema.getType()) {
+      case INT:
+      case LONG:
+        return (encoder, record, name) -> {
+          Object value = record.get(name);
+          if (value != null) {
+            encoder.writeLong(((Number) value).longValue());
+          }
+        };
+      case BOOLEAN:
+        return (encoder, record, name) -> {
+          Object value = record.get(name);
+          if (value != null) {
+            encoder.writeBytes((Boolean) value ? TRUE : FALSE);
+          }
+        };
+      case FLOAT:
+      case DOUBLE:
+        return (encoder, record, name) -> {
+          Object value = record.get(name);
+          if (value != null) {
+            encoder.writeAscii(value.toString());
+          }
+        };
+      case STRING:
+        return (encoder, record, name) -> {
+          Object value = record.get(name);
+          if (value != null) {
+            encoder.writeText((CharSequence) value);
+          }
+        };
+      default:
+        return RowEncoder::writeGeneric;
+    }
+  }
+
+  private static void writeGeneric(RowEncoder encoder, StructuredRecord record, String name) {
+    Object value = record.get(name);
+    if (value != null) {
+      encoder.writeText(String.valueOf(value));
+    }
+  }
+
+  private void writeByte(byte b) {
+    ensureCapacity(1);
+    buffer[size++] = b;
+  }
+
+  private void writeBytes(byte[] bytes) {
+    append(bytes);
+  }
+
+  private void writeLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      writeBytes(MIN_LONG);
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      buffer[size++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    int end = size + digits;
+    for (int i = end - 1; i >= size; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size = end;
+  }
+
+  private void writeDigits(int value, int width) {
+    ensureCapacity(width);
+    for (int i = size + width - 1; i >= size; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size += width;
+  }
+
+  /**
+   * Writes a number of days since the epoch as an ISO date, yyyy-MM-dd.
+   */
+  private void writeDate(int epochDay) {
+    // civil date from day count, see http://howardhinnant.github.io/date_algorithms.html
+    long z = epochDay + 719468L;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long monthIndex = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    if (year >= 0 && year <= 9999) {
+      writeDigits((int) year, 4);
+    } else {
+      writeLong(year);
+    }
+    writeByte((byte) '-');
+    writeDigits(month, 2);
+    writeByte((byte) '-');
+    writeDigits(day, 2);
+  }
+
+  private void writeAscii(String text) {
+    int length = text.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) text.charAt(i);
+    }
+  }
+
+  private void writeText(CharSequence text) {
+    int length = text.length();
+    boolean quoted = false;
+    for (int i = 0; i < length && !quoted; i++) {
+      char c = text.charAt(i);
+      quoted = c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r';
+    }
+    if (quoted) {
+      writeByte(QUOTE);
+    }
+    // at most three bytes per char, and two for an escaped quote
+    ensureCapacity(length * 3);
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        if (c == QUOTE && quoted) {
+          buffer[size++] = QUOTE;
+        }
+        buffer[size++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[size++] = (byte) (0xc0 | c >> 6);
+        buffer[size++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+        && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        buffer[size++] = '?';
+      } else {
+        buffer[size++] = (byte) (0xe0 | c >> 12);
+        buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buffer[size++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    if (quoted) {
+      writeByte(QUOTE);
+    }
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+  }
+
+  /**
+   * Writes one field of a record into the encoder.
+   */
+  private interface FieldWriter {
+
+    void write(RowEncoder encoder, StructuredRecord record, String name);
+  }
+}
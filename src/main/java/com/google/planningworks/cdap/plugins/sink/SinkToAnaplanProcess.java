@@ -17,14 +17,15 @@ package com.google.planningworks.cdap.plugins.sink;
 
 import com.anaplan.client.AnaplanService;
 import com.anaplan.client.AnaplanService.AnaplanConfig;
+import com.anaplan.client.ServerFile.UploadStream;
+import com.anaplan.client.TransferListener;
 import com.anaplan.client.ex.ServerFilesNotFoundException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema.Field;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.spark.api.java.function.VoidFunction;
 
 /**
@@ -32,6 +33,8 @@ import org.apache.spark.api.java.function.VoidFunction;
  */
 public class SinkToAnaplanProcess implements VoidFunction<Iterator<StructuredRecord>> {
 
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
   private final String workspaceId;
   private final String modelId;
   private final String serverFileName;
@@ -41,10 +44,18 @@ public class SinkToAnaplanProcess implements VoidFunction<Iterator<StructuredRec
   private final String password;
   private final URI serviceLocation;
   private final URI authServiceLocation;
+  private final Integer maxConnections;
+  private final Boolean http2Enabled;
+  private final TransferListener transferListener;
 
+  /**
+   * @param transferListener receives the progress of the upload, which must be serializable to be
+   * sent to the executor, or null
+   */
   public SinkToAnaplanProcess(String header, String workspaceId,
     String modelId, String serverFileName, int chunkSize, String username, String password,
-    URI serviceLocation, URI authServiceLocation) {
+    URI serviceLocation, URI authServiceLocation, @Nullable Integer maxConnections,
+    @Nullable Boolean http2Enabled, @Nullable TransferListener transferListener) {
     this.workspaceId = workspaceId;
     this.modelId = modelId;
     this.serverFileName = serverFileName;
@@ -54,6 +65,9 @@ public class SinkToAnaplanProcess implements VoidFunction<Iterator<StructuredRec
     this.password = password;
     this.serviceLocation = serviceLocation;
     this.authServiceLocation = authServiceLocation;
+    this.maxConnections = maxConnections;
+    this.http2Enabled = http2Enabled;
+    this.transferListener = transferListener;
   }
 
   /**
@@ -72,41 +86,44 @@ public class SinkToAnaplanProcess implements VoidFunction<Iterator<StructuredRec
       username,
       password,
       serviceLocation,
-      authServiceLocation);
-    AnaplanService.setTaskMetadata(anaplanConfig);
-    OutputStream uploadOutputStream = retrieveOutputStreamForServerFile(
-      workspaceId,
-      modelId,
-      serverFileName,
-      chunkSize);
-
-    uploadOutputStream.write(header.getBytes());
+      authServiceLocation,
+      maxConnections,
+      http2Enabled);
+    try (AnaplanService anaplanService = new AnaplanService(anaplanConfig)) {
+      UploadStream uploadOutputStream = openUploadStream(anaplanService);
+      try {
+        uploadOutputStream.write((header + "\n").getBytes(StandardCharsets.UTF_8));
 
-    while (iterator.hasNext()) {
-      String data = getDataRow(iterator.next());
-      uploadOutputStream.write(data.getBytes());
+        RowEncoder rowEncoder = null;
+        while (iterator.hasNext()) {
+          StructuredRecord record = iterator.next();
+          if (rowEncoder == null) {
+            rowEncoder = new RowEncoder(record.getSchema(), WRITE_BUFFER_SIZE);
+          }
+          rowEncoder.encode(record);
+          if (rowEncoder.size() >= WRITE_BUFFER_SIZE) {
+            rowEncoder.writeTo(uploadOutputStream);
+            rowEncoder.reset();
+          }
+        }
+        if (rowEncoder != null) {
+          rowEncoder.writeTo(uploadOutputStream);
+        }
+      } catch (Throwable e) {
+        // a partition which failed partway must not be published as the whole file
+        uploadOutputStream.abort();
+        throw e;
+      }
+      uploadOutputStream.close();
     }
-
-    uploadOutputStream.close();
-    AnaplanService.closeDown();
   }
 
-  private static OutputStream retrieveOutputStreamForServerFile(String workspaceId, String modelId,
-    String serverFileName, int chunkSize) {
-    return AnaplanService.getUploadServerFileOutputStream(
+  private UploadStream openUploadStream(AnaplanService anaplanService) {
+    anaplanService.getService().setTransferListener(transferListener);
+    return anaplanService.getUploadServerFileOutputStream(
       workspaceId,
       modelId,
       serverFileName,
       chunkSize);
   }
-
-  private static String getDataRow(StructuredRecord input) {
-    String dataRow =
-      input.getSchema().getFields().stream()
-        .map(Field::getName)
-        .map(input::get)
-        .map(val -> val == null ? "" : String.valueOf(val))
-        .collect(Collectors.joining(/* delimiter = */ ","));
-    return dataRow + "\n";
-  }
 }
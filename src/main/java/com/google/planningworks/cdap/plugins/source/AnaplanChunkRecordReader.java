@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import com.anaplan.client.AnaplanService;
+import com.anaplan.client.dto.ServerFileData;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Reads the rows of one {@link AnaplanChunkSplit} as records.
+ *
+ * <p>The reader owns every row which starts just after a line separator in its chunk, including a
+ * separator at the very end of the chunk, and the first reader also owns the header row at the
+ * start of the file, which is skipped. A row which runs past the end of the chunk is completed
+ * from the following chunks, which are only downloaded when needed.
+ */
+public class AnaplanChunkRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+
+  private static final byte NEW_LINE = '\n';
+
+  private AnaplanService anaplanService;
+  private String workspaceId;
+  private String modelId;
+  private ServerFileData file;
+  private Charset charset;
+  private RowDecoder decoder;
+  private List<String> followingChunkIds;
+  private byte[] data;
+  // rows starting at or before this index are owned by the split
+  private int ownedEnd;
+  private int position;
+  private int chunkLength;
+  private StructuredRecord current;
+
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext context) throws IOException {
+    AnaplanChunkSplit split = (AnaplanChunkSplit) inputSplit;
+    Configuration conf = context.getConfiguration();
+    anaplanService = AnaplanInputFormat.createService(conf);
+    workspaceId = conf.get(AnaplanInputFormat.WORKSPACE_ID);
+    modelId = conf.get(AnaplanInputFormat.MODEL_ID);
+    file = new ServerFileData();
+    file.setId(split.getServerFileId());
+    file.setEncoding(split.getEncoding());
+    charset = AnaplanInputFormat.charsetOf(split.getEncoding());
+    decoder = new RowDecoder(Schema.parseJson(conf.get(AnaplanInputFormat.SCHEMA)),
+      conf.get(AnaplanInputFormat.DELIMITER).charAt(0));
+    followingChunkIds = new ArrayList<>();
+    if (split.getNextChunkId() != null) {
+      followingChunkIds.add(split.getNextChunkId());
+    }
+
+    data = anaplanService.getChunkContent(workspaceId, modelId, file, split.getChunkId());
+    chunkLength = data.length;
+    ownedEnd = data.length;
+    if (split.getIndex() > 0) {
+      // the row running into this chunk belongs to the split before
+      position = indexOf(data, 0, data.length) + 1;
+      if (position == 0) {
+        ownedEnd = -1;
+      }
+    } else if (readRow() == null) {
+      ownedEnd = -1;
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    if (position > ownedEnd) {
+      return false;
+    }
+    String row = readRow();
+    if (row == null) {
+      return false;
+    }
+    current = decoder.decode(row);
+    return true;
+  }
+
+  /**
+   * @return the row starting at the current position without its line separator, or null at the
+   * end of the file
+   */
+  private String readRow() throws IOException {
+    int end = indexOf(data, position, data.length);
+    while (end < 0) {
+      if (!appendNextChunk()) {
+        if (position == data.length) {
+          return null;
+        }
+        end = data.length;
+        break;
+      }
+      end = indexOf(data, position, data.length);
+    }
+    int rowEnd = end > position && data[end - 1] == '\r' ? end - 1 : end;
+    String row = new String(data, position, rowEnd - position, charset);
+    position = Math.min(end + 1, data.length + 1);
+    if (position > data.length) {
+      // no separator after the last row
+      ownedEnd = -1;
+    }
+    return row;
+  }
+
+  /**
+   * Appends the next chunk to the data, dropping the rows which have already been read.
+   *
+   * @return false when there is no next chunk
+   */
+  private boolean appendNextChunk() {
+    if (followingChunkIds.isEmpty()) {
+      return false;
+    }
+    String chunkId = followingChunkIds.remove(0);
+    byte[] next = anaplanService.getChunkContent(workspaceId, modelId, file, chunkId);
+    if (followingChunkIds.isEmpty() && next.length > 0 && indexOf(next, 0, next.length) < 0) {
+      // a row longer than a chunk, which is rare enough to look the later chunks up only now
+      List<String> chunkIds = anaplanService.getChunkIds(workspaceId, modelId, file);
+      int index = chunkIds.indexOf(chunkId);
+      followingChunkIds.addAll(chunkIds.subList(index + 1, chunkIds.size()));
+    }
+    byte[] joined = new byte[data.length - position + next.length];
+    System.arraycopy(data, position, joined, 0, data.length - position);
+    System.arraycopy(next, 0, joined, data.length - position, next.length);
+    ownedEnd -= position;
+    data = joined;
+    position = 0;
+    return true;
+  }
+
+  private static int indexOf(byte[] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == NEW_LINE) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return current;
+  }
+
+  @Override
+  public float getProgress() {
+    if (ownedEnd <= 0 || chunkLength == 0) {
+      return 1.0f;
+    }
+    return Math.min(1.0f, (float) position / ownedEnd);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (anaplanService != null) {
+      anaplanService.close();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import javax.annotation.Nullable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+/**
+ * A split of an Anaplan server file holding one chunk, together with the ID of the chunk after it,
+ * from which the last row of the chunk is completed. The file is looked up once for all splits, so
+ * the split carries its ID and encoding.
+ */
+public class AnaplanChunkSplit extends InputSplit implements Writable {
+
+  private int index;
+  private String serverFileId;
+  private String encoding;
+  private String chunkId;
+  private String nextChunkId;
+
+  /**
+   * Used by Hadoop to deserialize the split.
+   */
+  public AnaplanChunkSplit() {
+  }
+
+  /**
+   * @param index the position of the chunk in the file
+   * @param serverFileId the ID of the file
+   * @param encoding the name of the file's character encoding, or null if it is not known
+   * @param chunkId the ID of the chunk
+   * @param nextChunkId the ID of the following chunk, or null for the last chunk
+   */
+  public AnaplanChunkSplit(int index, String serverFileId, @Nullable String encoding, String chunkId,
+                           @Nullable String nextChunkId) {
+    this.index = index;
+    this.serverFileId = serverFileId;
+    this.encoding = encoding;
+    this.chunkId = chunkId;
+    this.nextChunkId = nextChunkId;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public String getServerFileId() {
+    return serverFileId;
+  }
+
+  @Nullable
+  public String getEncoding() {
+    return encoding;
+  }
+
+  public String getChunkId() {
+    return chunkId;
+  }
+
+  @Nullable
+  public String getNextChunkId() {
+    return nextChunkId;
+  }
+
+  /**
+   * The size of the chunk is not listed by Anaplan, so all chunks are taken as the same size.
+   */
+  @Override
+  public long getLength() {
+    return 0;
+  }
+
+  @Override
+  public String[] getLocations() {
+    return new String[0];
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(index);
+    out.writeUTF(serverFileId);
+    out.writeBoolean(encoding != null);
+    if (encoding != null) {
+      out.writeUTF(encoding);
+    }
+    out.writeUTF(chunkId);
+    out.writeBoolean(nextChunkId != null);
+    if (nextChunkId != null) {
+      out.writeUTF(nextChunkId);
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    index = in.readInt();
+    serverFileId = in.readUTF();
+    encoding = in.readBoolean() ? in.readUTF() : null;
+    chunkId = in.readUTF();
+    nextChunkId = in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -44,11 +44,14 @@ public class AnaplanExportConfig extends AnaplanPluginConfig implements FileSour
   public static final String NAME_SERVICE_ACCOUNT_FILE_PATH = "serviceFilePath";
   public static final String NAME_SERVICE_ACCOUNT_JSON = "serviceAccountJSON";
   public static final String NAME_FORMAT = "format";
+  public static final String NAME_SCHEMA = "schema";
   public static final String SERVICE_ACCOUNT_FILE_PATH = "filePath";
   public static final String SERVICE_ACCOUNT_JSON = "JSON";
 
   public static final String NAME_ARCHIVE_NAME = "archiveName";
   public static final String NAME_BUCKET = "bucket";
+  public static final String NAME_PARALLEL_EXPORT = "parallelExport";
+  public static final String NAME_DIRECT_READ = "directRead";
 
   @Name(Constants.Reference.REFERENCE_NAME)
   @Description(
@@ -93,17 +96,33 @@ public class AnaplanExportConfig extends AnaplanPluginConfig implements FileSour
   @Description("Anaplan Server file name")
   private String serverFileName;
 
+  @Name(NAME_DIRECT_READ)
+  @Macro
+  @Nullable
+  @Description("Whether the server file is read straight from Anaplan, one chunk per split, "
+    + "rather than through a GCS bucket.")
+  private Boolean directRead;
+
   @Name(NAME_ARCHIVE_NAME)
   @Macro
+  @Nullable
   @Description("File archive name in GCS bucket")
   private String archiveName;
 
   // GCS properties
   @Name(NAME_BUCKET)
   @Macro
+  @Nullable
   @Description("GCS bucket for export file buffer")
   private String bucket;
 
+  @Name(NAME_PARALLEL_EXPORT)
+  @Macro
+  @Nullable
+  @Description("Whether the server file is downloaded in parallel chunks and written as separate "
+    + "objects under the archive name, which are then read in parallel.")
+  private Boolean parallelExport;
+
   @Macro
   @Description(
     "Format of the data to read. Supported formats are 'csv' and 'tsv'.")
@@ -132,8 +151,34 @@ public class AnaplanExportConfig extends AnaplanPluginConfig implements FileSour
         .withConfigProperty(AnaplanService.NAME_MODEL_ID);
     }
 
-    // GCS properties validation
-    if (!containsMacro(NAME_BUCKET) && !containsMacro(NAME_ARCHIVE_NAME)) {
+    if (!containsMacro(NAME_DIRECT_READ) && isDirectRead()) {
+      try {
+        if (!containsMacro(NAME_SCHEMA) && getSchema() == null) {
+          collector
+            .addFailure("A schema is required to read the server file directly.", null)
+            .withConfigProperty(NAME_SCHEMA);
+        }
+      } catch (IllegalArgumentException e) {
+        collector
+          .addFailure(e.getMessage(), null)
+          .withConfigProperty(NAME_SCHEMA)
+          .withStacktrace(e.getStackTrace());
+      }
+      if (!containsMacro(NAME_PARALLEL_EXPORT) && isParallelExport()) {
+        collector
+          .addFailure("Parallel export cannot be combined with direct read.", null)
+          .withConfigProperty(NAME_PARALLEL_EXPORT);
+      }
+    } else if (!containsMacro(NAME_BUCKET) && Strings.isNullOrEmpty(bucket)) {
+      collector
+        .addFailure("GCS bucket is not presented.", null)
+        .withConfigProperty(NAME_BUCKET);
+    } else if (!containsMacro(NAME_ARCHIVE_NAME) && Strings.isNullOrEmpty(archiveName)) {
+      collector
+        .addFailure("File archive name is not presented.", null)
+        .withConfigProperty(NAME_ARCHIVE_NAME);
+    } else if (!containsMacro(NAME_BUCKET) && !containsMacro(NAME_ARCHIVE_NAME)) {
+      // GCS properties validation
       try {
         GCSPath.from(getPath());
       } catch (IllegalArgumentException e) {
@@ -162,11 +207,11 @@ public class AnaplanExportConfig extends AnaplanPluginConfig implements FileSour
   }
 
   /**
-   * Gets GCS file path in the format `gs://%s/%s`
+   * Gets GCS file path in the format `gs://%s/%s`, which ends with a slash for a parallel export
    */
   @Override
   public String getPath() {
-    return String.format("gs://%s/%s", bucket, archiveName);
+    return String.format("gs://%s/%s", bucket, getArchivePath());
   }
 
   @Override
@@ -321,4 +366,26 @@ public class AnaplanExportConfig extends AnaplanPluginConfig implements FileSour
   public String getBucket() {
     return bucket;
   }
+
+  /**
+   * Gets the name of the archive object, or the prefix of the part objects for a parallel export
+   */
+  public String getArchivePath() {
+    return isParallelExport() && !archiveName.endsWith("/") ? archiveName + "/" : archiveName;
+  }
+
+  public boolean isParallelExport() {
+    return parallelExport != null && parallelExport;
+  }
+
+  public boolean isDirectRead() {
+    return directRead != null && directRead;
+  }
+
+  /**
+   * Gets the character between the cells of a row, a tab for 'tsv' and a comma otherwise
+   */
+  public String getDelimiter() {
+    return "tsv".equalsIgnoreCase(format) ? "\t" : ",";
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import com.anaplan.client.AnaplanService;
+import com.anaplan.client.AnaplanService.AnaplanConfig;
+import com.anaplan.client.dto.ServerFileData;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Hadoop {@link InputFormat} reading an Anaplan server file straight from the Anaplan API, with
+ * one split per chunk of the file.
+ *
+ * <p>Every task downloads its own chunk, so the read scales with the number of executors and needs
+ * no staging bucket. A split reads the rows which start after a line separator in its chunk, and
+ * the first split also reads the row at the very start of the file; the last row of a chunk is
+ * completed from the chunk after it. This relies on line separators only ending rows, so quoted
+ * values must not hold line breaks, and on the file's encoding writing a line feed as a single
+ * byte, as UTF-8 and the single byte encodings do.
+ *
+ * <p>The file is looked up once, when the splits are made, and every split carries its ID and
+ * encoding, so tasks only download chunks.
+ */
+public class AnaplanInputFormat extends InputFormat<NullWritable, StructuredRecord> {
+
+  public static final String USERNAME = "anaplan.username";
+  public static final String PASSWORD = "anaplan.password";
+  public static final String SERVICE_LOCATION = "anaplan.service.location";
+  public static final String AUTH_SERVICE_LOCATION = "anaplan.auth.service.location";
+  public static final String WORKSPACE_ID = "anaplan.workspace.id";
+  public static final String MODEL_ID = "anaplan.model.id";
+  public static final String SERVER_FILE_NAME = "anaplan.server.file.name";
+  public static final String SCHEMA = "anaplan.schema";
+  public static final String DELIMITER = "anaplan.delimiter";
+  public static final String MAX_CONNECTIONS = "anaplan.max.connections";
+  public static final String HTTP2_ENABLED = "anaplan.http2.enabled";
+
+  /**
+   * Sets the properties of the file to read from the config of the source.
+   */
+  public static Configuration configure(Configuration conf, AnaplanExportConfig config) {
+    conf.set(USERNAME, config.getUsername());
+    conf.set(PASSWORD, config.getPassword());
+    conf.set(SERVICE_LOCATION, config.getServiceLocation());
+    conf.set(AUTH_SERVICE_LOCATION, config.getAuthServiceLocation());
+    conf.set(WORKSPACE_ID, config.getWorkspaceId());
+    conf.set(MODEL_ID, config.getModelId());
+    conf.set(SERVER_FILE_NAME, config.getServerFileName());
+    conf.set(SCHEMA, config.getSchema().toString());
+    conf.set(DELIMITER, config.getDelimiter());
+    if (config.getMaxConnections() != null) {
+      conf.setInt(MAX_CONNECTIONS, config.getMaxConnections());
+    }
+    if (config.getHttp2Enabled() != null) {
+      conf.setBoolean(HTTP2_ENABLED, config.getHttp2Enabled());
+    }
+    return conf;
+  }
+
+  @Override
+  public List<InputSplit> getSplits(JobContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    try (AnaplanService anaplanService = createService(conf)) {
+      ServerFileData file = anaplanService.getServerFileData(
+        conf.get(WORKSPACE_ID), conf.get(MODEL_ID), conf.get(SERVER_FILE_NAME));
+      Charset charset = charsetOf(file.getEncoding());
+      if (!Arrays.equals("\n".getBytes(charset), new byte[] {'\n'})) {
+        throw new IOException(String.format("Server file %s is encoded in %s, which cannot be read directly",
+          conf.get(SERVER_FILE_NAME), charset.name()));
+      }
+      List<String> chunkIds = anaplanService.getChunkIds(conf.get(WORKSPACE_ID), conf.get(MODEL_ID), file);
+      List<InputSplit> splits = new ArrayList<>(chunkIds.size());
+      for (int i = 0; i < chunkIds.size(); i++) {
+        String nextChunkId = i + 1 < chunkIds.size() ? chunkIds.get(i + 1) : null;
+        splits.add(new AnaplanChunkSplit(i, file.getId(), charset.name(), chunkIds.get(i), nextChunkId));
+      }
+      return splits;
+    }
+  }
+
+  /**
+   * @return the charset of the encoding, UTF-8 if the encoding is not known
+   * @throws IOException when the encoding is not supported
+   */
+  static Charset charsetOf(String encoding) throws IOException {
+    if (encoding == null) {
+      return StandardCharsets.UTF_8;
+    }
+    try {
+      return Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(String.format("Unsupported encoding %s", encoding), e);
+    }
+  }
+
+  @Override
+  public RecordReader<NullWritable, StructuredRecord> createRecordReader(
+    InputSplit split, TaskAttemptContext context) {
+    return new AnaplanChunkRecordReader();
+  }
+
+  static AnaplanService createService(Configuration conf) throws IOException {
+    try {
+      return new AnaplanService(new AnaplanConfig(
+        conf.get(USERNAME),
+        conf.get(PASSWORD),
+        new URI(conf.get(SERVICE_LOCATION)),
+        new URI(conf.get(AUTH_SERVICE_LOCATION)),
+        conf.get(MAX_CONNECTIONS) == null ? null : conf.getInt(MAX_CONNECTIONS, 0),
+        conf.get(HTTP2_ENABLED) == null ? null : conf.getBoolean(HTTP2_ENABLED, true)));
+    } catch (URISyntaxException e) {
+      throw new IOException("Invalid Anaplan service location", e);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import com.anaplan.client.ServerFile;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the blocks of rows of an Anaplan download as separate objects under a prefix in a GCS
+ * bucket, so that each object can be read as its own split.
+ *
+ * <p>Objects are named part-00000.csv, part-00001.csv and so on, in the order of the blocks, and
+ * are written by a pool of threads while the next blocks are downloaded. The header row of the
+ * first block is repeated at the start of every later object, as the header is skipped in each
+ * file read. At most two blocks per thread are held in memory, and a failed write is reported by
+ * the next block handed over, so the download stops early.
+ */
+class GCSPartWriter implements ServerFile.BlockHandler, Closeable {
+
+  private static final String PART_NAME = "part-%05d.csv";
+
+  private final Storage storage;
+  private final String bucket;
+  private final String prefix;
+  private final String contentType;
+  private final ExecutorService executor;
+  private final Semaphore pending;
+  private final Deque<Future<?>> writes = new ArrayDeque<>();
+  private int partCount;
+  private byte[] header;
+
+  /**
+   * @param storage the GCS client
+   * @param bucket the bucket to write to
+   * @param prefix the prefix of the object names, ending with a slash
+   * @param contentType the content type of the objects
+   * @param concurrency the number of objects written in parallel
+   */
+  GCSPartWriter(Storage storage, String bucket, String prefix, String contentType,
+    int concurrency) {
+    this.storage = storage;
+    this.bucket = bucket;
+    this.prefix = prefix;
+    this.contentType = contentType;
+    this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("gcs-part-write-%d")
+      .build());
+    this.pending = new Semaphore(concurrency * 2);
+  }
+
+  /**
+   * @throws IOException when an object written earlier could not be written
+   */
+  @Override
+  public void handle(byte[] block) throws IOException {
+    checkWrites();
+    byte[] content = block;
+    if (header == null) {
+      int end = 0;
+      while (end < block.length && block[end++] != '\n') {
+        // find the end of the header row
+      }
+      header = Arrays.copyOf(block, end);
+    } else {
+      content = new byte[header.length + block.length];
+      System.arraycopy(header, 0, content, 0, header.length);
+      System.arraycopy(block, 0, content, header.length, block.length);
+    }
+    BlobInfo blobInfo = BlobInfo
+      .newBuilder(BlobId.of(bucket, prefix + String.format(PART_NAME, partCount++)))
+      .setContentType(contentType)
+      .build();
+    try {
+      pending.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to write " + blobInfo.getName(), e);
+    }
+    byte[] bytes = content;
+    writes.add(executor.submit(() -> {
+      try {
+        storage.create(blobInfo, bytes);
+      } finally {
+        pending.release();
+      }
+    }));
+  }
+
+  /**
+   * @return the number of objects written so far
+   */
+  int getPartCount() {
+    return partCount;
+  }
+
+  /**
+   * Drops the writes which are done, failing on the first one which failed.
+   */
+  private void checkWrites() throws IOException {
+    for (Iterator<Future<?>> it = writes.iterator(); it.hasNext(); ) {
+      Future<?> write = it.next();
+      if (write.isDone()) {
+        await(write);
+        it.remove();
+      }
+    }
+  }
+
+  private void await(Future<?> write) throws IOException {
+    try {
+      write.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing to GCS bucket " + bucket, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to write to GCS bucket " + bucket, e.getCause());
+    }
+  }
+
+  /**
+   * Waits for all objects to be written.
+   *
+   * @throws IOException when any of the objects could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      for (Future<?> write : writes) {
+        await(write);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
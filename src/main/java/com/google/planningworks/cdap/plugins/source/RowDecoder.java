@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.format.UnexpectedFormatException;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes delimited rows of an Anaplan export into records of one schema.
+ *
+ * <p>Cells are matched to the fields of the schema by position. A cell may be quoted with double
+ * quotes, in which case it may hold the delimiter and doubled quotes. Empty cells are read as
+ * null, except for string fields. Dates are read as yyyy-MM-dd and decimals are scaled to the
+ * scale of their field.
+ *
+ * <p>A decoder is not thread safe.
+ */
+class RowDecoder {
+
+  private static final char QUOTE = '"';
+
+  private final Schema schema;
+  private final char delimiter;
+  private final List<String> cells = new ArrayList<>();
+  private final StringBuilder cell = new StringBuilder();
+
+  /**
+   * @param schema the schema of the records
+   * @param delimiter the character between the cells of a row
+   */
+  RowDecoder(Schema schema, char delimiter) {
+    this.schema = schema;
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * @param row a row without its line separator
+   * @return the record holding the cells of the row
+   * @throws UnexpectedFormatException when a cell cannot be converted to the type of its field
+   */
+  StructuredRecord decode(String row) {
+    split(row);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i < fields.size() && i < cells.size(); i++) {
+      set(builder, fields.get(i), cells.get(i));
+    }
+    return builder.build();
+  }
+
+  private static void set(StructuredRecord.Builder builder, Schema.Field field, String value) {
+    Schema fieldSchema = field.getSchema().isNullable()
+      ? field.getSchema().getNonNullable() : field.getSchema();
+    if (value.isEmpty() && fieldSchema.getType() != Schema.Type.STRING) {
+      builder.set(field.getName(), null);
+      return;
+    }
+    Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+    try {
+      if (logicalType == Schema.LogicalType.DATE) {
+        builder.setDate(field.getName(), LocalDate.parse(value));
+      } else if (logicalType == Schema.LogicalType.DECIMAL) {
+        builder.setDecimal(field.getName(),
+          new BigDecimal(value).setScale(fieldSchema.getScale(), RoundingMode.HALF_UP));
+      } else {
+        builder.convertAndSet(field.getName(), value);
+      }
+    } catch (RuntimeException e) {
+      throw new UnexpectedFormatException(
+        String.format("Cannot read '%s' as the value of field %s", value, field.getName()), e);
+    }
+  }
+
+  private void split(String row) {
+    cells.clear();
+    cell.setLength(0);
+    boolean quoted = false;
+    for (int i = 0; i < row.length(); i++) {
+      char c = row.charAt(i);
+      if (quoted) {
+        if (c != QUOTE) {
+          cell.append(c);
+        } else if (i + 1 < row.length() && row.charAt(i + 1) == QUOTE) {
+          cell.append(QUOTE);
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == QUOTE) {
+        quoted = true;
+      } else if (c == delimiter) {
+        cells.add(cell.toString());
+        cell.setLength(0);
+      } else {
+        cell.append(c);
+      }
+    }
+    cells.add(cell.toString());
+  }
+}
@@ -15,9 +15,18 @@
  */
 package com.anaplan.client;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import com.anaplan.client.AnaplanService.AnaplanConfig;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -100,4 +109,35 @@ public class AnaplanServiceTest {
         () -> AnaplanService.validateAuthServiceLocation("invalid URI"));
     assertTrue(thrown.getMessage().contains("Authentication service URI is invalid"));
   }
+
+  @Test
+  public void concurrentServicesDoNotShareConnections() throws Exception {
+    List<MockAnaplanServer> servers = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<byte[]>> uploads = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        MockAnaplanServer server = new MockAnaplanServer();
+        server.putFile("113000000001", "data.csv", new byte[0]);
+        servers.add(server);
+        byte[] content = ("server " + i + "\n").getBytes(StandardCharsets.UTF_8);
+        AnaplanConfig config = new AnaplanConfig(
+          "user" + i + "@example.com", "password" + i, server.getUri(), server.getUri());
+        uploads.add(executor.submit(() -> {
+          try (AnaplanService service = new AnaplanService(config);
+            OutputStream upload = service.getUploadServerFileOutputStream(
+              "8a8b8c8d8e8f8g8i", "75A40874E6B64FA3AE0743278996850F", "data.csv", 1)) {
+            upload.write(content);
+          }
+          return content;
+        }));
+      }
+      for (int i = 0; i < 3; i++) {
+        assertArrayEquals(uploads.get(i).get(), servers.get(i).getFileContent("113000000001"));
+      }
+    } finally {
+      executor.shutdownNow();
+      servers.forEach(MockAnaplanServer::close);
+    }
+  }
 }
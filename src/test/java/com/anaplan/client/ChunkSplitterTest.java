@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ChunkSplitterTest {
+
+  private static ByteBuffer utf8(String content) {
+    return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCutsAfterLastSeparator() {
+    ChunkSplitter splitter = new ChunkSplitter("UTF-8", "\n", null);
+    assertEquals("a,b\nc,d\n".length(), splitter.boundary(utf8("a,b\nc,d\ne,")));
+  }
+
+  @Test
+  public void testDoesNotCutWithoutSeparator() {
+    ChunkSplitter splitter = new ChunkSplitter("UTF-8", "\n", "\"");
+    assertEquals(5, splitter.boundary(utf8("a,b,c")));
+  }
+
+  @Test
+  public void testDoesNotCutInsideQuotedField() {
+    ChunkSplitter splitter = new ChunkSplitter("UTF-8", "\n", "\"");
+    String complete = "a,\"say \"\"hi\"\"\nthere\"\n";
+    assertEquals(complete.length(), splitter.boundary(utf8(complete + "b,\"open\nfield")));
+  }
+
+  @Test
+  public void testCutsUtf16LeOnCharacterBoundaries() {
+    ChunkSplitter splitter = new ChunkSplitter("UTF-16LE", "\n", null);
+    // U+0A41 and U+4E00 encode as 41 0A 00 4E, which holds a misaligned "\n" (0A 00)
+    String content = "x\n\u0a41\u4e00";
+    ByteBuffer chunk = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_16LE));
+    assertEquals(4, splitter.boundary(chunk));
+  }
+
+  @Test
+  public void testScansFromBufferPosition() {
+    ChunkSplitter splitter = new ChunkSplitter("UTF-16", "\t", null);
+    ByteBuffer chunk = ByteBuffer.wrap("\u00ff\tab\tc".getBytes(StandardCharsets.UTF_16BE));
+    chunk.position(4);
+    assertEquals(10, splitter.boundary(chunk));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DelimitedCellReaderTest {
+
+  private static List<String[]> readAll(DelimitedCellReader reader) throws IOException {
+    List<String[]> rows = new ArrayList<>();
+    rows.add(reader.getHeaderRow());
+    String[] row;
+    while ((row = reader.readDataRow()) != null) {
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static void assertRows(List<String[]> rows, String[]... expected) {
+    assertEquals(expected.length, rows.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals("row " + i, expected[i], rows.get(i));
+    }
+  }
+
+  @Test
+  public void testSplitsTabSeparatedRows() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("a\tb\tc\n1\t\t3\n"), "\t", null);
+    assertRows(readAll(reader),
+        new String[] {"a", "b", "c"},
+        new String[] {"1", "", "3"});
+  }
+
+  @Test
+  public void testKeepsTrailingEmptyCells() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("a,b,c\n1,,\n,"), ",", "\"");
+    assertRows(readAll(reader),
+        new String[] {"a", "b", "c"},
+        new String[] {"1", "", ""},
+        new String[] {"", ""});
+  }
+
+  @Test
+  public void testUnquotesSeparatorsLineEndsAndDoubledDelimiters() throws IOException {
+    String content = "name,note\n\"Smith, J\",\"said \"\"hi\"\"\nand left\"\n\"\",x\"y\"z\n";
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader(content), ",", "\"");
+    assertRows(readAll(reader),
+        new String[] {"name", "note"},
+        new String[] {"Smith, J", "said \"hi\"\nand left"},
+        new String[] {"", "x\"y\"z"});
+  }
+
+  @Test
+  public void testDoesNotUnquoteWithoutDelimiter() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("h\n\"a,b\"\n"), ",", "");
+    assertRows(readAll(reader),
+        new String[] {"h"},
+        new String[] {"\"a", "b\""});
+  }
+
+  @Test
+  public void testEndsRowsAtAnyLineEnd() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("a\r\nb\rc\n\nd"), ",", "\"");
+    assertRows(readAll(reader),
+        new String[] {"a"},
+        new String[] {"b"},
+        new String[] {"c"},
+        new String[] {""},
+        new String[] {"d"});
+  }
+
+  @Test
+  public void testSplitsOnMultiCharacterSeparator() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("a::b:c\n\"x::\"::y\n"), "::", "\"");
+    assertRows(readAll(reader),
+        new String[] {"a", "b:c"},
+        new String[] {"x::", "y"});
+  }
+
+  @Test
+  public void testDecodesEncodingAndSkipsByteOrderMark() throws IOException {
+    byte[] content = "\ufeffk\u00e9y;v\u00e0l\n\u4e00;\"\u4e8c;\"\n".getBytes(StandardCharsets.UTF_16LE);
+    DelimitedCellReader reader = new DelimitedCellReader(new ByteArrayInputStream(content), "UTF-16LE", ";", "\"");
+    assertRows(readAll(reader),
+        new String[] {"k\u00e9y", "v\u00e0l"},
+        new String[] {"\u4e00", "\u4e8c;"});
+  }
+
+  @Test
+  public void testReadsCellsAcrossBufferRefills() throws IOException {
+    StringBuilder content = new StringBuilder("id,text\n");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String text = "line " + i + ", \"quoted\"\n" + String.join("", Collections.nCopies(i % 40, "x"));
+      expected.add(text);
+      content.append(i).append(",\"").append(text.replace("\"", "\"\"")).append("\"\r\n");
+    }
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader(content.toString()), ",", "\"", 8);
+    assertArrayEquals(new String[] {"id", "text"}, reader.getHeaderRow());
+    List<String> row = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      assertTrue(reader.readDataRow(row));
+      assertEquals(Arrays.asList(String.valueOf(i), expected.get(i)), row);
+    }
+    assertFalse(reader.readDataRow(row));
+    assertTrue(row.isEmpty());
+  }
+
+  @Test
+  public void testReadsHeaderOnce() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader("h1,h2\nv1,v2\n"), ",", "\"");
+    assertArrayEquals(new String[] {"v1", "v2"}, reader.readDataRow());
+    String[] header = reader.getHeaderRow();
+    assertArrayEquals(new String[] {"h1", "h2"}, header);
+    assertSame(header, reader.getHeaderRow());
+    assertNull(reader.readDataRow());
+  }
+
+  @Test
+  public void testReadsEmptyContent() throws IOException {
+    DelimitedCellReader reader = new DelimitedCellReader(new StringReader(""), "\t", "\"");
+    assertNull(reader.getHeaderRow());
+    assertNull(reader.getHeaderRow());
+    assertNull(reader.readDataRow());
+  }
+}
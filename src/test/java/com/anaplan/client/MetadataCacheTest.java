@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import com.anaplan.client.dto.ModelData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MetadataCacheTest {
+
+  private static final String WORKSPACE_ID = "8a8b8c8d8e8f8g8i";
+  private static final String MODEL_ID = "75A40874E6B64FA3AE0743278996850F";
+
+  private MockAnaplanServer server;
+  private Service service;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockAnaplanServer();
+    for (int i = 0; i < 100; i++) {
+      server.addDefinition(MockAnaplanServer.Kind.IMPORTS, String.valueOf(112000000100L + i),
+        "Import " + i);
+    }
+    service = new Service(server.getConnectionProperties());
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private Model model() {
+    return new Model(service.getWorkspace(WORKSPACE_ID), new ModelData(MODEL_ID));
+  }
+
+  @Test
+  public void testListsOnceForManyLookups() {
+    assertEquals("112000000142", model().getImport("Import 42").getId());
+    long requests = server.getRequestCount();
+
+    assertEquals("Import 7", model().getImport("112000000107").getName());
+    assertEquals("112000000199", model().getImport("import 99").getId());
+    assertNull(model().getImport("Import 100"));
+    assertEquals(requests, server.getRequestCount());
+  }
+
+  @Test
+  public void testInvalidationListsAgain() {
+    assertNull(model().getImport("Import new"));
+    server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "112000000999", "Import new");
+    assertNull(model().getImport("Import new"));
+
+    service.getMetadataCache().invalidate(WORKSPACE_ID, MODEL_ID);
+    assertEquals("112000000999", model().getImport("Import new").getId());
+  }
+
+  @Test
+  public void testCreatedServerFileIsFound() {
+    assertNull(model().getServerFile("data.csv"));
+    model().createServerFileImportDataSource("data.csv", "test");
+    assertEquals("data.csv", model().getServerFile("data.csv").getName());
+  }
+
+  @Test
+  public void testLookupsDoNotShareObjects() {
+    model().createServerFileImportDataSource("data.csv", "test");
+    ServerFile serverFile = model().getServerFile("data.csv");
+    String separator = serverFile.getData().getSeparator();
+    serverFile.getData().setSeparator("#");
+
+    ServerFile again = model().getServerFile("data.csv");
+    assertNotSame(serverFile, again);
+    assertEquals(separator, again.getData().getSeparator());
+  }
+}
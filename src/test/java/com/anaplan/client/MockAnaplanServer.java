@@ -0,0 +1,656 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import com.anaplan.client.auth.Credentials;
+import com.anaplan.client.transport.ConnectionProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An embeddable stand-in for the Anaplan API and authentication services, serving the files,
+ * chunks, tasks and token endpoints over HTTP on a loopback port. Files, chunks and tasks are kept
+ * in memory, and the server can be made to behave like a slow, narrow or overloaded service:
+ * <ul>
+ *   <li>a fixed latency is added before every response;</li>
+ *   <li>request and response bodies are paced to a bandwidth limit;</li>
+ *   <li>API requests can be failed, either a scripted number of times with a given status
+ *   (a 429 carries a Retry-After header) or at random with a 503;</li>
+ *   <li>files added by the test are cut into chunks of a configurable size.</li>
+ * </ul>
+ * Any credentials are accepted, but API requests must carry a token issued by the server.
+ */
+public class MockAnaplanServer implements Closeable {
+
+  /**
+   * The collections of tasks the server can run.
+   */
+  public enum Kind {
+    IMPORTS, EXPORTS, ACTIONS, PROCESSES;
+
+    private final String path = name().toLowerCase();
+  }
+
+  private static final String API_ROOT = "/" + Version.API_MAJOR + "/" + Version.API_MINOR;
+  private static final String TOKEN_PREFIX = "AnaplanAuthToken ";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+  private final Map<Kind, Map<String, String>> definitions = new EnumMap<>(Kind.class);
+  private final Map<String, RunningTask> tasks = new ConcurrentHashMap<>();
+  private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+  private final Queue<int[]> faults = new ConcurrentLinkedQueue<>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+
+  private volatile long latencyMillis = 0;
+  private volatile long bytesPerSecond = 0;
+  private volatile double errorRate = 0;
+  private volatile int chunkSize = 1024 * 1024;
+  private volatile long taskDurationMillis = 0;
+  private volatile long tokenTtlMillis = TimeUnit.MINUTES.toMillis(35);
+
+  private static final class StoredFile {
+    private final Map<String, Object> data = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> chunks = new ConcurrentHashMap<>();
+  }
+
+  private static final class RunningTask {
+    private final Kind kind;
+    private final String objectId;
+    private final long startedAt = System.currentTimeMillis();
+    private volatile boolean cancelled;
+
+    private RunningTask(Kind kind, String objectId) {
+      this.kind = kind;
+      this.objectId = objectId;
+    }
+  }
+
+  /**
+   * Starts a server on an ephemeral loopback port.
+   */
+  public MockAnaplanServer() throws IOException {
+    for (Kind kind : Kind.values()) {
+      definitions.put(kind, new ConcurrentHashMap<>());
+    }
+    executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("mock-anaplan-%d")
+      .build());
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * @return the root of both the API and the authentication service
+   */
+  public URI getUri() {
+    return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+  }
+
+  /**
+   * @return connection properties pointing the client at this server, retrying after one second
+   */
+  public ConnectionProperties getConnectionProperties() {
+    ConnectionProperties properties = new ConnectionProperties();
+    properties.setApiServicesUri(getUri());
+    properties.setAuthServiceUri(getUri());
+    properties.setApiCredentials(new Credentials("mock@example.com", "mock"));
+    properties.setRetryTimeout(1);
+    properties.setMaxRetryCount(Constants.MIN_RETRY_COUNT);
+    properties.setHttpTimeout(Constants.MIN_HTTP_CONNECTION_TIMEOUT_SECS * 10);
+    return properties;
+  }
+
+  public MockAnaplanServer withLatency(long latency, TimeUnit unit) {
+    this.latencyMillis = unit.toMillis(latency);
+    return this;
+  }
+
+  /**
+   * @param bytesPerSecond the rate each request and response body is paced to, or 0 for no limit
+   */
+  public MockAnaplanServer withBandwidth(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    return this;
+  }
+
+  /**
+   * @param errorRate the fraction of API requests failed with a 503, from 0 to 1
+   */
+  public MockAnaplanServer withErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /**
+   * @param chunkSize the size of the chunks that files added by {@link #putFile} are cut into
+   */
+  public MockAnaplanServer withChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  public MockAnaplanServer withTaskDuration(long duration, TimeUnit unit) {
+    this.taskDurationMillis = unit.toMillis(duration);
+    return this;
+  }
+
+  public MockAnaplanServer withTokenTtl(long ttl, TimeUnit unit) {
+    this.tokenTtlMillis = unit.toMillis(ttl);
+    return this;
+  }
+
+  /**
+   * Fails the next API requests with the given status.
+   */
+  public MockAnaplanServer failNext(int times, int status) {
+    for (int i = 0; i < times; i++) {
+      faults.add(new int[] {status, 0});
+    }
+    return this;
+  }
+
+  /**
+   * Revokes every token issued so far, so that they can be neither used nor refreshed.
+   */
+  public void revokeTokens() {
+    tokens.clear();
+  }
+
+  /**
+   * Rejects the next API requests with a 429 asking the client to retry after the given delay.
+   */
+  public MockAnaplanServer throttleNext(int times, int retryAfterSeconds) {
+    for (int i = 0; i < times; i++) {
+      faults.add(new int[] {429, retryAfterSeconds});
+    }
+    return this;
+  }
+
+  /**
+   * Adds or replaces a file, cut into chunks of the configured chunk size.
+   */
+  public void putFile(String fileId, String name, byte[] content) {
+    putFile(fileId, name, content, null);
+  }
+
+  /**
+   * Adds or replaces a file in the given encoding, cut into chunks of the configured chunk size.
+   */
+  public void putFile(String fileId, String name, byte[] content, String encoding) {
+    StoredFile file = new StoredFile();
+    file.data.put("id", fileId);
+    file.data.put("name", name);
+    if (encoding != null) {
+      file.data.put("encoding", encoding);
+    }
+    int count = 0;
+    for (int offset = 0; offset < content.length; offset += chunkSize) {
+      file.chunks.put(String.valueOf(count++),
+        Arrays.copyOfRange(content, offset, Math.min(content.length, offset + chunkSize)));
+    }
+    file.data.put("chunkCount", count);
+    file.data.put("headerRow", 1);
+    file.data.put("firstDataRow", 2);
+    files.put(fileId, file);
+  }
+
+  /**
+   * @return the content of a file, its chunks joined in order, or null if there is no such file
+   */
+  public byte[] getFileContent(String fileId) {
+    StoredFile file = files.get(fileId);
+    if (file == null) {
+      return null;
+    }
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (int i = 0; i < file.chunks.size(); i++) {
+      byte[] chunk = file.chunks.get(String.valueOf(i));
+      content.write(chunk, 0, chunk.length);
+    }
+    return content.toByteArray();
+  }
+
+  /**
+   * Adds an import, export, action or process which tasks can be run for.
+   */
+  public void addDefinition(Kind kind, String id, String name) {
+    definitions.get(kind).put(id, name);
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return the number of tasks created
+   */
+  public int getTaskCount() {
+    return tasks.size();
+  }
+
+  /**
+   * @return the number of tasks cancelled
+   */
+  public long getCancelledTaskCount() {
+    return tasks.values().stream().filter(task -> task.cancelled).count();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+    try {
+      if (latencyMillis > 0) {
+        Thread.sleep(latencyMillis);
+      }
+      byte[] body = read(exchange.getRequestBody());
+      String path = exchange.getRequestURI().getPath();
+      if (path.startsWith("/token/")) {
+        handleToken(exchange, path.substring("/token/".length()));
+      } else if (path.startsWith(API_ROOT + "/workspaces/")) {
+        if (!injectFault(exchange) && isAuthorized(exchange)) {
+          handleApi(exchange, path.substring(API_ROOT.length() + 1).split("/"), body);
+        }
+      } else {
+        respond(exchange, 404, null);
+      }
+    } catch (InterruptedException | InterruptedIOException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      respond(exchange, 500, status(500, String.valueOf(e)));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private boolean injectFault(HttpExchange exchange) throws IOException {
+    int[] fault = faults.poll();
+    if (fault == null && errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      fault = new int[] {503, 0};
+    }
+    if (fault == null) {
+      return false;
+    }
+    failedCount.incrementAndGet();
+    if (fault[0] == 429) {
+      exchange.getResponseHeaders().set("Retry-After", String.valueOf(fault[1]));
+    }
+    respond(exchange, fault[0], status(fault[0], "Injected failure"));
+    return true;
+  }
+
+  private boolean isAuthorized(HttpExchange exchange) throws IOException {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if (authorization != null && authorization.startsWith(TOKEN_PREFIX)) {
+      Long expiresAt = tokens.get(authorization.substring(TOKEN_PREFIX.length()));
+      if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+        return true;
+      }
+    }
+    respond(exchange, 401, status(401, "Full authentication is required to access this resource"));
+    return false;
+  }
+
+  private void handleToken(HttpExchange exchange, String operation) throws IOException {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    String token = authorization != null && authorization.startsWith(TOKEN_PREFIX)
+      ? authorization.substring(TOKEN_PREFIX.length()) : null;
+    switch (operation) {
+      case "authenticate":
+        if (authorization == null) {
+          respond(exchange, 401, tokenResponse("FAILURE_BAD_CREDENTIAL", null));
+        } else {
+          respond(exchange, 201, tokenResponse("SUCCESS", issueToken()));
+        }
+        return;
+      case "refresh":
+        if (token == null || tokens.remove(token) == null) {
+          respond(exchange, 401, tokenResponse("FAILURE_BAD_TOKEN", null));
+        } else {
+          respond(exchange, 201, tokenResponse("SUCCESS", issueToken()));
+        }
+        return;
+      case "validate":
+        Long expiresAt = token == null ? null : tokens.get(token);
+        if (expiresAt == null || expiresAt <= System.currentTimeMillis()) {
+          respond(exchange, 401, tokenResponse("FAILURE_BAD_TOKEN", null));
+        } else {
+          respond(exchange, 200, tokenResponse("SUCCESS", tokenInfo(token, expiresAt)));
+        }
+        return;
+      case "logout":
+        if (token != null) {
+          tokens.remove(token);
+        }
+        respond(exchange, 204, null);
+        return;
+      default:
+        respond(exchange, 404, null);
+    }
+  }
+
+  private Map<String, Object> issueToken() {
+    String token = UUID.randomUUID().toString();
+    long expiresAt = System.currentTimeMillis() + tokenTtlMillis;
+    tokens.put(token, expiresAt);
+    return tokenInfo(token, expiresAt);
+  }
+
+  private static Map<String, Object> tokenInfo(String token, long expiresAt) {
+    Map<String, Object> tokenInfo = new LinkedHashMap<>();
+    tokenInfo.put("tokenId", UUID.nameUUIDFromBytes(token.getBytes(StandardCharsets.UTF_8)).toString());
+    tokenInfo.put("tokenValue", token);
+    tokenInfo.put("refreshTokenId", UUID.randomUUID().toString());
+    tokenInfo.put("expiresAt", expiresAt);
+    return tokenInfo;
+  }
+
+  private Map<String, Object> tokenResponse(String status, Map<String, Object> tokenInfo) {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("meta", Collections.singletonMap("validationUrl", getUri() + "/token/validate"));
+    response.put("status", status);
+    response.put("statusMessage", "SUCCESS".equals(status) ? "Login successful" : "Authentication failed");
+    if (tokenInfo != null) {
+      response.put("tokenInfo", tokenInfo);
+    }
+    return response;
+  }
+
+  /**
+   * Routes <code>workspaces/{workspaceId}/models/{modelId}/...</code>.
+   */
+  private void handleApi(HttpExchange exchange, String[] path, byte[] body) throws IOException {
+    String method = exchange.getRequestMethod();
+    if (path.length < 5 || !"models".equals(path[2])) {
+      respond(exchange, 404, status(404, "Not found"));
+      return;
+    }
+    if ("files".equals(path[4])) {
+      handleFiles(exchange, method, Arrays.copyOfRange(path, 5, path.length), body);
+      return;
+    }
+    for (Kind kind : Kind.values()) {
+      if (kind.path.equals(path[4])) {
+        handleTasks(exchange, method, kind, Arrays.copyOfRange(path, 5, path.length));
+        return;
+      }
+    }
+    respond(exchange, 404, status(404, "Not found"));
+  }
+
+  private void handleFiles(HttpExchange exchange, String method, String[] path, byte[] body) throws IOException {
+    if (path.length == 0 && "GET".equals(method)) {
+      List<Object> fileList = new ArrayList<>();
+      for (StoredFile file : files.values()) {
+        fileList.add(file.data);
+      }
+      respond(exchange, 200, list("files", fileList));
+      return;
+    }
+    if (path.length == 1 && "POST".equals(method)) {
+      // creates or resets the file, ready for the declared number of chunks
+      @SuppressWarnings("unchecked")
+      Map<String, Object> data = body.length == 0 ? new LinkedHashMap<>() : objectMapper.readValue(body, Map.class);
+      StoredFile file = new StoredFile();
+      data.forEach((key, value) -> {
+        if (value != null) {
+          file.data.put(key, value);
+        }
+      });
+      file.data.put("id", path[0]);
+      file.data.putIfAbsent("name", path[0]);
+      file.data.putIfAbsent("chunkCount", 0);
+      file.data.putIfAbsent("headerRow", 1);
+      file.data.putIfAbsent("firstDataRow", 2);
+      files.put(path[0], file);
+      respond(exchange, 200, item("file", file.data));
+      return;
+    }
+    StoredFile file = path.length == 0 ? null : files.get(path[0]);
+    if (file == null) {
+      respond(exchange, 404, status(404, "File not found"));
+      return;
+    }
+    if (path.length == 2 && "complete".equals(path[1]) && "POST".equals(method)) {
+      file.data.put("chunkCount", file.chunks.size());
+      respond(exchange, 200, item("file", file.data));
+    } else if (path.length == 2 && "chunks".equals(path[1]) && "GET".equals(method)) {
+      int chunkCount = ((Number) file.data.get("chunkCount")).intValue();
+      List<Object> chunkList = new ArrayList<>();
+      for (int i = 0; i < chunkCount; i++) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", String.valueOf(i));
+        chunk.put("name", "Chunk " + i);
+        chunkList.add(chunk);
+      }
+      respond(exchange, 200, list("chunks", chunkList));
+    } else if (path.length == 3 && "chunks".equals(path[1]) && "GET".equals(method)) {
+      byte[] chunk = file.chunks.get(path[2]);
+      if (chunk == null) {
+        respond(exchange, 404, status(404, "Chunk not found"));
+      } else {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        respondBytes(exchange, 200, chunk);
+      }
+    } else if (path.length == 3 && "chunks".equals(path[1]) && "PUT".equals(method)) {
+      String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      if (contentType != null && contentType.contains("gzip")) {
+        body = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(body)));
+      }
+      file.chunks.put(path[2], body);
+      respond(exchange, 204, null);
+    } else {
+      respond(exchange, 404, status(404, "Not found"));
+    }
+  }
+
+  private void handleTasks(HttpExchange exchange, String method, Kind kind, String[] path) throws IOException {
+    if (path.length == 0 && "GET".equals(method)) {
+      List<Object> definitionList = new ArrayList<>();
+      for (Map.Entry<String, String> definition : definitions.get(kind).entrySet()) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", definition.getKey());
+        data.put("name", definition.getValue());
+        definitionList.add(data);
+      }
+      respond(exchange, 200, list(kind.path, definitionList));
+      return;
+    }
+    if (path.length < 2 || !definitions.get(kind).containsKey(path[0]) || !"tasks".equals(path[1])) {
+      respond(exchange, 404, status(404, "Not found"));
+      return;
+    }
+    if (path.length == 2 && "POST".equals(method)) {
+      String taskId = UUID.randomUUID().toString().replace("-", "").toUpperCase();
+      tasks.put(taskId, new RunningTask(kind, path[0]));
+      respond(exchange, 200, item("task", Collections.singletonMap("taskId", taskId)));
+      return;
+    }
+    RunningTask task = path.length == 3 ? tasks.get(path[2]) : null;
+    if (task == null || task.kind != kind || !task.objectId.equals(path[0])) {
+      respond(exchange, 404, status(404, "Task not found"));
+    } else if ("GET".equals(method)) {
+      respond(exchange, 200, item("task", taskStatus(path[2], task)));
+    } else if ("DELETE".equals(method)) {
+      task.cancelled = true;
+      respond(exchange, 200, item("task", taskStatus(path[2], task)));
+    } else {
+      respond(exchange, 404, status(404, "Not found"));
+    }
+  }
+
+  private Map<String, Object> taskStatus(String taskId, RunningTask task) {
+    long elapsed = System.currentTimeMillis() - task.startedAt;
+    double progress = taskDurationMillis == 0 ? 1 : Math.min(1, (double) elapsed / taskDurationMillis);
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("type", "taskStatus");
+    status.put("taskId", taskId);
+    status.put("progress", progress);
+    if (task.cancelled) {
+      status.put("taskState", "CANCELLED");
+      status.put("cancelledBy", "mock@example.com");
+    } else if (progress < 1) {
+      status.put("taskState", "IN_PROGRESS");
+      status.put("currentStep", "Running.");
+    } else {
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("objectId", task.objectId);
+      result.put("objectName", definitions.get(task.kind).get(task.objectId));
+      result.put("successful", true);
+      result.put("failureDumpAvailable", false);
+      status.put("taskState", "COMPLETE");
+      status.put("currentStep", "Complete.");
+      status.put("result", result);
+    }
+    return status;
+  }
+
+  private static Map<String, Object> status(int code, String message) {
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("code", code);
+    status.put("message", message);
+    return Collections.singletonMap("status", status);
+  }
+
+  private static Map<String, Object> item(String name, Object item) {
+    Map<String, Object> response = new LinkedHashMap<>(status(200, "Success"));
+    response.put(name, item);
+    return response;
+  }
+
+  private static Map<String, Object> list(String name, List<Object> items) {
+    Map<String, Object> paging = new LinkedHashMap<>();
+    paging.put("currentPageSize", items.size());
+    paging.put("offset", 0);
+    paging.put("totalSize", items.size());
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("meta", Collections.singletonMap("paging", paging));
+    response.putAll(status(200, "Success"));
+    response.put(name, items);
+    return response;
+  }
+
+  private void respond(HttpExchange exchange, int code, Object json) throws IOException {
+    if (json == null) {
+      exchange.sendResponseHeaders(code, -1);
+      return;
+    }
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    respondBytes(exchange, code, objectMapper.writeValueAsBytes(json));
+  }
+
+  private void respondBytes(HttpExchange exchange, int code, byte[] content) throws IOException {
+    exchange.sendResponseHeaders(code, content.length);
+    OutputStream out = exchange.getResponseBody();
+    long start = System.nanoTime();
+    for (int offset = 0; offset < content.length; offset += BUFFER_SIZE) {
+      int length = Math.min(BUFFER_SIZE, content.length - offset);
+      out.write(content, offset, length);
+      bytesSent.addAndGet(length);
+      pace(offset + length, start);
+    }
+    out.flush();
+  }
+
+  private byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long start = System.nanoTime();
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      content.write(buffer, 0, read);
+      bytesReceived.addAndGet(read);
+      pace(content.size(), start);
+    }
+    return content.toByteArray();
+  }
+
+  /**
+   * Sleeps until transferring the given number of bytes since the start would have taken at the
+   * configured bandwidth.
+   */
+  private void pace(long transferred, long startNanos) throws InterruptedIOException {
+    long limit = bytesPerSecond;
+    if (limit <= 0) {
+      return;
+    }
+    long due = TimeUnit.SECONDS.toNanos(transferred) / limit - (System.nanoTime() - startNanos);
+    if (due > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(due);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while pacing transfer");
+      }
+    }
+  }
+}
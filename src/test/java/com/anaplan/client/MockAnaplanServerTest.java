@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.anaplan.client.dto.ModelData;
+import com.anaplan.client.dto.ServerFileData;
+import com.anaplan.client.transport.ConnectionProperties;
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the client over HTTP against {@link MockAnaplanServer}.
+ */
+@RunWith(JUnit4.class)
+public class MockAnaplanServerTest {
+
+  private static final String FILE_ID = "113000000001";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private MockAnaplanServer server;
+  private ConnectionProperties properties;
+  private byte[] content;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockAnaplanServer().withLatency(2, TimeUnit.MILLISECONDS);
+    properties = server.getConnectionProperties();
+    ByteArrayOutputStream rows = new ByteArrayOutputStream();
+    for (int i = 0; i < 20_000; i++) {
+      byte[] row = ("row-" + i + ",\"value " + i + "\"\n").getBytes(StandardCharsets.UTF_8);
+      rows.write(row, 0, row.length);
+    }
+    content = rows.toByteArray();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private Model model() {
+    Service service = new Service(properties);
+    return new Model(service.getWorkspace("8a8b8c8d8e8f8g8i"), new ModelData("75A40874E6B64FA3AE0743278996850F"));
+  }
+
+  private ServerFile serverFile() {
+    ServerFileData data = new ServerFileData();
+    data.setId(FILE_ID);
+    data.setName("data.csv");
+    data.setEncoding("UTF-8");
+    data.setSeparator("\n");
+    data.setDelimiter("\"");
+    return new ServerFile(model(), data);
+  }
+
+  @Test
+  public void testUploadAndDownloadInParallelChunks() throws Exception {
+    File source = temporaryFolder.newFile("upload.csv");
+    Files.write(source.toPath(), content);
+    ServerFile serverFile = serverFile();
+    serverFile.upLoad(source, true, 16 * 1024, 4);
+    assertArrayEquals(content, server.getFileContent(FILE_ID));
+
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4);
+    assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void testUploadsCompressedChunksInOrder() throws Exception {
+    List<byte[]> chunks = new ArrayList<>();
+    for (int offset = 0; offset < content.length; offset += 40_000) {
+      int end = Math.min(content.length, offset + 40_000);
+      while (end < content.length && content[end - 1] != '\n') {
+        end++;
+      }
+      chunks.add(GzipCompressor.gzip(content, offset, end - offset, 6));
+      offset = end - 40_000;
+    }
+
+    serverFile().upLoadCompressed(chunks.iterator(), 4);
+    assertArrayEquals(content, server.getFileContent(FILE_ID));
+  }
+
+  @Test
+  public void testReportsTransferProgress() throws Exception {
+    File source = temporaryFolder.newFile("upload.csv");
+    Files.write(source.toPath(), content);
+    ServerFile serverFile = serverFile();
+    List<TransferProgress> reports = Collections.synchronizedList(new ArrayList<>());
+    serverFile.getService().setTransferListener(reports::add);
+
+    serverFile.upLoad(source, true, 16 * 1024, 4);
+    TransferProgress upload = reports.get(reports.size() - 1);
+    assertTrue(upload.isDone());
+    assertEquals(TransferProgress.Direction.UPLOAD, upload.getDirection());
+    assertEquals(upload.getChunksTotal(), upload.getChunksDone());
+    assertEquals(content.length, upload.getRawBytes());
+    assertTrue(upload.getCompressedBytes() < upload.getRawBytes());
+
+    reports.clear();
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4);
+    TransferProgress download = reports.get(reports.size() - 1);
+    assertTrue(download.isDone());
+    assertEquals(TransferProgress.Direction.DOWNLOAD, download.getDirection());
+    assertEquals(download.getChunksTotal(), download.getChunksDone());
+    assertEquals(content.length, download.getRawBytes());
+  }
+
+  @Test
+  public void testDownloadsWholeRowsInBlocks() throws Exception {
+    server.withChunkSize(16 * 1024).putFile(FILE_ID, "data.csv", content);
+    List<byte[]> blocks = new ArrayList<>();
+    serverFile().downLoadRows(10_000, 4, blocks::add);
+
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    for (byte[] block : blocks) {
+      assertTrue(block.length <= 10_000);
+      assertEquals('\n', block[block.length - 1]);
+      joined.write(block, 0, block.length);
+    }
+    assertTrue(blocks.size() > 1);
+    assertArrayEquals(content, joined.toByteArray());
+  }
+
+  @Test
+  public void testReadsCellsOfDownload() throws Exception {
+    server.withChunkSize(16 * 1024).putFile(FILE_ID, "data.csv", content);
+    ServerFile serverFile = serverFile();
+    serverFile.getData().setSeparator(",");
+
+    DelimitedCellReader cellReader = serverFile.getDownloadCellReader(4);
+    try {
+      assertArrayEquals(new String[] {"row-0", "value 0"}, cellReader.getHeaderRow());
+      List<String> row = new ArrayList<>();
+      int rows = 1;
+      while (cellReader.readDataRow(row)) {
+        assertEquals(Arrays.asList("row-" + rows, "value " + rows), row);
+        rows++;
+      }
+      assertEquals(20_000, rows);
+    } finally {
+      cellReader.close();
+    }
+  }
+
+  @Test
+  public void testRetriesServerErrors() throws Exception {
+    properties.setRetryTimeout(0);
+    File source = temporaryFolder.newFile("upload.csv");
+    Files.write(source.toPath(), content);
+    server.failNext(2, 503);
+
+    serverFile().upLoad(source, true, 16 * 1024, 4);
+    assertEquals(2, server.getFailedCount());
+    assertArrayEquals(content, server.getFileContent(FILE_ID));
+  }
+
+  @Test
+  public void testWaitsForRetryAfter() throws Exception {
+    server.withChunkSize(16 * 1024).putFile(FILE_ID, "data.csv", content);
+    server.throttleNext(1, 1);
+
+    long start = System.nanoTime();
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile().downLoad(target, true, 4);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+    assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void testRunsImportTask() throws Exception {
+    server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "112000000001", "Import data.csv");
+    Import serverImport = model().getImport("Import data.csv");
+    TaskResult result = serverImport.createTask(new TaskParameters()).runTask();
+    assertTrue(result.isSuccessful());
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.anaplan.client.api.AnaplanAPI;
+import com.anaplan.client.auth.Credentials;
+import com.anaplan.client.dto.ChunkData;
+import com.anaplan.client.dto.ModelData;
+import com.anaplan.client.dto.ServerFileData;
+import com.anaplan.client.dto.responses.ChunksResponse;
+import com.anaplan.client.dto.responses.ServerFileResponse;
+import com.anaplan.client.ex.NoChunkError;
+import com.anaplan.client.transport.ConnectionProperties;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ServerFileTest {
+
+  private static final int CHUNK_COUNT = 12;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private AnaplanAPI api;
+  private ServerFile serverFile;
+  private byte[] expectedContent;
+  private final Map<String, byte[]> uploadedChunks = new ConcurrentHashMap<>();
+
+  @Before
+  public void setUp() throws Exception {
+    ConnectionProperties properties = new ConnectionProperties();
+    properties.setApiCredentials(new Credentials("username@gmail.com", "pass"));
+    Service service = new Service(properties);
+    api = mock(AnaplanAPI.class);
+    service.getApiProvider().setApiClient(api);
+
+    Model model = new Model(service.getWorkspace("workspaceId"), new ModelData("modelId"));
+    ServerFileData data = new ServerFileData();
+    data.setId("fileId");
+    data.setName("test.csv");
+    serverFile = new ServerFile(model, data);
+
+    List<ChunkData> chunks = new ArrayList<>();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      ChunkData chunk = new ChunkData();
+      chunk.setId(String.valueOf(i));
+      chunks.add(chunk);
+      byte[] content = ("row-" + i + "\n").getBytes(StandardCharsets.UTF_8);
+      expected.write(content);
+      when(api.getChunkContentStream(anyString(), anyString(), anyString(), eq(chunk.getId())))
+        .thenAnswer(invocation -> {
+          // finish out of order, so that the ordering of the output is actually exercised
+          Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+          return new ByteArrayInputStream(content);
+        });
+    }
+    expectedContent = expected.toByteArray();
+
+    ChunksResponse chunksResponse = new ChunksResponse();
+    chunksResponse.setItem(chunks);
+    when(api.getChunks(anyString(), anyString(), anyString())).thenReturn(chunksResponse);
+
+    data.setEncoding("UTF-8");
+    data.setSeparator("\n");
+    data.setHeaderRow(1);
+    data.setFirstDataRow(2);
+    ServerFileResponse serverFileResponse = new ServerFileResponse();
+    serverFileResponse.setItem(data);
+    when(api.upsertFileDataSource(anyString(), anyString(), anyString(), any(ServerFileData.class)))
+      .thenReturn(serverFileResponse);
+    when(api.completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class)))
+      .thenReturn(serverFileResponse);
+    doAnswer(invocation -> {
+      Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+      uploadedChunks.put(invocation.getArgument(3), gunzip(invocation.getArgument(4)));
+      return null;
+    }).when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), anyString(), any(byte[].class));
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws Exception {
+    try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return ByteStreams.toByteArray(inputStream);
+    }
+  }
+
+  private byte[] joinUploadedChunks() throws Exception {
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    for (int i = 0; i < uploadedChunks.size(); i++) {
+      joined.write(uploadedChunks.get(String.valueOf(i)));
+    }
+    return joined.toByteArray();
+  }
+
+  @Test
+  public void testDownLoadWritesChunksInOrder() throws Exception {
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4);
+    assertArrayEquals(expectedContent, Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void testDownloadStreamReadsChunksInOrder() throws Exception {
+    try (InputStream inputStream = serverFile.getDownloadStream(3)) {
+      assertArrayEquals(expectedContent, ByteStreams.toByteArray(inputStream));
+    }
+  }
+
+  @Test
+  public void testDownLoadFailsOnMissingChunk() {
+    when(api.getChunkContentStream(anyString(), anyString(), anyString(), eq("5"))).thenReturn(null);
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    assertThrows(NoChunkError.class, () -> serverFile.downLoad(target, true, 4));
+    // the chunks spooled ahead of the failure are cleaned up along with the download
+    assertArrayEquals(new String[] {".partial.download.csv"}, temporaryFolder.getRoot().list());
+  }
+
+  @Test
+  public void testDownLoadLeavesNoSpoolFiles() throws Exception {
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4);
+    assertArrayEquals(new String[] {"download.csv"}, temporaryFolder.getRoot().list());
+  }
+
+  @Test
+  public void testDownLoadWritesEqualChunksWithoutSpooling() throws Exception {
+    List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      chunks.add(String.format("row-%02d\n", i));
+    }
+    List<String> spooled = new CopyOnWriteArrayList<>();
+    byte[] expected = mockChunks(chunks, spooled);
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4);
+
+    assertArrayEquals(expected, Files.readAllBytes(target.toPath()));
+    assertTrue(spooled.isEmpty());
+  }
+
+  @Test
+  public void testDownLoadWritesShorterChunkInOrder() throws Exception {
+    List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      chunks.add(i == 3 ? "r3\n" : String.format("row-%02d\n", i));
+    }
+    byte[] expected = mockChunks(chunks, new ArrayList<>());
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    serverFile.downLoad(target, true, 4, true);
+
+    assertArrayEquals(expected, Files.readAllBytes(target.toPath()));
+    assertArrayEquals(new String[] {"download.csv"}, temporaryFolder.getRoot().list());
+  }
+
+  /**
+   * Serves the given chunks, noting the spool files present while each is requested.
+   *
+   * @return the content of the file
+   */
+  private byte[] mockChunks(List<String> chunks, List<String> spooled) throws Exception {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < chunks.size(); i++) {
+      byte[] content = chunks.get(i).getBytes(StandardCharsets.UTF_8);
+      expected.write(content);
+      when(api.getChunkContentStream(anyString(), anyString(), anyString(), eq(String.valueOf(i))))
+        .thenAnswer(invocation -> {
+          Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+          for (String name : temporaryFolder.getRoot().list()) {
+            if (name.startsWith(".chunk-")) {
+              spooled.add(name);
+            }
+          }
+          return new ByteArrayInputStream(content);
+        });
+    }
+    return expected.toByteArray();
+  }
+
+  @Test
+  public void testDownloadStreamWithoutPrefetchReadsChunksInOrder() throws Exception {
+    try (InputStream inputStream = serverFile.getDownloadStream(1)) {
+      assertArrayEquals(expectedContent, ByteStreams.toByteArray(inputStream));
+    }
+  }
+
+  private File failResumableDownLoadAtChunk(String chunkId) {
+    byte[] content = ("row-" + chunkId + "\n").getBytes(StandardCharsets.UTF_8);
+    when(api.getChunkContentStream(anyString(), anyString(), anyString(), eq(chunkId)))
+      .thenReturn(null)
+      .thenAnswer(invocation -> new ByteArrayInputStream(content));
+    File target = new File(temporaryFolder.getRoot(), "download.csv");
+    assertThrows(NoChunkError.class, () -> serverFile.downLoad(target, true, 4, true));
+    return target;
+  }
+
+  @Test
+  public void testResumableDownLoadFetchesOnlyMissingChunks() throws Exception {
+    File target = failResumableDownLoadAtChunk("7");
+    serverFile.downLoad(target, true, 4, true);
+
+    assertArrayEquals(expectedContent, Files.readAllBytes(target.toPath()));
+    for (int i = 0; i < 7; i++) {
+      verify(api, times(1)).getChunkContentStream(anyString(), anyString(), anyString(), eq(String.valueOf(i)));
+    }
+    // the manifest goes along with the partial file
+    assertArrayEquals(new String[] {"download.csv"}, temporaryFolder.getRoot().list());
+  }
+
+  @Test
+  public void testResumableDownLoadRefetchesCorruptedChunks() throws Exception {
+    File target = failResumableDownLoadAtChunk("7");
+    try (RandomAccessFile partial = new RandomAccessFile(
+      new File(temporaryFolder.getRoot(), ".partial.download.csv"), "rw")) {
+      // corrupt chunk 2, which starts after "row-0\nrow-1\n"
+      partial.seek(12);
+      partial.write('X');
+    }
+    serverFile.downLoad(target, true, 4, true);
+
+    assertArrayEquals(expectedContent, Files.readAllBytes(target.toPath()));
+    verify(api, times(1)).getChunkContentStream(anyString(), anyString(), anyString(), eq("1"));
+    verify(api, times(2)).getChunkContentStream(anyString(), anyString(), anyString(), eq("2"));
+  }
+
+  private File mockUploadSource(int chunkSize) throws Exception {
+    File source = temporaryFolder.newFile("upload.csv");
+    Files.write(source.toPath(), expectedContent);
+    int chunkCount = (expectedContent.length - 1) / chunkSize + 1;
+    ChunksResponse chunksResponse = new ChunksResponse();
+    chunksResponse.setItem(new ArrayList<>());
+    for (int i = 0; i < chunkCount; i++) {
+      ChunkData chunk = new ChunkData();
+      chunk.setId(String.valueOf(i));
+      chunksResponse.getItem().add(chunk);
+    }
+    when(api.getChunks(anyString(), anyString(), anyString())).thenReturn(chunksResponse);
+    return source;
+  }
+
+  @Test
+  public void testUpLoadSplitsOnSeparators() throws Exception {
+    int chunkSize = 16;
+    int chunkCount = (expectedContent.length - 1) / chunkSize + 1;
+    File source = mockUploadSource(chunkSize);
+
+    serverFile.upLoad(source, true, chunkSize, 4);
+    assertArrayEquals(expectedContent, joinUploadedChunks());
+    for (int i = 0; i < chunkCount - 1; i++) {
+      byte[] chunk = uploadedChunks.get(String.valueOf(i));
+      assertEquals('\n', chunk[chunk.length - 1]);
+    }
+  }
+
+  @Test
+  public void testResumableUpLoadSendsOnlyMissingChunks() throws Exception {
+    File source = mockUploadSource(16);
+    doThrow(new IllegalStateException("chunk rejected"))
+      .when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("3"), any(byte[].class));
+    // one chunk at a time, so that every chunk before the rejected one has been acknowledged
+    assertThrows(IllegalStateException.class, () -> serverFile.upLoad(source, true, 16, 1, true));
+    assertTrue(UploadManifest.locationOf(source).isFile());
+
+    doAnswer(invocation -> {
+      uploadedChunks.put(invocation.getArgument(3), gunzip(invocation.getArgument(4)));
+      return null;
+    }).when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), anyString(), any(byte[].class));
+    serverFile.upLoad(source, true, 16, 2, true);
+
+    assertArrayEquals(expectedContent, joinUploadedChunks());
+    // the server file is not reset by the resumed upload, and acknowledged chunks are not sent again
+    verify(api, times(1)).upsertFileDataSource(anyString(), anyString(), anyString(), any(ServerFileData.class));
+    verify(api, times(1)).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("0"), any(byte[].class));
+    verify(api, times(2)).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("3"), any(byte[].class));
+    assertFalse(UploadManifest.locationOf(source).exists());
+  }
+
+  @Test
+  public void testResumableUpLoadResendsChunkWithTruncatedManifestLine() throws Exception {
+    File source = mockUploadSource(16);
+    doThrow(new IllegalStateException("chunk rejected"))
+      .when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("3"), any(byte[].class));
+    assertThrows(IllegalStateException.class, () -> serverFile.upLoad(source, true, 16, 1, true));
+
+    // cut the line of chunk 2 short in the middle of its length, as if the upload was killed writing it
+    File manifest = UploadManifest.locationOf(source);
+    List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+    String[] last = lines.get(lines.size() - 1).split("\t");
+    assertEquals("2", last[0]);
+    lines.set(lines.size() - 1, last[0] + "\t" + last[1] + "\t" + last[2].substring(0, 1));
+    Files.write(manifest.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+
+    doAnswer(invocation -> {
+      uploadedChunks.put(invocation.getArgument(3), gunzip(invocation.getArgument(4)));
+      return null;
+    }).when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), anyString(), any(byte[].class));
+    serverFile.upLoad(source, true, 16, 1, true);
+
+    assertArrayEquals(expectedContent, joinUploadedChunks());
+    verify(api, times(1)).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("1"), any(byte[].class));
+    verify(api, times(2)).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("2"), any(byte[].class));
+  }
+
+  @Test
+  public void testResumableUpLoadStartsOverWhenSourceChanged() throws Exception {
+    File source = mockUploadSource(16);
+    doThrow(new IllegalStateException("chunk rejected"))
+      .when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("3"), any(byte[].class));
+    assertThrows(IllegalStateException.class, () -> serverFile.upLoad(source, true, 16, 2, true));
+
+    doAnswer(invocation -> {
+      uploadedChunks.put(invocation.getArgument(3), gunzip(invocation.getArgument(4)));
+      return null;
+    }).when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), anyString(), any(byte[].class));
+    assertTrue(source.setLastModified(source.lastModified() - 60_000));
+    serverFile.upLoad(source, true, 16, 2, true);
+
+    assertArrayEquals(expectedContent, joinUploadedChunks());
+    verify(api, times(2)).upsertFileDataSource(anyString(), anyString(), anyString(), any(ServerFileData.class));
+    verify(api, times(2)).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("0"), any(byte[].class));
+  }
+
+  @Test
+  public void testUploadStreamCompletesAfterAllChunks() throws Exception {
+    when(api.completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class)))
+      .thenAnswer(invocation -> {
+        // every chunk must have arrived before the upload is completed
+        assertArrayEquals(expectedContent, joinUploadedChunks());
+        ServerFileResponse response = new ServerFileResponse();
+        response.setItem(invocation.getArgument(3));
+        return response;
+      });
+    try (OutputStream outputStream = serverFile.getUploadStream(8, 3)) {
+      outputStream.write(expectedContent);
+    }
+    verify(api).completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class));
+  }
+
+  @Test
+  public void testUploadStreamCompletesOnce() throws Exception {
+    OutputStream outputStream = serverFile.getUploadStream(8, 3);
+    outputStream.write(expectedContent);
+    outputStream.close();
+    outputStream.close();
+    verify(api).completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class));
+  }
+
+  @Test
+  public void testAbortedUploadStreamDoesNotComplete() throws Exception {
+    ServerFile.UploadStream outputStream = serverFile.getUploadStream(8, 3);
+    outputStream.write(expectedContent, 0, 20);
+    outputStream.abort();
+    outputStream.close();
+    verify(api, never()).completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class));
+  }
+
+  @Test
+  public void testUploadStreamDoesNotCompleteOnFailedChunk() throws Exception {
+    doThrow(new IllegalStateException("chunk rejected"))
+      .when(api).uploadChunkPrecompressed(anyString(), anyString(), anyString(), eq("1"), any(byte[].class));
+    OutputStream outputStream = serverFile.getUploadStream(8, 3);
+    // the failure surfaces on whichever write or close follows it
+    assertThrows(IllegalStateException.class, () -> {
+      outputStream.write(expectedContent);
+      outputStream.close();
+    });
+    verify(api, never()).completeUpload(anyString(), anyString(), anyString(), any(ServerFileData.class));
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TaskPollerTest {
+
+  private final AtomicLong clock = new AtomicLong(1_000_000);
+
+  @Before
+  public void setUp() {
+    TaskPoller.clearHistory();
+  }
+
+  private long waitFor(long interval) {
+    clock.addAndGet(interval);
+    return interval;
+  }
+
+  @Test
+  public void testBacksOffWithoutEstimate() {
+    TaskPoller poller = new TaskPoller("118000000001", clock::get);
+    long interval = waitFor(poller.firstInterval());
+    assertEquals(TaskPoller.FIRST_INTERVAL_MS, interval);
+    for (int i = 0; i < 20; i++) {
+      long next = waitFor(poller.nextInterval(-1));
+      assertTrue(next >= interval);
+      interval = next;
+    }
+    assertEquals(TaskPoller.MAX_INTERVAL_MS, interval);
+  }
+
+  @Test
+  public void testPollsMoreOftenNearCompletion() {
+    TaskPoller poller = new TaskPoller("118000000001", clock::get);
+    waitFor(poller.firstInterval());
+    poller.nextInterval(0.1);
+    // ten percent per second, so eight seconds remain at 20%
+    clock.addAndGet(1000);
+    long early = poller.nextInterval(0.2);
+    assertEquals(4000, early);
+    clock.addAndGet(6000);
+    long late = poller.nextInterval(0.8);
+    assertTrue(late < early);
+    assertEquals(TaskPoller.MIN_INTERVAL_MS, poller.nextInterval(0.999));
+  }
+
+  @Test
+  public void testUsesDurationOfEarlierRuns() {
+    TaskPoller first = new TaskPoller("118000000001", clock::get);
+    clock.addAndGet(61_000);
+    first.completed();
+
+    TaskPoller second = new TaskPoller("118000000001", clock::get);
+    long elapsed = 0;
+    long interval = second.firstInterval();
+    assertEquals(TaskPoller.MAX_INTERVAL_MS, interval);
+    while (elapsed + interval < 61_000) {
+      elapsed += waitFor(interval);
+      interval = second.nextInterval(-1);
+    }
+    // the last poll before the expected completion is at most a second short of it
+    assertTrue(61_000 - elapsed <= 1000);
+    assertTrue(interval <= 1000);
+
+    TaskPoller other = new TaskPoller("118000000002", clock::get);
+    assertEquals(TaskPoller.FIRST_INTERVAL_MS, other.firstInterval());
+  }
+
+  @Test
+  public void testWaitsOutRetryAfter() {
+    TaskPoller poller = new TaskPoller("118000000001", clock::get);
+    waitFor(poller.firstInterval());
+    poller.retryAfter(45_000);
+    assertEquals(45_000, poller.nextInterval(-1));
+    assertEquals(TaskPoller.MAX_INTERVAL_MS, poller.nextInterval(-1));
+  }
+}
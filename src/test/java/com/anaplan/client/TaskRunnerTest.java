@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.anaplan.client.dto.ModelData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TaskRunnerTest {
+
+  private MockAnaplanServer server;
+  private Model model;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockAnaplanServer().withTaskDuration(1500, TimeUnit.MILLISECONDS);
+    Service service = new Service(server.getConnectionProperties());
+    model = new Model(service.getWorkspace("8a8b8c8d8e8f8g8i"),
+      new ModelData("75A40874E6B64FA3AE0743278996850F"));
+    TaskPoller.clearHistory();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testRunsTasksConcurrently() throws Exception {
+    for (int i = 0; i < 6; i++) {
+      server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "11200000000" + i, "Import " + i);
+    }
+    List<Import> imports = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      imports.add(model.getImport("Import " + i));
+    }
+
+    // no task ends until the duration is lifted, so six created at once can only be overlapping
+    server.withTaskDuration(1, TimeUnit.HOURS);
+    try (TaskRunner runner = new TaskRunner(2)) {
+      List<CompletableFuture<TaskResult>> results = new ArrayList<>();
+      for (Import serverImport : imports) {
+        results.add(runner.submit(serverImport, new TaskParameters()));
+      }
+      awaitTaskCount(6);
+      for (CompletableFuture<TaskResult> result : results) {
+        assertFalse(result.isDone());
+      }
+      server.withTaskDuration(0, TimeUnit.MILLISECONDS);
+      for (CompletableFuture<TaskResult> result : results) {
+        assertTrue(result.get(30, TimeUnit.SECONDS).isSuccessful());
+      }
+    }
+    assertNull(Task.getRunningTask());
+  }
+
+  @Test
+  public void testCloseCompletesPendingResults() throws Exception {
+    server.withTaskDuration(1, TimeUnit.HOURS);
+    server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "112000000001", "Import data.csv");
+    Import serverImport = model.getImport("Import data.csv");
+
+    TaskRunner runner = new TaskRunner(2);
+    CompletableFuture<TaskResult> result = runner.submit(serverImport, new TaskParameters());
+    awaitTaskCount(1);
+    runner.close();
+    assertTrue(result.isCompletedExceptionally());
+    assertNull(Task.getRunningTask());
+    assertTrue(runner.submit(serverImport, new TaskParameters()).isCompletedExceptionally());
+  }
+
+  private void awaitTaskCount(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (server.getTaskCount() < count && System.nanoTime() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(count, server.getTaskCount());
+  }
+
+  @Test
+  public void testCancelsTaskOnServer() throws Exception {
+    server.withTaskDuration(1, TimeUnit.MINUTES);
+    server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "112000000001", "Import data.csv");
+    Import serverImport = model.getImport("Import data.csv");
+
+    try (TaskRunner runner = new TaskRunner(2)) {
+      Task task = serverImport.createTask(new TaskParameters());
+      CompletableFuture<TaskResult> result = runner.track(task);
+      assertTrue(result.cancel(false));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (server.getCancelledTaskCount() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(1, server.getCancelledTaskCount());
+    }
+  }
+}
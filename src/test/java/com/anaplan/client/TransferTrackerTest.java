@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TransferTrackerTest {
+
+  private final AtomicLong clock = new AtomicLong(1_000_000);
+  private final List<TransferProgress> reports = new ArrayList<>();
+
+  private TransferTracker tracker(TransferProgress.Direction direction, int chunksTotal, long totalBytes) {
+    return new TransferTracker(reports::add, direction, "data.csv", chunksTotal, totalBytes, clock::get);
+  }
+
+  private TransferProgress last() {
+    return reports.get(reports.size() - 1);
+  }
+
+  @Test
+  public void testEstimatesFromBytesWhenSizeKnown() {
+    TransferTracker tracker = tracker(TransferProgress.Direction.UPLOAD, 4, 400);
+    clock.addAndGet(1000);
+    tracker.chunkDone(100, 40);
+
+    TransferProgress progress = last();
+    assertEquals(1, progress.getChunksDone());
+    assertEquals(4, progress.getChunksTotal());
+    assertEquals(100, progress.getRawBytes());
+    assertEquals(40, progress.getCompressedBytes());
+    assertEquals(100, progress.getBytesPerSecond(), 0.001);
+    assertEquals(100, progress.getAverageBytesPerSecond(), 0.001);
+    assertEquals(3000, progress.getEtaMillis());
+    assertFalse(progress.isDone());
+
+    clock.addAndGet(1000);
+    tracker.finished();
+    assertTrue(last().isDone());
+    assertEquals(0, last().getEtaMillis());
+  }
+
+  @Test
+  public void testRecentThroughputFallsWhileStalled() {
+    TransferTracker tracker = tracker(TransferProgress.Direction.UPLOAD, -1, -1);
+    clock.addAndGet(1000);
+    tracker.chunkDone(1000, 1000);
+    double rate = last().getBytesPerSecond();
+    for (int i = 0; i < 3; i++) {
+      clock.addAndGet(TransferTracker.REPORT_INTERVAL_MS);
+      tracker.report(true);
+      assertTrue(last().getBytesPerSecond() < rate);
+      rate = last().getBytesPerSecond();
+    }
+    assertEquals(-1, last().getEtaMillis());
+    assertEquals(1, last().getChunksDone());
+  }
+
+  @Test
+  public void testSkippedChunksDoNotCountTowardsThroughput() {
+    TransferTracker tracker = tracker(TransferProgress.Direction.DOWNLOAD, 4, -1);
+    tracker.skipped(2, 2000);
+    clock.addAndGet(1000);
+    tracker.chunkDone(100, 100);
+
+    TransferProgress progress = last();
+    assertEquals(3, progress.getChunksDone());
+    assertEquals(2100, progress.getRawBytes());
+    assertEquals(100, progress.getAverageBytesPerSecond(), 0.001);
+    // one chunk a second, one chunk left
+    assertEquals(1000, progress.getEtaMillis());
+  }
+
+  @Test
+  public void testIgnoresFailingListener() {
+    TransferTracker tracker = new TransferTracker(progress -> {
+      throw new IllegalStateException("listener failed");
+    }, TransferProgress.Direction.UPLOAD, "data.csv", 1, 10, clock::get);
+    tracker.chunkDone(10, 5);
+    tracker.finished();
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.anaplan.client.MockAnaplanServer;
+import com.anaplan.client.transport.ConnectionProperties;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AbstractAuthenticatorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private MockAnaplanServer server;
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private Authenticator authenticator(long tokenTtl, TimeUnit unit) throws Exception {
+    server = new MockAnaplanServer().withTokenTtl(tokenTtl, unit);
+    return AuthenticatorFactory.getAuthenticator(server.getConnectionProperties());
+  }
+
+  @Test
+  public void testAuthenticatesOnceForConcurrentCallers() throws Exception {
+    Authenticator authenticator = authenticator(35, TimeUnit.MINUTES);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<String>> tokens = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        tokens.add(executor.submit(authenticator::getAuthToken));
+      }
+      Set<String> distinct = new HashSet<>();
+      for (Future<String> token : tokens) {
+        distinct.add(token.get());
+      }
+      assertEquals(1, distinct.size());
+      assertEquals(1, server.getRequestCount());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertSame(authenticator.getAuthHeader(), authenticator.getAuthHeader());
+    assertEquals("AnaplanAuthToken " + authenticator.getAuthToken(), authenticator.getAuthHeader());
+  }
+
+  @Test
+  public void testRefreshesInBackgroundBeforeExpiry() throws Exception {
+    // within the refresh window, but not about to expire
+    Authenticator authenticator = authenticator(4, TimeUnit.MINUTES);
+    String first = authenticator.getAuthToken();
+
+    // the current token is handed out while it is refreshed
+    assertEquals(first, authenticator.getAuthToken());
+    long deadline = System.currentTimeMillis() + 5000;
+    String refreshed = first;
+    while (refreshed.equals(first) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      refreshed = authenticator.getAuthToken();
+    }
+    assertNotEquals(first, refreshed);
+    assertTrue(server.getRequestCount() < 10);
+  }
+
+  @Test
+  public void testWaitsBeforeRetryingFailedRefresh() throws Exception {
+    Authenticator authenticator = authenticator(4, TimeUnit.MINUTES);
+    String first = authenticator.getAuthToken();
+    server.revokeTokens();
+
+    // every call is within the refresh window, but only the first starts a refresh
+    long deadline = System.currentTimeMillis() + 500;
+    while (System.currentTimeMillis() < deadline) {
+      assertEquals(first, authenticator.getAuthToken());
+      Thread.sleep(5);
+    }
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testUsesDefaultLifetimeForTokenWithoutExpiry() throws Exception {
+    AbstractAuthenticator authenticator = (AbstractAuthenticator) authenticator(35, TimeUnit.MINUTES);
+    authenticator.setAuthToken("preset");
+
+    assertEquals("preset", authenticator.getAuthToken());
+    assertEquals(0, server.getRequestCount());
+  }
+
+  @Test
+  public void testAuthenticatesAgainOnceTokenIsAboutToExpire() throws Exception {
+    // already within the expiry window when issued
+    Authenticator authenticator = authenticator(30, TimeUnit.SECONDS);
+    String first = authenticator.getAuthToken();
+    String second = authenticator.getAuthToken();
+
+    assertNotEquals(first, second);
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testReusesCachedTokenAcrossAuthenticators() throws Exception {
+    server = new MockAnaplanServer();
+    ConnectionProperties properties = server.getConnectionProperties();
+    properties.setTokenCacheEnabled(true);
+    properties.setTokenCacheDirectory(temporaryFolder.getRoot().toPath());
+
+    String first = AuthenticatorFactory.getAuthenticator(properties).getAuthToken();
+    assertEquals(1, server.getRequestCount());
+    // validated moments ago, so taken up without asking the auth service
+    assertEquals(first, AuthenticatorFactory.getAuthenticator(properties).getAuthToken());
+    assertEquals(1, server.getRequestCount());
+
+    // validated long ago, so checked with the auth service first
+    TokenCache cache = new TokenCache(temporaryFolder.getRoot().toPath(), properties.getAuthServiceUri(),
+      "mock@example.com", "mock@example.com:mock".getBytes(StandardCharsets.UTF_8));
+    TokenCache.CachedToken cached = cache.load();
+    cache.store(new TokenCache.CachedToken(cached.getValue(), cached.getExpiresAt(), 0));
+    assertEquals(first, AuthenticatorFactory.getAuthenticator(properties).getAuthToken());
+    assertEquals(2, server.getRequestCount());
+    assertTrue(cache.load().getValidatedAt() > 0);
+
+    ConnectionProperties other = server.getConnectionProperties();
+    other.setApiCredentials(new Credentials("other@example.com", "mock"));
+    other.setTokenCacheEnabled(true);
+    other.setTokenCacheDirectory(temporaryFolder.getRoot().toPath());
+    assertNotEquals(first, AuthenticatorFactory.getAuthenticator(other).getAuthToken());
+    assertEquals(3, server.getRequestCount());
+  }
+}
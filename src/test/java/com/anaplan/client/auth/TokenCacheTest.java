@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TokenCacheTest {
+
+  private static final URI AUTH_URI = URI.create("https://auth.anaplan.com/");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private TokenCache cache(String principal, String secret) {
+    return new TokenCache(temporaryFolder.getRoot().toPath(), AUTH_URI, principal,
+      secret.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testStoresEncryptedToken() throws Exception {
+    TokenCache cache = cache("user@example.com", "secret");
+    assertNull(cache.load());
+
+    cache.store(new TokenCache.CachedToken("token-value", 1234L, 567L));
+    byte[] content = Files.readAllBytes(cache.getFile());
+    assertFalse(new String(content, StandardCharsets.ISO_8859_1).contains("token-value"));
+
+    TokenCache.CachedToken loaded = cache("user@example.com", "secret").load();
+    assertEquals("token-value", loaded.getValue());
+    assertEquals(1234L, loaded.getExpiresAt());
+    assertEquals(567L, loaded.getValidatedAt());
+
+    cache.remove();
+    assertNull(cache.load());
+  }
+
+  @Test
+  public void testIgnoresTokenOfOtherCredentials() throws Exception {
+    TokenCache cache = cache("user@example.com", "secret");
+    cache.store(new TokenCache.CachedToken("token-value", 1234L, 567L));
+
+    assertNull(cache("user@example.com", "changed").load());
+
+    // a file copied over from another principal does not decrypt either
+    TokenCache other = cache("other@example.com", "secret");
+    Files.copy(cache.getFile(), other.getFile());
+    assertNull(other.load());
+
+    Path file = cache.getFile();
+    byte[] content = Files.readAllBytes(file);
+    content[content.length - 1] ^= 1;
+    Files.write(file, content);
+    assertNull(cache.load());
+  }
+}
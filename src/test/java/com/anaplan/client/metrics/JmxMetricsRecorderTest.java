@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.anaplan.client.MockAnaplanServer;
+import com.anaplan.client.Service;
+import com.anaplan.client.api.AnaplanAPI;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JmxMetricsRecorderTest {
+
+  private static final String WORKSPACE_ID = "8a8b8c8d8e8f8g8i";
+  private static final String MODEL_ID = "75A40874E6B64FA3AE0743278996850F";
+  private static final String FILE_ID = "113000000001";
+
+  private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+  private JmxMetricsRecorder recorder;
+
+  @Before
+  public void setUp() {
+    recorder = new JmxMetricsRecorder(mBeanServer);
+    Metrics.setRecorder(recorder);
+  }
+
+  @After
+  public void tearDown() {
+    Metrics.setRecorder(null);
+    recorder.close();
+  }
+
+  @Test
+  public void testSummarizesValuesAsMXBean() throws Exception {
+    Metrics.recordValue(Metrics.CHUNK_BYTES, "upload", 100);
+    Metrics.recordValue(Metrics.CHUNK_BYTES, "upload", 300);
+
+    StatsMXBean stats = recorder.getStats(Metrics.CHUNK_BYTES, "upload");
+    assertEquals(2, stats.getCount());
+    assertEquals(400, stats.getTotal(), 0);
+    assertEquals(100, stats.getMin(), 0);
+    assertEquals(300, stats.getMax(), 0);
+    assertEquals(200, stats.getMean(), 0);
+    assertNull(recorder.getStats(Metrics.CHUNK_BYTES, "download"));
+
+    ObjectName name = new ObjectName("com.anaplan.client:type=Metrics,name="
+        + ObjectName.quote(Metrics.CHUNK_BYTES) + ",tag=" + ObjectName.quote("upload"));
+    assertEquals(2L, mBeanServer.getAttribute(name, "Count"));
+
+    recorder.close();
+    assertFalse(mBeanServer.isRegistered(name));
+  }
+
+  @Test
+  public void testTimesRequestsAndAuthentication() throws Exception {
+    MockAnaplanServer server = new MockAnaplanServer().withLatency(5, TimeUnit.MILLISECONDS);
+    try {
+      server.putFile(FILE_ID, "data.csv", "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8));
+      AnaplanAPI api = new Service(server.getConnectionProperties()).getApiProvider().getApiClient();
+      api.getChunks(WORKSPACE_ID, MODEL_ID, FILE_ID);
+      api.getChunkContent(WORKSPACE_ID, MODEL_ID, FILE_ID, "0");
+    } finally {
+      server.close();
+    }
+
+    StatsMXBean requests = recorder.getStats(Metrics.HTTP_REQUEST, "GET");
+    assertNotNull(requests);
+    assertEquals(2, requests.getCount());
+    assertTrue(requests.getMin() >= 5);
+    assertEquals("ms", requests.getUnit());
+    assertEquals(2, recorder.getStats(Metrics.HTTP_RESPONSES, "200").getTotal(), 0);
+    assertEquals(1, recorder.getStats(Metrics.AUTH, "authenticate").getCount());
+  }
+}
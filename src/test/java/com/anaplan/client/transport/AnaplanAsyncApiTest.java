@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.anaplan.client.MockAnaplanServer;
+import com.anaplan.client.Service;
+import com.anaplan.client.dto.ChunkData;
+import com.anaplan.client.dto.responses.ChunksResponse;
+import com.anaplan.client.dto.responses.ImportsResponse;
+import com.anaplan.client.ex.AnaplanAPIException;
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AnaplanAsyncApiTest {
+
+  private static final String WORKSPACE_ID = "8a8b8c8d8e8f8g8i";
+  private static final String MODEL_ID = "75A40874E6B64FA3AE0743278996850F";
+  private static final String FILE_ID = "113000000001";
+
+  private MockAnaplanServer server;
+  private AnaplanAsyncApi api;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockAnaplanServer().withChunkSize(1000).withLatency(20, TimeUnit.MILLISECONDS);
+    api = new Service(server.getConnectionProperties()).getApiProvider().getAsyncApiClient();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testDownloadsAllChunksAtOnce() {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (int i = 0; i < 10_000; i++) {
+      byte[] row = ("row-" + i + "\n").getBytes(StandardCharsets.UTF_8);
+      content.write(row, 0, row.length);
+    }
+    server.putFile(FILE_ID, "data.csv", content.toByteArray());
+
+    ChunksResponse chunks = api.getChunks(WORKSPACE_ID, MODEL_ID, FILE_ID).join();
+    List<CompletableFuture<byte[]>> downloads = new ArrayList<>();
+    for (ChunkData chunk : chunks.getItem()) {
+      downloads.add(api.getChunkContent(WORKSPACE_ID, MODEL_ID, FILE_ID, chunk.getId()));
+    }
+    ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+    for (CompletableFuture<byte[]> download : downloads) {
+      byte[] chunk = download.join();
+      downloaded.write(chunk, 0, chunk.length);
+    }
+    assertTrue(downloads.size() > 50);
+    assertArrayEquals(content.toByteArray(), downloaded.toByteArray());
+  }
+
+  @Test
+  public void testUploadsChunks() {
+    server.putFile(FILE_ID, "data.csv", new byte[0]);
+    byte[] first = "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8);
+    byte[] second = "3,4\n".getBytes(StandardCharsets.UTF_8);
+    byte[] third = "5,6\n".getBytes(StandardCharsets.UTF_8);
+
+    CompletableFuture.allOf(
+      api.uploadChunkCompressed(WORKSPACE_ID, MODEL_ID, FILE_ID, "0", first),
+      api.uploadChunk(WORKSPACE_ID, MODEL_ID, FILE_ID, "1", second),
+      api.uploadChunkPrecompressed(WORKSPACE_ID, MODEL_ID, FILE_ID, "2",
+        GzipCompressor.gzip(third, 0, third.length, 6))).join();
+
+    assertEquals("a,b\n1,2\n3,4\n5,6\n", new String(server.getFileContent(FILE_ID), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRetriesThrottledRequests() {
+    server.addDefinition(MockAnaplanServer.Kind.IMPORTS, "112000000001", "Import Data");
+    server.throttleNext(2, 0);
+
+    ImportsResponse imports = api.getImports(WORKSPACE_ID, MODEL_ID, 0).join();
+    assertEquals("112000000001", imports.getItem().get(0).getId());
+  }
+
+  @Test
+  public void testFailsOnClientError() {
+    server.failNext(1, 400);
+    try {
+      api.getChunks(WORKSPACE_ID, MODEL_ID, FILE_ID).join();
+      fail("Expected the request to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof AnaplanAPIException);
+    }
+  }
+
+  @Test
+  public void testFailsOnNotFound() {
+    try {
+      api.getChunks(WORKSPACE_ID, MODEL_ID, "113000000099").join();
+      fail("Expected the request to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof AnaplanAPIException);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HttpClientsTest {
+
+  @Test
+  public void testSharesPoolBetweenClientsWithSameTuning() {
+    ConnectionProperties first = new ConnectionProperties();
+    first.setHttpTimeout(3);
+    ConnectionProperties second = new ConnectionProperties();
+    second.setHttpTimeout(30);
+
+    OkHttpClient firstClient = HttpClients.newBuilder(first).build();
+    OkHttpClient secondClient = HttpClients.newBuilder(second).build();
+    assertSame(firstClient.connectionPool(), secondClient.connectionPool());
+    assertSame(firstClient.dispatcher(), secondClient.dispatcher());
+
+    second.setMaxIdleConnections(4);
+    assertNotSame(firstClient.connectionPool(), HttpClients.shared(second).connectionPool());
+  }
+
+  @Test
+  public void testAppliesTuning() {
+    ConnectionProperties properties = new ConnectionProperties();
+    properties.setMaxRequestsPerHost(7);
+    properties.setHttp2Enabled(false);
+
+    OkHttpClient client = HttpClients.shared(properties);
+    assertEquals(7, client.dispatcher().getMaxRequestsPerHost());
+    assertEquals(Collections.singletonList(Protocol.HTTP_1_1), client.protocols());
+  }
+}
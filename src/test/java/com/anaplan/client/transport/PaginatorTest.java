@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.anaplan.client.dto.Paging;
+import com.anaplan.client.ex.ModulesNotFoundException;
+import feign.FeignException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PaginatorTest {
+
+  /**
+   * Pages through the numbers below a total, checking its own page info as the
+   * paginators of the client do.
+   */
+  private static class Numbers extends Paginator<Integer> {
+
+    private final int total;
+    private final int pageSize;
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger mixedUp = new AtomicInteger();
+
+    Numbers(int total, int pageSize) {
+      this.total = total;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public Integer[] getPage(int offset) {
+      fetched.incrementAndGet();
+      int size = Math.max(0, Math.min(pageSize, total - offset));
+      Paging paging = new Paging();
+      paging.setOffset(offset);
+      paging.setCurrentPageSize(size);
+      paging.setTotalSize(total);
+      setPageInfo(paging);
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (getPageInfo().getOffset() != offset) {
+        mixedUp.incrementAndGet();
+      }
+      Integer[] page = new Integer[getPageInfo().getCurrentPageSize()];
+      for (int i = 0; i < page.length; i++) {
+        page[i] = offset + i;
+      }
+      return page;
+    }
+  }
+
+  private static List<Integer> list(Iterable<Integer> iterable) {
+    List<Integer> list = new ArrayList<>();
+    iterable.forEach(list::add);
+    return list;
+  }
+
+  @Test
+  public void testIteratesAllPagesInOrder() {
+    Numbers numbers = new Numbers(1003, 10);
+    assertEquals(0, numbers.fetched.get());
+
+    List<Integer> listed = list(numbers);
+    assertEquals(1003, listed.size());
+    for (int i = 0; i < listed.size(); i++) {
+      assertEquals(i, (int) listed.get(i));
+    }
+    assertEquals(101, numbers.fetched.get());
+    assertEquals(0, numbers.mixedUp.get());
+
+    // the first page is kept, the others are fetched again
+    assertEquals(1003, list(numbers).size());
+    assertEquals(201, numbers.fetched.get());
+  }
+
+  @Test
+  public void testFetchesAheadOfIteration() {
+    Numbers numbers = new Numbers(1000, 10);
+    Iterator<Integer> iterator = numbers.iterator();
+    assertEquals(0, numbers.fetched.get());
+
+    assertTrue(iterator.hasNext());
+    assertEquals(0, (int) iterator.next());
+    int fetched = numbers.fetched.get();
+    assertTrue(fetched <= 1 + Paginator.PREFETCH_PAGES);
+  }
+
+  @Test
+  public void testEmptyListing() {
+    Numbers numbers = new Numbers(0, 10);
+    assertFalse(numbers.iterator().hasNext());
+    assertEquals(1, numbers.fetched.get());
+  }
+
+  @Test
+  public void testTranslatesPageFailures() {
+    FeignException failure = new FeignException(500, "listing failed") {
+    };
+    Numbers numbers = new Numbers(100, 10) {
+      @Override
+      public Integer[] getPage(int offset) {
+        if (offset == 30) {
+          throw failure;
+        }
+        return super.getPage(offset);
+      }
+
+      @Override
+      protected RuntimeException translate(FeignException e) {
+        return new ModulesNotFoundException("modelId", e);
+      }
+    };
+
+    // the failing page is fetched ahead of the iteration, on another thread
+    ModulesNotFoundException e = assertThrows(ModulesNotFoundException.class, () -> list(numbers));
+    assertSame(failure, e.getCause());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.transport.interceptors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.anaplan.client.transport.serialization.GzipCompressor;
+import com.google.common.net.MediaType;
+import feign.RequestTemplate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.HttpHeaders;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompressPutBodyInjectorTest {
+
+  @Test
+  public void testCompressesOnlyOnceAcrossRetries() throws IOException {
+    byte[] content = "a,b\nc,d\n".getBytes(StandardCharsets.UTF_8);
+    RequestTemplate template = template(content, false);
+    CompressPutBodyInjector injector = new CompressPutBodyInjector();
+
+    injector.apply(template);
+    byte[] compressed = template.body();
+    assertArrayEquals(content, gunzip(compressed));
+    // Feign applies the interceptors to the same template again when retrying
+    injector.apply(template);
+    assertArrayEquals(compressed, template.body());
+    assertFalse(template.request().headers().containsKey(CompressPutBodyInjector.PRECOMPRESSED));
+  }
+
+  @Test
+  public void testCompressesContentStartingWithGzipMagic() throws IOException {
+    byte[] content = {(byte) 0x1f, (byte) 0x8b, 'a', ',', 'b', '\n'};
+    RequestTemplate template = template(content, false);
+
+    new CompressPutBodyInjector().apply(template);
+    assertArrayEquals(content, gunzip(template.body()));
+  }
+
+  @Test
+  public void testLeavesPrecompressedContent() {
+    byte[] content = "a,b\nc,d\n".getBytes(StandardCharsets.UTF_8);
+    byte[] compressed = GzipCompressor.gzip(content, 0, content.length, 6);
+    RequestTemplate template = template(compressed, true);
+    CompressPutBodyInjector injector = new CompressPutBodyInjector();
+
+    injector.apply(template);
+    assertArrayEquals(compressed, template.body());
+    // the marker is not sent, and a retry still leaves the content alone
+    assertFalse(template.request().headers().containsKey(CompressPutBodyInjector.PRECOMPRESSED));
+    injector.apply(template);
+    assertArrayEquals(compressed, template.body());
+  }
+
+  private static RequestTemplate template(byte[] body, boolean precompressed) {
+    RequestTemplate template = new RequestTemplate()
+      .method("PUT")
+      .header(HttpHeaders.CONTENT_TYPE, MediaType.GZIP.toString())
+      .body(body, StandardCharsets.UTF_8);
+    if (precompressed) {
+      template.header(CompressPutBodyInjector.PRECOMPRESSED, "true");
+    }
+    // interceptors only ever see resolved templates
+    return template.resolve(Collections.emptyMap());
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
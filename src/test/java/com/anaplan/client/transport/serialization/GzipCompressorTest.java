@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anaplan.client.transport.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GzipCompressorTest {
+
+  private static byte[] gunzip(byte[] compressed) throws Exception {
+    try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return ByteStreams.toByteArray(inputStream);
+    }
+  }
+
+  @Test
+  public void testRoundTripsAtEveryLevel() throws Exception {
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      rows.append("row-").append(i).append(",\"value ").append(i % 7).append("\"\n");
+    }
+    byte[] content = rows.toString().getBytes(StandardCharsets.UTF_8);
+    for (int level = 1; level <= 9; level++) {
+      assertArrayEquals(content, gunzip(GzipCompressor.gzip(content, 0, content.length, level)));
+    }
+  }
+
+  @Test
+  public void testRoundTripsIncompressibleSlice() throws Exception {
+    byte[] content = new byte[100000];
+    new Random(42).nextBytes(content);
+    byte[] compressed = GzipCompressor.gzip(content, 100, 50000, 6);
+    assertArrayEquals(Arrays.copyOfRange(content, 100, 50100), gunzip(compressed));
+  }
+
+  @Test
+  public void testRoundTripsEmptyInput() throws Exception {
+    assertArrayEquals(new byte[0], gunzip(GzipCompressor.gzip(new byte[0], 0, 0, 6)));
+  }
+}
@@ -16,6 +16,8 @@
 package com.google.planningworks.cdap.plugins.sink;
 
 import com.anaplan.client.AnaplanService;
+import com.anaplan.client.Constants;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.planningworks.cdap.plugins.base.AnaplanPluginConfig;
 import io.cdap.cdap.api.data.schema.Schema;
@@ -75,6 +77,49 @@ public class AnaplanSinkTest {
     Assert.assertEquals(/*expected =*/ 1, failureCollector.getValidationFailures().size());
   }
 
+  @Test
+  public void testSeveralServerFilesRequireParallelUploadAndProcess() throws Exception {
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanService.NAME_SERVER_FILE_NAME),
+      "test1.csv, test2.csv");
+    config.validate(failureCollector, schema);
+    Assert.assertEquals(/*expected =*/ 2, failureCollector.getValidationFailures().size());
+  }
+
+  @Test
+  public void testSeveralServerFilesWithParallelUploadAndProcess() throws Exception {
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanService.NAME_SERVER_FILE_NAME),
+      "test1.csv, test2.csv");
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanSinkConfig.NAME_PARALLEL_UPLOAD),
+      true);
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanSinkConfig.NAME_PROCESS_NAME),
+      "Load test files");
+    config.validate(failureCollector, schema);
+    Assert.assertEquals(/*expected =*/ 0, failureCollector.getValidationFailures().size());
+    Assert.assertEquals(ImmutableList.of("test1.csv", "test2.csv"), config.getServerFileNames());
+  }
+
+  @Test
+  public void testUploadTuningDefaults() {
+    Assert.assertEquals(Constants.DEFAULT_COMPRESSION_LEVEL, config.getCompressionLevel());
+    Assert.assertEquals(Constants.DEFAULT_CHUNK_CONCURRENCY, config.getUploadConcurrency());
+  }
+
+  @Test
+  public void testInvalidUploadTuning() throws Exception {
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanSinkConfig.NAME_COMPRESSION_LEVEL),
+      10);
+    FieldSetter.setField(
+      config, AnaplanSinkConfig.class.getDeclaredField(AnaplanSinkConfig.NAME_UPLOAD_CONCURRENCY),
+      0);
+    config.validate(failureCollector, schema);
+    Assert.assertEquals(/*expected =*/ 2, failureCollector.getValidationFailures().size());
+  }
+
   private Schema getSupportedSchema() {
     return Schema.recordOf("record",
       Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.sink;
+
+import com.google.common.io.ByteStreams;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import scala.Tuple2;
+
+@RunWith(JUnit4.class)
+public class PartitionToAnaplanChunksTest {
+
+  private static final Schema SCHEMA = Schema.recordOf("record",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testSplitsPartitionIntoChunksOnRowBoundaries() throws Exception {
+    List<Tuple2<Integer, byte[]>> chunks = encode(new PartitionToAnaplanChunks(SCHEMA, "id,name", 1, 64, 6),
+      0, 20);
+
+    Assert.assertTrue(chunks.size() > 1);
+    StringBuilder content = new StringBuilder();
+    for (Tuple2<Integer, byte[]> chunk : chunks) {
+      Assert.assertEquals(Integer.valueOf(0), chunk._1());
+      String rows = gunzip(chunk._2());
+      Assert.assertTrue(rows.endsWith("\n"));
+      content.append(rows);
+    }
+    Assert.assertEquals("id,name\n" + rows(0, 20), content.toString());
+  }
+
+  @Test
+  public void testSpreadsPartitionsOverServerFiles() throws Exception {
+    PartitionToAnaplanChunks encoder = new PartitionToAnaplanChunks(SCHEMA, "id,name", 2, 1024, 6);
+
+    List<Tuple2<Integer, byte[]>> first = encode(encoder, 1, 3);
+    Assert.assertEquals(1, first.size());
+    Assert.assertEquals(Integer.valueOf(1), first.get(0)._1());
+    Assert.assertEquals("id,name\n" + rows(0, 3), gunzip(first.get(0)._2()));
+
+    List<Tuple2<Integer, byte[]>> third = encode(encoder, 3, 3);
+    Assert.assertEquals(Integer.valueOf(1), third.get(0)._1());
+    Assert.assertEquals(rows(0, 3), gunzip(third.get(0)._2()));
+
+    Assert.assertTrue(encode(encoder, 2, 0).isEmpty());
+    Assert.assertEquals("id,name\n", gunzip(encode(encoder, 0, 0).get(0)._2()));
+  }
+
+  private static List<Tuple2<Integer, byte[]>> encode(PartitionToAnaplanChunks encoder,
+    int partition, int recordCount) throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < recordCount; i++) {
+      records.add(StructuredRecord.builder(SCHEMA).set("id", i).set("name", "name " + i).build());
+    }
+    List<Tuple2<Integer, byte[]>> chunks = new ArrayList<>();
+    Iterator<Tuple2<Integer, byte[]>> iterator = encoder.call(partition, records.iterator());
+    iterator.forEachRemaining(chunks::add);
+    return chunks;
+  }
+
+  private static String rows(int from, int to) {
+    StringBuilder rows = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      rows.append(i).append(",name ").append(i).append('\n');
+    }
+    return rows.toString();
+  }
+
+  private static String gunzip(byte[] compressed) throws IOException {
+    return new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))),
+      StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.Schema.LogicalType;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RowEncoderTest {
+
+  private static final Schema SCHEMA = Schema.recordOf("record",
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("date", Schema.of(LogicalType.DATE)),
+    Schema.Field.of("decimal", Schema.decimalOf(20, 4)),
+    Schema.Field.of("nullable", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testEncodesEachTypeAsText() throws Exception {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("long", Long.MIN_VALUE)
+      .set("int", -42)
+      .set("string", "plain")
+      .set("float", 1.5f)
+      .set("price", 7.25)
+      .set("boolean", true)
+      .setDate("date", LocalDate.of(2021, 2, 28))
+      .setDecimal("decimal", new BigDecimal("-12.3400"))
+      .set("nullable", null)
+      .build();
+
+    Assert.assertEquals("-9223372036854775808,-42,plain,1.5,7.25,true,2021-02-28,-12.3400,\n",
+      encode(record));
+  }
+
+  @Test
+  public void testQuotesTextAndEncodesUtf8() throws Exception {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("long", 0L)
+      .set("int", Integer.MAX_VALUE)
+      .set("string", "Säo \"Paulo\", Brasil 😀")
+      .set("float", 0f)
+      .set("price", -0.5)
+      .set("boolean", false)
+      .setDate("date", LocalDate.of(1969, 12, 31))
+      .setDecimal("decimal", BigDecimal.valueOf(1, 4))
+      .set("nullable", "line\nbreak")
+      .build();
+
+    Assert.assertEquals("0,2147483647,\"Säo \"\"Paulo\"\", Brasil 😀\",0.0,-0.5,false,"
+      + "1969-12-31,0.0001,\"line\nbreak\"\n", encode(record));
+  }
+
+  @Test
+  public void testEncodesDatesAcrossCalendar() throws Exception {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("date", Schema.of(LogicalType.DATE)));
+    RowEncoder rowEncoder = new RowEncoder(schema, 16);
+    StringBuilder expected = new StringBuilder();
+    for (LocalDate date = LocalDate.of(1899, 12, 25); date.getYear() < 2101; date = date.plusDays(13)) {
+      rowEncoder.encode(StructuredRecord.builder(schema).setDate("date", date).build());
+      expected.append(date).append('\n');
+    }
+    Assert.assertEquals(expected.toString(),
+      new String(rowEncoder.buffer(), 0, rowEncoder.size(), StandardCharsets.UTF_8));
+  }
+
+  private static String encode(StructuredRecord record) throws Exception {
+    RowEncoder rowEncoder = new RowEncoder(SCHEMA, 16);
+    rowEncoder.encode(record);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    rowEncoder.writeTo(out);
+    rowEncoder.reset();
+    Assert.assertEquals(0, rowEncoder.size());
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.anaplan.client.MockAnaplanServer;
+import com.google.common.base.Strings;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AnaplanInputFormatTest {
+
+  private static final String FILE_ID = "116000000001";
+  private static final Schema SCHEMA = Schema.recordOf("row",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))));
+
+  private MockAnaplanServer server;
+  private Configuration conf;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockAnaplanServer().withChunkSize(1000);
+    conf = new Configuration(false);
+    conf.set(AnaplanInputFormat.USERNAME, "user@example.com");
+    conf.set(AnaplanInputFormat.PASSWORD, "password");
+    conf.set(AnaplanInputFormat.SERVICE_LOCATION, server.getUri().toString());
+    conf.set(AnaplanInputFormat.AUTH_SERVICE_LOCATION, server.getUri().toString());
+    conf.set(AnaplanInputFormat.WORKSPACE_ID, "8a8b8c8d8e8f8g8i");
+    conf.set(AnaplanInputFormat.MODEL_ID, "75A40874E6B64FA3AE0743278996850F");
+    conf.set(AnaplanInputFormat.SERVER_FILE_NAME, FILE_ID);
+    conf.set(AnaplanInputFormat.SCHEMA, SCHEMA.toString());
+    conf.set(AnaplanInputFormat.DELIMITER, ",");
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testReadsEveryRowOnceAcrossChunks() throws Exception {
+    StringBuilder content = new StringBuilder("id,name,date\r\n");
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      // a few rows are longer than a chunk, and one row ends exactly on a chunk boundary
+      String name = i % 97 == 0 ? Strings.repeat("x", 2500) : Strings.repeat("n", i % 13);
+      if (i == 1) {
+        name = "a, \"quoted\" name";
+        content.append(i).append(",\"a, \"\"quoted\"\" name\",2021-03-0").append(i).append("\r\n");
+      } else {
+        content.append(i).append(',').append(name).append(",\r\n");
+      }
+      names.add(name);
+    }
+    server.putFile(FILE_ID, FILE_ID, content.toString().getBytes(StandardCharsets.UTF_8));
+
+    List<StructuredRecord> records = readAll();
+    Assert.assertEquals(names.size(), records.size());
+    for (int i = 0; i < names.size(); i++) {
+      Assert.assertEquals(Long.valueOf(i), records.get(i).get("id"));
+      Assert.assertEquals(names.get(i), records.get(i).get("name"));
+    }
+    Assert.assertEquals("2021-03-01", records.get(1).getDate("date").toString());
+    Assert.assertNull(records.get(2).get("date"));
+  }
+
+  @Test
+  public void testReadsLastRowWithoutSeparator() throws Exception {
+    server.putFile(FILE_ID, FILE_ID, "id,name,date\n1,a,\n2,b,".getBytes(StandardCharsets.UTF_8));
+
+    List<StructuredRecord> records = readAll();
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("b", records.get(1).get("name"));
+  }
+
+  @Test
+  public void testReadsFileInItsEncoding() throws Exception {
+    server.putFile(FILE_ID, FILE_ID, "id,name,date\n1,Zoë,\n".getBytes(StandardCharsets.ISO_8859_1),
+      StandardCharsets.ISO_8859_1.name());
+
+    List<StructuredRecord> records = readAll();
+    Assert.assertEquals(1, records.size());
+    Assert.assertEquals("Zoë", records.get(0).get("name"));
+  }
+
+  @Test
+  public void testLooksFileUpOnlyForSplits() throws Exception {
+    server.putFile(FILE_ID, FILE_ID, "id,name,date\n1,a,\n".getBytes(StandardCharsets.UTF_8));
+    List<InputSplit> splits = new AnaplanInputFormat().getSplits(jobContext());
+    Assert.assertEquals(1, splits.size());
+
+    // the task authenticates and downloads its chunk, without listing files or chunks
+    long requestCount = server.getRequestCount();
+    Assert.assertEquals(1, read(splits.get(0)).size());
+    Assert.assertEquals(requestCount + 2, server.getRequestCount());
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsEncodingWithWideLineFeed() throws Exception {
+    server.putFile(FILE_ID, FILE_ID, "id,name,date\n".getBytes(StandardCharsets.UTF_16LE),
+      StandardCharsets.UTF_16LE.name());
+
+    new AnaplanInputFormat().getSplits(jobContext());
+  }
+
+  private JobContext jobContext() {
+    JobContext jobContext = mock(JobContext.class);
+    when(jobContext.getConfiguration()).thenReturn(conf);
+    return jobContext;
+  }
+
+  private List<StructuredRecord> read(InputSplit split) throws Exception {
+    TaskAttemptContext context = mock(TaskAttemptContext.class);
+    when(context.getConfiguration()).thenReturn(conf);
+    List<StructuredRecord> records = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord> reader =
+      new AnaplanInputFormat().createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        records.add(reader.getCurrentValue());
+      }
+    }
+    return records;
+  }
+
+  private List<StructuredRecord> readAll() throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (InputSplit split : new AnaplanInputFormat().getSplits(jobContext())) {
+      records.addAll(read(split));
+    }
+    return records;
+  }
+}
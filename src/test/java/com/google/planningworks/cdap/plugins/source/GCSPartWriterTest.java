@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.planningworks.cdap.plugins.source;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GCSPartWriterTest {
+
+  @Test
+  public void testRepeatsHeaderInEveryPart() throws Exception {
+    Map<String, String> objects = new ConcurrentHashMap<>();
+    Storage storage = mock(Storage.class);
+    doAnswer(invocation -> {
+      BlobInfo blobInfo = invocation.getArgument(0);
+      objects.put(blobInfo.getName(),
+        new String((byte[]) invocation.getArgument(1), StandardCharsets.UTF_8));
+      return null;
+    }).when(storage).create(any(BlobInfo.class), any(byte[].class));
+
+    try (GCSPartWriter writer = new GCSPartWriter(storage, "bucket", "export/", "text/plain", 2)) {
+      writer.handle("id,name\n1,a\n".getBytes(StandardCharsets.UTF_8));
+      writer.handle("2,b\n3,c\n".getBytes(StandardCharsets.UTF_8));
+      writer.handle("4,d\n".getBytes(StandardCharsets.UTF_8));
+      Assert.assertEquals(3, writer.getPartCount());
+    }
+
+    Assert.assertEquals(3, objects.size());
+    Assert.assertEquals("id,name\n1,a\n", objects.get("export/part-00000.csv"));
+    Assert.assertEquals("id,name\n2,b\n3,c\n", objects.get("export/part-00001.csv"));
+    Assert.assertEquals("id,name\n4,d\n", objects.get("export/part-00002.csv"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testFailsWhenAnObjectCannotBeWritten() throws Exception {
+    Storage storage = mock(Storage.class);
+    doAnswer(invocation -> {
+      throw new IllegalStateException("unavailable");
+    }).when(storage).create(any(BlobInfo.class), any(byte[].class));
+
+    try (GCSPartWriter writer = new GCSPartWriter(storage, "bucket", "export/", "text/plain", 2)) {
+      writer.handle("id,name\n1,a\n".getBytes(StandardCharsets.UTF_8));
+    }
+  }
+  @Test
+  public void testStopsAtFirstFailedWrite() throws Exception {
+    Storage storage = mock(Storage.class);
+    doAnswer(invocation -> {
+      throw new IllegalStateException("unavailable");
+    }).when(storage).create(any(BlobInfo.class), any(byte[].class));
+
+    GCSPartWriter writer = new GCSPartWriter(storage, "bucket", "export/", "text/plain", 2);
+    try {
+      writer.handle("id,name\n".getBytes(StandardCharsets.UTF_8));
+      for (int i = 0; i < 1000; i++) {
+        Thread.sleep(1);
+        writer.handle("1,a\n".getBytes(StandardCharsets.UTF_8));
+      }
+      Assert.fail("Expected the failed write to stop the next block");
+    } catch (IOException e) {
+      Assert.assertEquals("unavailable", e.getCause().getMessage());
+      Assert.assertTrue(writer.getPartCount() < 1000);
+    } finally {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        // the failed write is reported again
+      }
+    }
+  }
+}